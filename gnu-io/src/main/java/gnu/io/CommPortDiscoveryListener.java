@@ -0,0 +1,29 @@
+package gnu.io;
+
+import java.util.EventListener;
+
+/**
+ * Extension to CommAPI. Is told about ports found or lost by a {@link RXTXPortDiscovery}.
+ * <p>
+ * The methods are called on the thread of the discovery, a slow listener delays the following events.
+ */
+public interface CommPortDiscoveryListener extends EventListener {
+
+    /**
+     * A port was plugged in. It has been added to the ports of {@link CommPortIdentifier#getPortIdentifiers()}.
+     *
+     * @param portIdentifier
+     *            the identifier of the new port.
+     */
+    void portAdded(CommPortIdentifier portIdentifier);
+
+    /**
+     * A port was unplugged. It has been removed from the ports of {@link CommPortIdentifier#getPortIdentifiers()}, an
+     * open port stays open until it is closed.
+     *
+     * @param portIdentifier
+     *            the identifier of the removed port.
+     */
+    void portRemoved(CommPortIdentifier portIdentifier);
+
+}
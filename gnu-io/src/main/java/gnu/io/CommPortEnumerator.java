@@ -66,34 +66,33 @@ import java.util.Enumeration;
  */
 
 class CommPortEnumerator implements Enumeration<CommPortIdentifier> {
-    private CommPortIdentifier index;
+    /* snapshot of the registry, later changes are not seen */
+    private final CommPortIdentifier[] ports;
+    private int index;
     private final static boolean debug = false;
     static {
         if (debug)
             System.out.println("CommPortEnumerator:{}");
     }
 
-    CommPortEnumerator() {
+    CommPortEnumerator(CommPortIdentifier[] ports) {
+        this.ports = ports;
     }
 
     /*------------------------------------------------------------------------------
         nextElement()
         accept:
         perform:
-        return:
+        return:       the next port or null if there is none
         exceptions:
         comments:
     ------------------------------------------------------------------------------*/
     public CommPortIdentifier nextElement() {
         if (debug)
             System.out.println("CommPortEnumerator:nextElement()");
-        synchronized (CommPortIdentifier.Sync) {
-            if (index != null)
-                index = index.next;
-            else
-                index = CommPortIdentifier.CommPortIndex;
-            return (index);
-        }
+        if (index < ports.length)
+            return ports[index++];
+        return null;
     }
 
     /*------------------------------------------------------------------------------
@@ -106,13 +105,7 @@ class CommPortEnumerator implements Enumeration<CommPortIdentifier> {
     ------------------------------------------------------------------------------*/
     public boolean hasMoreElements() {
         if (debug)
-            System.out.println(
-                    "CommPortEnumerator:hasMoreElements() " + CommPortIdentifier.CommPortIndex == null ? false : true);
-        synchronized (CommPortIdentifier.Sync) {
-            if (index != null)
-                return index.next == null ? false : true;
-            else
-                return CommPortIdentifier.CommPortIndex == null ? false : true;
-        }
+            System.out.println("CommPortEnumerator:hasMoreElements() " + (index < ports.length));
+        return index < ports.length;
     }
 }
@@ -57,10 +57,14 @@
 --------------------------------------------------------------------------*/
 package gnu.io;
 
+import java.io.File;
 import java.io.FileDescriptor;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Trent Jarvi
@@ -80,11 +84,37 @@ public class CommPortIdentifier extends Object /* extends Vector? */
     private String Owner;
     private CommPort commport;
     private CommDriver RXTXDriver;
-    static CommPortIdentifier CommPortIndex;
-    CommPortIdentifier next;
     private int PortType;
     private final static boolean debug = false;
     static Object Sync;
+
+    /*
+     * The known ports. Copy on write: lookups and enumerations use the current map without locking, changes replace
+     * it while holding Sync. The map keeps the order the ports were added in.
+     */
+    private static volatile Map<String, CommPortIdentifier> Ports = new LinkedHashMap<String, CommPortIdentifier>();
+    /* collects the ports found by a rescan in getPortIdentifiers(), guarded by Sync */
+    private static Map<String, CommPortIdentifier> RescannedPorts;
+    /* incremented with every rescan, written while holding Sync */
+    private static volatile int Rescans;
+    /*
+     * The number of running RXTXPortDiscovery instances, written while holding Sync. While one runs, the ports are
+     * kept up to date and getPortIdentifiers() only rescans if the port properties changed since the last rescan.
+     */
+    private static volatile int Discoveries;
+    private static volatile String ScannedProperties;
+    /* opens the ports added by getPortIdentifier(String, int), guarded by Sync */
+    private static RXTXCommDriver DirectDriver;
+    /* the ports of open RXTXNullModem instances, not found by rescans but kept across them, guarded by Sync */
+    private static final Map<String, CommPortIdentifier> NullModemPorts = new LinkedHashMap<String, CommPortIdentifier>();
+
+    /*
+     * Names not found by the last rescan, mapped to the expiry of the entry. getPortIdentifier(String) fails for them
+     * without rescanning until the entry expired or the port properties changed.
+     */
+    private static final ConcurrentHashMap<String, Miss> Misses = new ConcurrentHashMap<String, Miss>();
+    private static final long MissTTL = TimeUnit.MILLISECONDS
+            .toNanos(Long.getLong("gnu.io.rxtx.NegativeLookupTTL", 1000));
     Vector<CommPortOwnershipListener> ownershipListener;
 
     /*------------------------------------------------------------------------------
@@ -122,7 +152,6 @@ public class CommPortIdentifier extends Object /* extends Vector? */
         PortName = pn;
         commport = cp;
         PortType = pt;
-        next = null;
         RXTXDriver = driver;
 
     }
@@ -131,7 +160,7 @@ public class CommPortIdentifier extends Object /* extends Vector? */
     	addPortName()
     	accept:         Name of the port s, Port type, 
                         reverence to RXTXCommDriver.
-    	perform:        place a new CommPortIdentifier in the linked list
+    	perform:        place a new CommPortIdentifier in the registry
     	return: 	none.
     	exceptions:     none.
     	comments:
@@ -149,26 +178,126 @@ public class CommPortIdentifier extends Object /* extends Vector? */
     	perform:        
     	return: 	
     	exceptions:    
-    	comments:
+    	comments:       The first port added with a name wins.
     ------------------------------------------------------------------------------*/
-    private static void AddIdentifierToList(CommPortIdentifier cpi) {
+    private static boolean AddIdentifierToList(CommPortIdentifier cpi) {
         if (debug)
             System.out.println("CommPortIdentifier:AddIdentifierToList()");
         synchronized (Sync) {
-            if (CommPortIndex == null) {
-                CommPortIndex = cpi;
-                if (debug)
-                    System.out.println("CommPortIdentifier:AddIdentifierToList() null");
-            }
-            else {
-                CommPortIdentifier index = CommPortIndex;
-                while (index.next != null) {
-                    index = index.next;
-                    if (debug)
-                        System.out.println("CommPortIdentifier:AddIdentifierToList() index.next");
+            Misses.remove(cpi.PortName);
+            if (RescannedPorts != null) {
+                if (!RescannedPorts.containsKey(cpi.PortName)) {
+                    RescannedPorts.put(cpi.PortName, cpi);
+                    return true;
                 }
-                index.next = cpi;
             }
+            else if (!Ports.containsKey(cpi.PortName)) {
+                Map<String, CommPortIdentifier> ports = new LinkedHashMap<String, CommPortIdentifier>(Ports);
+                ports.put(cpi.PortName, cpi);
+                Ports = ports;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /*------------------------------------------------------------------------------
+    	addDiscoveredPort()
+    	accept:         Name of the port s, Port type, driver that found it.
+    	perform:        place a new CommPortIdentifier in the registry
+    	return: 	the new CommPortIdentifier, null if the port is known
+    	exceptions:     none.
+    	comments:       used by RXTXPortDiscovery
+    ------------------------------------------------------------------------------*/
+    static CommPortIdentifier addDiscoveredPort(String s, int type, CommDriver c) {
+        CommPortIdentifier cpi = new CommPortIdentifier(s, null, type, c);
+        return AddIdentifierToList(cpi) ? cpi : null;
+    }
+
+    /*------------------------------------------------------------------------------
+    	removeDiscoveredPort()
+    	accept:         Name of the port s
+    	perform:        remove the port from the registry
+    	return: 	the removed CommPortIdentifier, null if the port is unknown
+    	exceptions:     none.
+    	comments:       used by RXTXPortDiscovery.  An open port stays open.
+    ------------------------------------------------------------------------------*/
+    static CommPortIdentifier removeDiscoveredPort(String s) {
+        synchronized (Sync) {
+            CommPortIdentifier cpi = Ports.get(s);
+            if (cpi != null) {
+                Map<String, CommPortIdentifier> ports = new LinkedHashMap<String, CommPortIdentifier>(Ports);
+                ports.remove(s);
+                Ports = ports;
+            }
+            return cpi;
+        }
+    }
+
+    /*------------------------------------------------------------------------------
+    	addNullModemPort()
+    	accept:         Name of the port s, driver that opens it.
+    	perform:        place a new CommPortIdentifier in the registry,
+    	                replacing a port of the same name
+    	return: 	the new CommPortIdentifier
+    	exceptions:     none.
+    	comments:       used by RXTXNullModem.  The port is kept by rescans
+    	                until removeNullModemPort() is called.
+    ------------------------------------------------------------------------------*/
+    static CommPortIdentifier addNullModemPort(String s, CommDriver c) {
+        CommPortIdentifier cpi = new CommPortIdentifier(s, null, PORT_SERIAL, c);
+        synchronized (Sync) {
+            // e.g. a pseudo terminal of an earlier null modem with the same number
+            removeDiscoveredPort(s);
+            NullModemPorts.put(s, cpi);
+            AddIdentifierToList(cpi);
+        }
+        return cpi;
+    }
+
+    /*------------------------------------------------------------------------------
+    	removeNullModemPort()
+    	accept:         Name of the port s
+    	perform:        remove the port from the registry
+    	return: 	none.
+    	exceptions:     none.
+    	comments:       used by RXTXNullModem.
+    ------------------------------------------------------------------------------*/
+    static void removeNullModemPort(String s) {
+        synchronized (Sync) {
+            NullModemPorts.remove(s);
+            removeDiscoveredPort(s);
+        }
+    }
+
+    /* the next getPortIdentifier(String, int) tests the device again */
+    private void removeUnconfirmedPort() {
+        synchronized (Sync) {
+            if (Ports.get(PortName) == this)
+                removeDiscoveredPort(PortName);
+        }
+    }
+
+    /*
+     * The ports currently known, without rescanning
+     */
+    static CommPortIdentifier getKnownPort(String s) {
+        return Ports.get(s);
+    }
+
+    static CommPortIdentifier[] getKnownPorts() {
+        return Ports.values().toArray(new CommPortIdentifier[0]);
+    }
+
+    static void discoveryStarted() {
+        synchronized (Sync) {
+            Discoveries++;
+        }
+    }
+
+    static void discoveryStopped() {
+        synchronized (Sync) {
+            Discoveries--;
         }
     }
 
@@ -231,19 +360,31 @@ public class CommPortIdentifier extends Object /* extends Vector? */
     	perform:
     	return:
     	exceptions:
-    	comments:   
+    	comments:    Known ports are found without locking.  Unknown names
+    	             lead to a rescan, unless the same name was not found
+    	             by a rescan less than gnu.io.rxtx.NegativeLookupTTL ms
+    	             (default 1000) ago.
     ------------------------------------------------------------------------------*/
     static public CommPortIdentifier getPortIdentifier(String s) throws NoSuchPortException {
         if (debug)
             System.out.println("CommPortIdentifier:getPortIdentifier(" + s + ")");
-        CommPortIdentifier index;
+        CommPortIdentifier index = Ports.get(s);
+        if (index != null)
+            return index;
+
+        String properties = portProperties();
+        Miss miss = Misses.get(s);
+        if (miss != null && miss.isValid(properties)) {
+            if (debug)
+                System.out.println("not found, cached!" + s);
+            throw new NoSuchPortException();
+        }
 
+        // skip the rescan if another thread did one while we waited for Sync
+        int rescans = Rescans;
         synchronized (Sync) {
-            index = CommPortIndex;
-            while (index != null && !index.PortName.equals(s)) {
-                index = index.next;
-            }
-            if (index == null) {
+            index = Ports.get(s);
+            if (index == null && rescans == Rescans) {
                 /*
                  * This may slow things down but if you pass the string for the port after a device is plugged in, you
                  * can find it now.
@@ -251,10 +392,9 @@ public class CommPortIdentifier extends Object /* extends Vector? */
                  * http://bugzilla.qbang.org/show_bug.cgi?id=48
                  */
                 getPortIdentifiers();
-                index = CommPortIndex;
-                while (index != null && !index.PortName.equals(s)) {
-                    index = index.next;
-                }
+                index = Ports.get(s);
+                if (index == null && MissTTL > 0)
+                    Misses.put(s, new Miss(System.nanoTime() + MissTTL, properties));
             }
         }
         if (index != null)
@@ -266,6 +406,58 @@ public class CommPortIdentifier extends Object /* extends Vector? */
         }
     }
 
+    /*------------------------------------------------------------------------------
+    	getPortIdentifier()
+    	accept:      name of the device, e.g. /dev/ttyUSB0, and the port type
+    	perform:     add the port to the registry unless it is known
+    	return:      the CommPortIdentifier of the port
+    	exceptions:  NoSuchPortException if the device is no port
+    	comments:    Unlike getPortIdentifier(String) this doesn't rescan,
+    	             so the name doesn't have to be set in
+    	             gnu.io.rxtx.SerialPorts and concurrent opens of
+    	             different ports don't interfere.  Only the device is
+    	             tested like a rescan would, and the port is removed
+    	             again if its first open fails.
+    ------------------------------------------------------------------------------*/
+    static public CommPortIdentifier getPortIdentifier(String s, int type) throws NoSuchPortException {
+        if (debug)
+            System.out.println("CommPortIdentifier:getPortIdentifier(" + s + ", " + type + ")");
+        CommPortIdentifier index = Ports.get(s);
+        if (index != null)
+            return index;
+
+        Miss miss = Misses.get(s);
+        if (miss != null && miss.isValid(portProperties()))
+            throw new NoSuchPortException();
+        // Windows port names like COM3 are no files
+        if (File.separatorChar == '/' && !new File(s).exists())
+            throw new NoSuchPortException();
+
+        RXTXCommDriver driver;
+        synchronized (Sync) {
+            if (DirectDriver == null)
+                DirectDriver = new RXTXCommDriver();
+            driver = DirectDriver;
+        }
+        // outside of Sync, opening a slow device can block for seconds
+        if (!driver.testPort(s, type)) {
+            if (debug)
+                System.out.println("not a port!" + s);
+            throw new NoSuchPortException();
+        }
+
+        // waits for a running rescan, which may find the port
+        synchronized (Sync) {
+            index = Ports.get(s);
+            if (index == null) {
+                index = new CommPortIdentifier(s, null, type, driver);
+                index.Unconfirmed = true;
+                AddIdentifierToList(index);
+            }
+        }
+        return index;
+    }
+
     /*------------------------------------------------------------------------------
     	getPortIdentifier()
     	accept:
@@ -277,14 +469,10 @@ public class CommPortIdentifier extends Object /* extends Vector? */
     static public CommPortIdentifier getPortIdentifier(CommPort p) throws NoSuchPortException {
         if (debug)
             System.out.println("CommPortIdentifier:getPortIdentifier(CommPort)");
-        CommPortIdentifier c;
-        synchronized (Sync) {
-            c = CommPortIndex;
-            while (c != null && c.commport != p)
-                c = c.next;
+        for (CommPortIdentifier c : Ports.values()) {
+            if (c.commport == p)
+                return (c);
         }
-        if (c != null)
-            return (c);
 
         if (debug)
             System.out.println("not found!" + p.getName());
@@ -297,59 +485,79 @@ public class CommPortIdentifier extends Object /* extends Vector? */
     	perform:
     	return:
     	exceptions:
-    	comments:
+    	comments:    While an RXTXPortDiscovery runs the known ports are
+    	             returned without rescanning.
     ------------------------------------------------------------------------------*/
     static public Enumeration<CommPortIdentifier> getPortIdentifiers() {
         if (debug)
             System.out.println("static CommPortIdentifier:getPortIdentifiers()");
-        // Do not allow anybody get any ports while we are re-initializing
-        // because the CommPortIndex points to invalid instances during that time
+        String properties = portProperties();
+        if (Discoveries > 0 && properties.equals(ScannedProperties))
+            return new CommPortEnumerator(getKnownPorts());
+        // Lookups keep using the old ports until the rescan is complete
         synchronized (Sync) {
             // Remember old ports in order to restore them for ownership events later
-            HashMap<String, CommPortIdentifier> oldPorts = new HashMap<String, CommPortIdentifier>();
-            CommPortIdentifier p = CommPortIndex;
-            while (p != null) {
-                oldPorts.put(p.PortName, p);
-                p = p.next;
-            }
-            CommPortIndex = null;
+            Map<String, CommPortIdentifier> oldPorts = Ports;
+            RescannedPorts = new LinkedHashMap<String, CommPortIdentifier>();
+            Misses.clear();
             try {
                 // Initialize RXTX: This leads to detecting all ports
-                // and writing them into our CommPortIndex through our method
+                // and writing them into RescannedPorts through our method
                 // {@link #addPortName(java.lang.String, int, gnu.io.CommDriver)}
                 // This works while lock on Sync is held
                 CommDriver RXTXDriver = (CommDriver) Class.forName("gnu.io.RXTXCommDriver").newInstance();
                 RXTXDriver.initialize();
+                for (CommPortIdentifier nullModemPort : NullModemPorts.values()) {
+                    AddIdentifierToList(nullModemPort);
+                }
                 // Restore old CommPortIdentifier objects where possible,
                 // in order to support proper ownership event handling.
                 // Clients might still have references to old identifiers!
-                CommPortIdentifier curPort = CommPortIndex;
-                CommPortIdentifier prevPort = null;
-                while (curPort != null) {
+                Map<String, CommPortIdentifier> ports = new LinkedHashMap<String, CommPortIdentifier>();
+                for (CommPortIdentifier curPort : RescannedPorts.values()) {
                     CommPortIdentifier matchingOldPort = oldPorts.get(curPort.PortName);
                     if (matchingOldPort != null && matchingOldPort.PortType == curPort.PortType) {
                         // replace new port by old one
                         matchingOldPort.RXTXDriver = curPort.RXTXDriver;
-                        matchingOldPort.next = curPort.next;
-                        if (prevPort == null) {
-                            CommPortIndex = matchingOldPort;
-                        }
-                        else {
-                            prevPort.next = matchingOldPort;
-                        }
-                        prevPort = matchingOldPort;
+                        ports.put(curPort.PortName, matchingOldPort);
                     }
                     else {
-                        prevPort = curPort;
+                        ports.put(curPort.PortName, curPort);
                     }
-                    curPort = curPort.next;
                 }
+                Ports = ports;
+                ScannedProperties = properties;
             } catch (Throwable e) {
                 System.err.println(e + " thrown while loading " + "gnu.io.RXTXCommDriver");
                 System.err.flush();
+            } finally {
+                RescannedPorts = null;
+                Rescans++;
             }
         }
-        return new CommPortEnumerator();
+        return new CommPortEnumerator(getKnownPorts());
+    }
+
+    /*
+     * The properties RXTXCommDriver takes port names from, a negative lookup is only valid as long as they don't change
+     */
+    private static String portProperties() {
+        return System.getProperty("gnu.io.rxtx.SerialPorts") + "|" + System.getProperty("gnu.io.SerialPorts") + "|"
+                + System.getProperty("gnu.io.rxtx.ParallelPorts") + "|" + System.getProperty("gnu.io.ParallelPorts");
+    }
+
+    private static final class Miss {
+        private final long expires;
+        private final String properties;
+
+        Miss(long expires, String properties) {
+            this.expires = expires;
+            this.properties = properties;
+        }
+
+        boolean isValid(String properties) {
+            return System.nanoTime() - expires < 0 && this.properties.equals(properties);
+        }
     }
 
     /*------------------------------------------------------------------------------
@@ -406,6 +614,8 @@ public class CommPortIdentifier extends Object /* extends Vector? */
     	comments:
     ------------------------------------------------------------------------------*/
     private boolean HideOwnerEvents;
+    /* added by getPortIdentifier(String, int) and not opened yet */
+    private volatile boolean Unconfirmed;
 
     public CommPort open(String TheOwner, int i) throws gnu.io.PortInUseException {
         if (debug)
@@ -450,6 +660,7 @@ public class CommPortIdentifier extends Object /* extends Vector? */
                 commport = RXTXDriver.getCommPort(PortName, PortType);
             }
             if (commport != null) {
+                Unconfirmed = false;
                 fireOwnershipEvent(CommPortOwnershipListener.PORT_OWNED);
                 return commport;
             }
@@ -463,6 +674,8 @@ public class CommPortIdentifier extends Object /* extends Vector? */
                     this.Available = true;
                     this.Owner = null;
                 }
+                if (Unconfirmed)
+                    removeUnconfirmedPort();
             }
         }
     }
@@ -1,13 +1,18 @@
 package gnu.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
@@ -15,9 +20,18 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 /**
  * LibraryLoader to load a nested binary from a jar.
+ * <p>
+ * Libraries from a jar are extracted to a cache directory once and reused by later JVMs. Each library is stored in a
+ * subdirectory named after the CRC-32 and length of its content, and compared with the library in the jar before it
+ * is loaded. The cache
+ * directory is set with the system property <code>gnu.io.rxtx.LibraryCache</code>, it defaults to
+ * <code>$XDG_CACHE_HOME/jrxtx</code> or <code>~/.cache/jrxtx</code> (<code>~/Library/Caches/jrxtx</code> on Mac OS X,
+ * <code>%LOCALAPPDATA%\jrxtx\cache</code> on Windows). An empty value or an unusable directory extracts the libraries
+ * to temporary files that are deleted on exit instead.
  */
 class LibraryLoader {
     public static final Pattern FILE_NAME_PATTERN = Pattern.compile("^(.+)(\\.[^\\.]+)$");
@@ -120,23 +134,141 @@ class LibraryLoader {
         if (!matcher.matches()) {
             throw new LibLoadException("Filename '" + fileName + "' does not match pattern.");
         }
+        byte[] lib = readFully(is);
+
+        File cacheDirectory = cacheDirectory();
+        if (cacheDirectory != null) {
+            File cachedLib;
+            try {
+                cachedLib = cachedLibrary(cacheDirectory, new File(fileName).getName(), lib);
+            } catch (IOException e) {
+                // not writable, extract to a temporary file
+                cachedLib = null;
+            }
+            if (cachedLib != null) {
+                System.load(cachedLib.getAbsolutePath());
+                return;
+            }
+        }
+
         File tempFileLib = File.createTempFile(matcher.group(1), matcher.group(2));
         tempFileLib.deleteOnExit();
 
         FileOutputStream fos = null;
         try {
-
             fos = new FileOutputStream(tempFileLib);
-            byte[] buffer = new byte[2048];
-            int len;
-            while ((len = is.read(buffer)) > 0) {
-                fos.write(buffer, 0, len);
+            fos.write(lib);
+        } finally {
+            saveClose(fos);
+        }
+        System.load(tempFileLib.getAbsolutePath());
+    }
+
+    /**
+     * @return the directory libraries are cached in, null if they are extracted to temporary files.
+     */
+    static File cacheDirectory() {
+        String directory = System.getProperty("gnu.io.rxtx.LibraryCache");
+        if (directory != null) {
+            return directory.isEmpty() ? null : new File(directory);
+        }
+        String os = System.getProperty("os.name").toLowerCase();
+        String home = System.getProperty("user.home");
+        if (os.indexOf("windows") != -1) {
+            String localAppData = System.getenv("LOCALAPPDATA");
+            if (localAppData != null) {
+                return new File(new File(localAppData, "jrxtx"), "cache");
+            }
+        }
+        else if (os.indexOf("mac") != -1) {
+            if (home != null) {
+                return new File(home, "Library" + File.separator + "Caches" + File.separator + "jrxtx");
+            }
+        }
+        else {
+            String xdgCacheHome = System.getenv("XDG_CACHE_HOME");
+            if (xdgCacheHome != null && xdgCacheHome.length() > 0) {
+                return new File(xdgCacheHome, "jrxtx");
+            }
+        }
+        return home == null ? null : new File(new File(home, ".cache"), "jrxtx");
+    }
+
+    /**
+     * Returns the cached copy of a library, after writing it to the cache if it is missing or damaged. JVMs starting at
+     * the same time each write a temporary file and rename it, so a library is never loaded half written.
+     *
+     * @param cacheDirectory
+     *            the cache directory.
+     * @param name
+     *            the file name of the library.
+     * @param lib
+     *            the content of the library.
+     * @return the cached library.
+     * @throws IOException
+     *             if the library can't be written to the cache.
+     */
+    static File cachedLibrary(File cacheDirectory, String name, byte[] lib) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(lib);
+        File directory = new File(cacheDirectory, String.format("%08x-%d", crc.getValue(), lib.length));
+        File cachedLib = new File(directory, name);
+        if (isCopy(cachedLib, lib)) {
+            return cachedLib;
+        }
+
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File tempFileLib = File.createTempFile(name, ".tmp", directory);
+        try {
+            FileOutputStream fos = new FileOutputStream(tempFileLib);
+            try {
+                fos.write(lib);
+                fos.getFD().sync();
+            } finally {
+                saveClose(fos);
+            }
+            try {
+                Files.move(tempFileLib.toPath(), cachedLib.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Windows does not replace a library another JVM has loaded, fine if that one is intact
+                if (!isCopy(cachedLib, lib)) {
+                    throw e;
+                }
             }
+        } finally {
+            tempFileLib.delete();
+        }
+        return cachedLib;
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256 * 1024);
+        byte[] buffer = new byte[64 * 1024];
+        int len;
+        while ((len = is.read(buffer)) > 0) {
+            bos.write(buffer, 0, len);
+        }
+        return bos.toByteArray();
+    }
 
-            System.load(tempFileLib.getAbsolutePath());
+    /*
+     * A byte by byte comparison costs no more than a checksum of the file and SHA-256 would add the start up of the
+     * security providers to every JVM start.
+     */
+    private static boolean isCopy(File file, byte[] content) throws IOException {
+        if (!file.isFile() || file.length() != content.length) {
+            return false;
+        }
+        byte[] fileContent;
+        InputStream is = new FileInputStream(file);
+        try {
+            fileContent = readFully(is);
         } finally {
-            saveClose(fos);
+            saveClose(is);
         }
+        return Arrays.equals(fileContent, content);
     }
 
     private static void saveClose(Closeable closeable) throws IOException {
@@ -65,9 +65,19 @@ package gnu.io;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * This is the JavaComm for Linux driver.
@@ -78,6 +88,10 @@ public class RXTXCommDriver implements CommDriver {
     private final static boolean devel = false;
     private final static boolean noVersionOutput = "true".equals(System.getProperty("gnu.io.rxtx.NoVersionOutput"));
     private final static int MAXIMUM_NUMBER_OF_COM_PORTS = 4096;
+    /* number of ports tested at a time while scanning */
+    private final static int PROBE_THREADS = Math.max(1, Integer.getInteger("gnu.io.rxtx.ProbeThreads", 16));
+    /* ms after which testing a port counts as failed */
+    private final static long PROBE_TIMEOUT = Long.getLong("gnu.io.rxtx.ProbeTimeout", 3000);
 
     static {
         if (debug)
@@ -122,7 +136,7 @@ public class RXTXCommDriver implements CommDriver {
 
     /** Get the Serial port prefixes for the running OS */
     private String deviceDirectory;
-    private String osName;
+    private String osName = System.getProperty("os.name");
 
     private native boolean registerKnownPorts(int PortType);
 
@@ -186,19 +200,170 @@ public class RXTXCommDriver implements CommDriver {
     }
 
     /** handle solaris/sunos /dev/cua/a convention */
-    private void checkSolaris(String PortName, int PortType) {
+    private void checkSolaris(String PortName, List<String> PortNames) {
         char p[] = { 91 };
         for (p[0] = 97; p[0] < 123; p[0]++) {
-            if (testRead(PortName.concat(new String(p)), PortType)) {
-                CommPortIdentifier.addPortName(PortName.concat(new String(p)), PortType, this);
-            }
+            PortNames.add(PortName.concat(new String(p)));
         }
         /** check for 0-9 in case we have them (Solaris USB) */
         for (p[0] = 48; p[0] <= 57; p[0]++) {
-            if (testRead(PortName.concat(new String(p)), PortType)) {
-                CommPortIdentifier.addPortName(PortName.concat(new String(p)), PortType, this);
+            PortNames.add(PortName.concat(new String(p)));
+        }
+    }
+
+    /*
+     * Registers the ports that testRead() succeeds for, in the order of PortNames. Up to PROBE_THREADS ports are tested
+     * at a time, as opening a slow USB CDC or rfcomm device can block for seconds. A test taking longer than
+     * PROBE_TIMEOUT ms counts as failed, it is left to finish in the background and another thread takes its place.
+     */
+    private void registerReadablePorts(List<String> PortNames, int PortType) {
+        boolean[] readable = new boolean[PortNames.size()];
+        if (PortNames.size() > 1 && PROBE_THREADS > 1) {
+            probe(PortNames, PortType, readable);
+        }
+        else {
+            for (int i = 0; i < readable.length; i++) {
+                readable[i] = testRead(PortNames.get(i), PortType);
+            }
+        }
+        for (int i = 0; i < readable.length; i++) {
+            if (debug)
+                System.out.println((readable[i] ? "Success: Read from " : "Fail: Cannot read from ")
+                        + PortNames.get(i) + ".");
+            if (readable[i]) {
+                CommPortIdentifier.addPortName(PortNames.get(i), PortType, this);
+            }
+        }
+    }
+
+    private void probe(List<String> PortNames, int PortType, boolean[] readable) {
+        int threads = Math.min(PROBE_THREADS, PortNames.size());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "RXTX port probe");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            Probe[] probes = new Probe[PortNames.size()];
+            for (int i = 0; i < probes.length; i++) {
+                probes[i] = new Probe(PortNames.get(i), PortType);
+                executor.execute(probes[i]);
+            }
+            for (int i = 0; i < probes.length; i++) {
+                readable[i] = probes[i].await(executor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private final class Probe extends FutureTask<Boolean> {
+        private volatile long started;
+
+        Probe(final String PortName, final int PortType) {
+            super(new Callable<Boolean>() {
+                public Boolean call() {
+                    return testRead(PortName, PortType);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            started = System.nanoTime();
+            super.run();
+        }
+
+        boolean await(ThreadPoolExecutor executor) throws InterruptedException {
+            long timeout = TimeUnit.MILLISECONDS.toNanos(PROBE_TIMEOUT);
+            for (;;) {
+                long started = this.started;
+                long wait = started == 0 ? timeout : started + timeout - System.nanoTime();
+                try {
+                    return get(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException e) {
+                    return false;
+                } catch (TimeoutException e) {
+                    if (started != 0) {
+                        if (debug)
+                            System.out.println("RXTXCommDriver: probe timed out");
+                        cancel(false);
+                        // the blocked thread can't be stopped, let another one take the next port
+                        executor.setMaximumPoolSize(executor.getMaximumPoolSize() + 1);
+                        executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+
+    /* ttyS0 has the prefix ttyS, ttySI0 and ttyS0a don't */
+    private static boolean hasPortPrefix(String C, String V) {
+        int VL = V.length();
+        if (C.length() < VL)
+            return false;
+        String CU = C.substring(VL).toUpperCase();
+        String Cl = C.substring(VL).toLowerCase();
+        return C.regionMatches(0, V, 0, VL) && CU.equals(Cl);
+    }
+
+    /**
+     * Checks an entry that appeared in a directory watched by {@link RXTXPortDiscovery}.
+     *
+     * @param directory
+     *            the directory, ending with a separator.
+     * @param name
+     *            the name of the entry.
+     * @param prefixed
+     *            true to accept only names with a port prefix of this OS, like the entries of the device directory
+     *            are scanned. False for directories that only contain ports, like /dev/serial/by-id.
+     * @return the port type or 0 if the entry is no port that can be opened.
+     */
+    int probePort(String directory, String name, boolean prefixed) {
+        for (int PortType = CommPortIdentifier.PORT_SERIAL; PortType <= CommPortIdentifier.PORT_PARALLEL; PortType++) {
+            boolean candidate = !prefixed;
+            if (prefixed) {
+                for (String prefix : getCandidatePortPrefixes(PortType)) {
+                    if (hasPortPrefix(name, prefix)) {
+                        candidate = true;
+                        break;
+                    }
+                }
+            }
+            if (candidate && testRead(directory + name, PortType)) {
+                return PortType;
+            }
+            if (!prefixed) {
+                // a directory of links to serial ports
+                break;
             }
         }
+        return 0;
+    }
+
+    /**
+     * Checks a device added by {@link CommPortIdentifier#getPortIdentifier(String, int)} like a rescan does.
+     *
+     * @return true if the device can be opened as a port of the given type.
+     */
+    boolean testPort(String name, int PortType) {
+        return testRead(name, PortType);
+    }
+
+    /**
+     * @return the directory the ports of this OS are found in.
+     */
+    String getPortDirectory() {
+        if (deviceDirectory == null) {
+            deviceDirectory = getDeviceDirectory();
+        }
+        return deviceDirectory;
     }
 
     private void registerValidPorts(String CandidateDeviceNames[], String ValidPortPrefixes[], int PortType) {
@@ -222,6 +387,7 @@ public class RXTXCommDriver implements CommDriver {
                 System.out.println("  " + ValidPortPrefixes[pp]);
             /* */
         }
+        List<String> PortNames = new ArrayList<String>();
         if (CandidateDeviceNames != null && ValidPortPrefixes != null) {
             for (i = 0; i < CandidateDeviceNames.length; i++) {
                 for (p = 0; p < ValidPortPrefixes.length; p++) {
@@ -234,13 +400,8 @@ public class RXTXCommDriver implements CommDriver {
                      * If the above passes, we try to read from the port. If there is no err the port is added. Trent
                      */
                     String V = ValidPortPrefixes[p];
-                    int VL = V.length();
                     String C = CandidateDeviceNames[i];
-                    if (C.length() < VL)
-                        continue;
-                    String CU = C.substring(VL).toUpperCase();
-                    String Cl = C.substring(VL).toLowerCase();
-                    if (!(C.regionMatches(0, V, 0, VL) && CU.equals(Cl))) {
+                    if (!hasPortPrefix(C, V)) {
                         continue;
                     }
                     String PortName;
@@ -252,16 +413,15 @@ public class RXTXCommDriver implements CommDriver {
                     }
                     if (debug) {
                         System.out.println(C + " " + V);
-                        System.out.println(CU + " " + Cl);
                     }
                     if (osName.equals("Solaris") || osName.equals("SunOS"))
-                        checkSolaris(PortName, PortType);
-                    else if (testRead(PortName, PortType)) {
-                        CommPortIdentifier.addPortName(PortName, PortType, this);
-                    }
+                        checkSolaris(PortName, PortNames);
+                    else
+                        PortNames.add(PortName);
                 }
             }
         }
+        registerReadablePorts(PortNames, PortType);
         if (debug)
             System.out.println("Leaving registerValidPorts()");
     }
@@ -308,20 +468,14 @@ public class RXTXCommDriver implements CommDriver {
 
         if (debug)
             System.out.println("\nRXTXCommDriver:addSpecifiedPorts()");
+        List<String> PortNames = new ArrayList<String>();
         while (tok.hasMoreElements()) {
             String PortName = tok.nextToken();
             if (debug)
                 System.out.println("Trying " + PortName + ".");
-            if (testRead(PortName, PortType)) {
-                CommPortIdentifier.addPortName(PortName, PortType, this);
-                if (debug)
-                    System.out.println("Success: Read from " + PortName + ".");
-            }
-            else {
-                if (debug)
-                    System.out.println("Fail: Cannot read from " + PortName + ".");
-            }
+            PortNames.add(PortName);
         }
+        registerReadablePorts(PortNames, PortType);
     }
 
     /*
@@ -474,6 +628,13 @@ public class RXTXCommDriver implements CommDriver {
             return;
         }
 
+        registerValidPorts(CandidateDeviceNames, getCandidatePortPrefixes(PortType), PortType);
+    }
+
+    /*
+     * The prefixes of the device names that may be ports of the given type on this OS.
+     */
+    private String[] getCandidatePortPrefixes(int PortType) {
         String CandidatePortPrefixes[] = {};
         switch (PortType) {
         case CommPortIdentifier.PORT_SERIAL:
@@ -666,7 +827,7 @@ public class RXTXCommDriver implements CommDriver {
             if (debug)
                 System.out.println("Unknown PortType " + PortType + " passed to RXTXCommDriver.registerScannedPorts()");
         }
-        registerValidPorts(CandidateDeviceNames, CandidatePortPrefixes, PortType);
+        return CandidatePortPrefixes;
     }
 
     /*
@@ -692,7 +853,7 @@ public class RXTXCommDriver implements CommDriver {
                     return new RXTXPort(PortName);
                 }
                 else {
-                    return new RXTXPort(deviceDirectory + PortName);
+                    return new RXTXPort(getPortDirectory() + PortName);
                 }
             case CommPortIdentifier.PORT_PARALLEL:
                 return new LPRPort(PortName);
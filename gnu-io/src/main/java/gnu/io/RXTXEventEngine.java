@@ -0,0 +1,189 @@
+package gnu.io;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extension to CommAPI. Serves the events of all open {@link RXTXPort}s from a small, fixed number of native epoll
+ * loops instead of one MonitorThread per port.
+ * <p>
+ * The engine is turned on with the system property <code>gnu.io.rxtx.EventEngine=true</code> and used where the
+ * native library supports it (Linux). The number of loop threads is set with
+ * <code>gnu.io.rxtx.EventEngineThreads</code> (default 1).
+ * <p>
+ * SerialPortEventListeners are called on the loop thread unless an executor is set with
+ * {@link #setExecutor(Executor)}. A slow listener, e.g. one blocking in a read of the port, then delays the events of
+ * all ports of that loop. Events still queued in the executor are dropped once the listener was removed or the port
+ * closed.
+ */
+public final class RXTXEventEngine {
+
+    static {
+        // isEnabled() may be called before any port was opened
+        LibraryLoader.loadRxtxNative();
+    }
+
+    private static final int THREADS = Math.max(1, Integer.getInteger("gnu.io.rxtx.EventEngineThreads", 1));
+
+    private static volatile Executor executor;
+
+    private static Loop[] loops;
+    private static boolean supported = Boolean.getBoolean("gnu.io.rxtx.EventEngine");
+
+    private RXTXEventEngine() {
+    }
+
+    /**
+     * Sets the executor SerialPortEventListeners are called on. Events of one port may be delivered concurrently
+     * and out of order if the executor runs tasks in parallel.
+     *
+     * @param executor
+     *            the executor to use or null to call the listeners on the event loop thread.
+     */
+    public static void setExecutor(Executor executor) {
+        RXTXEventEngine.executor = executor;
+    }
+
+    /**
+     * @return the executor SerialPortEventListeners are called on, null if they are called on the event loop thread.
+     */
+    public static Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return true if ports are served by the event engine, false if each port has its own MonitorThread.
+     */
+    public static synchronized boolean isEnabled() {
+        return supported && getLoops() != null;
+    }
+
+    static void dispatch(Runnable task) {
+        Executor e = executor;
+        if (e == null) {
+            task.run();
+        }
+        else {
+            e.execute(task);
+        }
+    }
+
+    /**
+     * Hands the events of a port to the loop serving the fewest ports.
+     *
+     * @return the loop or null if the port has to start its own MonitorThread.
+     */
+    static synchronized Loop register(RXTXPort port) {
+        Loop[] loops = getLoops();
+        if (loops == null) {
+            return null;
+        }
+        Loop loop = loops[0];
+        for (Loop l : loops) {
+            if (l.ports.get() < loop.ports.get()) {
+                loop = l;
+            }
+        }
+        if (!nativeRegister(loop.handle, port)) {
+            return null;
+        }
+        loop.ports.incrementAndGet();
+        return loop;
+    }
+
+    /**
+     * Makes the loop drop the port and waits until it no longer serves it. An interrupt of the calling thread does not
+     * end the wait, the port could not get a new listener meanwhile. It is restored afterwards.
+     */
+    static void unregister(RXTXPort port, Loop loop) {
+        nativeInterrupt(loop.handle, port);
+        boolean interrupted = false;
+        try {
+            if (Thread.currentThread() != loop) {
+                long end = System.currentTimeMillis() + 3000;
+                long remaining = 3000;
+                while (remaining > 0) {
+                    try {
+                        port.waitForEventEngine(remaining);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    remaining = end - System.currentTimeMillis();
+                }
+            }
+        } finally {
+            // not synchronized, an open of another port holds the class monitor while the loop may call this
+            loop.ports.decrementAndGet();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Frees the native resources of a closed port.
+     */
+    static void release(RXTXPort port) {
+        nativeRelease(port);
+    }
+
+    private static Loop[] getLoops() {
+        if (!supported) {
+            return null;
+        }
+        if (loops == null) {
+            try {
+                Loop[] newLoops = new Loop[THREADS];
+                for (int i = 0; i < newLoops.length; i++) {
+                    long handle = nativeCreate();
+                    if (handle == 0) {
+                        // not started yet
+                        for (int j = 0; j < i; j++) {
+                            nativeDestroy(newLoops[j].handle);
+                        }
+                        supported = false;
+                        return null;
+                    }
+                    newLoops[i] = new Loop(handle, i);
+                }
+                for (Loop loop : newLoops) {
+                    loop.start();
+                }
+                loops = newLoops;
+            } catch (UnsatisfiedLinkError e) {
+                // native library without event engine
+                supported = false;
+            }
+        }
+        return loops;
+    }
+
+    static final class Loop extends Thread {
+        private final long handle;
+        private final AtomicInteger ports = new AtomicInteger();
+
+        Loop(long handle, int number) {
+            super("RXTX event engine " + number);
+            this.handle = handle;
+            setDaemon(true);
+        }
+
+        public void run() {
+            nativeRun(this.handle);
+        }
+    }
+
+    private native static long nativeCreate();
+
+    private native static boolean nativeRegister(long handle, RXTXPort port);
+
+    private native static void nativeInterrupt(long handle, RXTXPort port);
+
+    private native static void nativeRelease(RXTXPort port);
+
+    private native static void nativeRun(long handle);
+
+    private native static void nativeDestroy(long handle);
+
+}
@@ -0,0 +1,119 @@
+package gnu.io;
+
+import java.io.IOException;
+
+/**
+ * Extension to CommAPI. Two linked pseudo terminals standing in for two serial ports connected by a null modem cable:
+ * the bytes written to one port are received by the other. Lets tests and benchmarks run without serial hardware.
+ * <p>
+ * A thread of the null modem copies the bytes between the pseudo terminals. Baud rate, parity and the modem control
+ * lines have no effect. A port that is not read stops the other port from writing, as hardware flow control would.
+ * The ports are added to {@link CommPortIdentifier#getPortIdentifiers()} until the null modem is closed and are
+ * opened like other ports.
+ * <p>
+ * Not supported on other systems than Linux and by native libraries built before this class was added, the
+ * constructor throws an IOException then.
+ */
+public final class RXTXNullModem {
+
+    static {
+        LibraryLoader.loadRxtxNative();
+    }
+
+    private final long handle;
+    private final String[] portNames = new String[2];
+    private final Thread thread;
+    private boolean closed = false;
+
+    /**
+     * Creates the pseudo terminals and starts copying between them.
+     *
+     * @throws IOException
+     *             if the native library does not support null modems or no pseudo terminal could be created.
+     */
+    public RXTXNullModem() throws IOException {
+        long handle;
+        try {
+            handle = nativeCreate();
+        } catch (UnsatisfiedLinkError e) {
+            handle = 0;
+        }
+        if (handle == 0) {
+            throw new IOException("null modems are not supported by the native library");
+        }
+        this.handle = handle;
+        portNames[0] = nativeGetPortName(handle, 0);
+        portNames[1] = nativeGetPortName(handle, 1);
+        RXTXCommDriver driver = new RXTXCommDriver();
+        CommPortIdentifier.addNullModemPort(portNames[0], driver);
+        CommPortIdentifier.addNullModemPort(portNames[1], driver);
+
+        thread = new Thread("RXTX null modem " + portNames[0] + " " + portNames[1]) {
+            @Override
+            public void run() {
+                try {
+                    nativeRun(RXTXNullModem.this.handle);
+                } finally {
+                    CommPortIdentifier.removeNullModemPort(portNames[0]);
+                    CommPortIdentifier.removeNullModemPort(portNames[1]);
+                    synchronized (RXTXNullModem.this) {
+                        closed = true;
+                        nativeClose(RXTXNullModem.this.handle);
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the name of the first port, e.g. <code>/dev/pts/3</code>.
+     */
+    public String getPortName1() {
+        return portNames[0];
+    }
+
+    /**
+     * @return the name of the second port.
+     */
+    public String getPortName2() {
+        return portNames[1];
+    }
+
+    /**
+     * Stops copying, removes the ports from {@link CommPortIdentifier} and removes the pseudo terminals. Bytes not read
+     * yet are lost. Ports still open get I/O errors.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the thread of the null modem to end.
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            nativeWakeup(handle);
+        }
+        thread.join();
+    }
+
+    /**
+     * @return true until the null modem is closed.
+     */
+    public synchronized boolean isOpen() {
+        return !closed;
+    }
+
+    private native static long nativeCreate();
+
+    private native static String nativeGetPortName(long handle, int end);
+
+    private native static void nativeRun(long handle);
+
+    private native static void nativeWakeup(long handle);
+
+    private native static void nativeClose(long handle);
+
+}
@@ -0,0 +1,128 @@
+package gnu.io;
+
+import java.io.IOException;
+
+/**
+ * Extension to CommAPI. Waits until one of many {@link RXTXPort}s is readable or writable, so a single thread can serve
+ * many ports. The native side uses poll(2), a blocked {@link #poll(RXTXPort[], int[], int[], int, int)} can be ended
+ * from another thread with {@link #wakeup()}.
+ * <p>
+ * Not supported on Windows and by native libraries built before this class was added, the constructor throws an
+ * IOException then.
+ */
+public final class RXTXPoller {
+
+    /** The port has received bytes or was closed or hung up. */
+    public static final int READ = 1;
+
+    /** The port can be written without blocking. */
+    public static final int WRITE = 4;
+
+    private final int wakeupReadFd;
+    private final int wakeupWriteFd;
+    private volatile boolean closed = false;
+    /* the write end of the wakeup pipe is not closed during a wakeup */
+    private final Object closeLock = new Object();
+
+    /**
+     * Creates a poller.
+     *
+     * @throws IOException
+     *             if the native library does not support polling.
+     */
+    public RXTXPoller() throws IOException {
+        int[] fds = new int[2];
+        try {
+            nativeCreate(fds);
+        } catch (UnsatisfiedLinkError e) {
+            throw new IOException("polling is not supported by the native library");
+        }
+        wakeupReadFd = fds[0];
+        wakeupWriteFd = fds[1];
+    }
+
+    /**
+     * Waits until at least one of the ports is ready for one of its operations, the timeout elapsed or
+     * {@link #wakeup()} was called.
+     *
+     * @param ports
+     *            the ports to wait for. Closed ports are ignored.
+     * @param ops
+     *            the operations to wait for per port, a combination of {@link #READ} and {@link #WRITE}.
+     * @param ready
+     *            receives the operations each port is ready for. A port is readable as well if its receive buffer or
+     *            {@link RXTXPort#readUntil(byte[], int, int, byte[], int)} holds bytes not read yet.
+     * @param count
+     *            the number of ports in the arrays.
+     * @param timeout
+     *            the maximum time to wait in milliseconds, 0 to return immediately, -1 to wait without timeout.
+     * @return the number of ready ports.
+     * @throws IOException
+     *             if the poller is closed or poll(2) failed.
+     */
+    public int poll(RXTXPort[] ports, int[] ops, int[] ready, int count, int timeout) throws IOException {
+        if (closed) {
+            throw new IOException("poller is closed");
+        }
+        int[] fds = new int[count];
+        boolean[] buffered = new boolean[count];
+        boolean anyBuffered = false;
+        for (int i = 0; i < count; i++) {
+            int fd = ports[i].getFd();
+            fds[i] = fd > 0 ? fd : -1;
+            // bytes the receive buffer or readUntil() already took from the port are invisible to poll(2)
+            if (fd > 0 && (ops[i] & READ) != 0 && ports[i].getBufferedBytes() > 0) {
+                buffered[i] = true;
+                anyBuffered = true;
+            }
+        }
+        int result = nativePoll(wakeupReadFd, fds, ops, ready, count, anyBuffered ? 0 : timeout);
+        if (anyBuffered) {
+            result = 0;
+            for (int i = 0; i < count; i++) {
+                if (buffered[i]) {
+                    ready[i] |= READ;
+                }
+                if (ready[i] != 0) {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Makes a blocked poll return immediately. If no poll is in progress the next one returns immediately.
+     */
+    public void wakeup() {
+        // not the monitor of the poller, callers may hold it while polling
+        synchronized (closeLock) {
+            if (!closed) {
+                nativeWakeup(wakeupWriteFd);
+            }
+        }
+    }
+
+    /**
+     * Frees the native resources. Must not be called while a poll is in progress.
+     */
+    public void close() {
+        synchronized (closeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            nativeClose(wakeupReadFd, wakeupWriteFd);
+        }
+    }
+
+    private native static boolean nativeCreate(int[] fds) throws IOException;
+
+    private native static void nativeWakeup(int wakeupWriteFd);
+
+    private native static void nativeClose(int wakeupReadFd, int wakeupWriteFd);
+
+    private native static int nativePoll(int wakeupReadFd, int[] fds, int[] ops, int[] ready, int count, int timeout)
+            throws IOException;
+
+}
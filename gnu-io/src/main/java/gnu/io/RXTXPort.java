@@ -59,8 +59,15 @@ package gnu.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.TooManyListenersException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * An extension of gnu.io.SerialPort
@@ -126,11 +133,9 @@ final public class RXTXPort extends SerialPort {
         fd = open(name);
         this.name = name;
 
-        MonitorThreadLock = true;
-        monThread = new MonitorThread();
-        monThread.start();
-        waitForTheNativeCodeSilly();
-        MonitorThreadAlive = true;
+        useEventEngine = RXTXEventEngine.isEnabled();
+        lastStatistics = readStatistics();
+        startMonitorThread();
         // } catch ( PortInUseException e ){}
         timeout = -1; /* default disabled timeout */
         if (debug)
@@ -139,13 +144,68 @@ final public class RXTXPort extends SerialPort {
 
     private native synchronized int open(String name) throws PortInUseException;
 
-    /* dont close the file while accessing the fd */
+    /*
+     * dont close the file while accessing the fd. java.util.concurrent locks instead of monitors, so virtual threads
+     * waiting for them don't pin their carrier thread.
+     */
     int IOLocked = 0;
-    Object IOLockedMutex = new Object();
+    private final ReentrantLock IOLockedMutex = new ReentrantLock();
+    private final Condition IOUnlocked = IOLockedMutex.newCondition();
+    /*
+     * set by close() once IOLocked dropped to 0. I/O that checked fd before and locks afterwards would use the event
+     * info of the stopped event loop and the closed fd.
+     */
+    private boolean IOClosed = false;
+    /* set by wakeNativeReads() while the wakeup pipe is readable, guarded by IOLockedMutex */
+    private boolean wakeupPending = false;
+
+    private void lockIO() throws IOException {
+        IOLockedMutex.lock();
+        try {
+            if (IOClosed)
+                throw new IOException("port closed");
+            IOLocked++;
+        } finally {
+            IOLockedMutex.unlock();
+        }
+    }
+
+    private void unlockIO() {
+        IOLockedMutex.lock();
+        try {
+            IOLocked--;
+            if (IOLocked == 0 && wakeupPending) {
+                // the reads woken up by interruptRead() have left, the next ones block again
+                wakeupPending = false;
+                try {
+                    nativeClearInterruptRead();
+                } catch (UnsatisfiedLinkError e) {
+                    z.reportln(Zystem.WARNING, "RXTXPort:unlockIO wakeup pipe not drained");
+                }
+            }
+            IOUnlocked.signalAll();
+        } finally {
+            IOLockedMutex.unlock();
+        }
+    }
 
     /** File descriptor */
     private int fd = 0;
 
+    /**
+     * @return the file descriptor, 0 if the port is closed.
+     */
+    int getFd() {
+        return fd;
+    }
+
+    /**
+     * Both ends of the pipe used to wake up a blocking read. Set by the native open, -1 if the native library does not
+     * support it.
+     */
+    int wakeupReadFd = -1;
+    int wakeupWriteFd = -1;
+
     /**
      * a pointer to the event info structure used to share information between threads so write threads can send output
      * buffer empty from a pthread if need be.
@@ -188,6 +248,223 @@ final public class RXTXPort extends SerialPort {
         return in;
     }
 
+    /**
+     * Extension to CommAPI. Reads bytes into a buffer, direct buffers are filled by the native code without copying.
+     * Blocks until at least one byte is available or the receive timeout expires and then returns all bytes already
+     * received, up to dst.remaining(). The receive threshold is not used.
+     * 
+     * @param dst
+     *            the buffer to read into
+     * @return the number of bytes read, 0 on timeout
+     * @throws IOException
+     *             if the port is closed or reading fails
+     */
+    public int read(ByteBuffer dst) throws IOException {
+        if (debug_read)
+            z.reportln("RXTXPort:read(ByteBuffer) called " + dst.remaining());
+        if (fd == 0) {
+            throw new IOException();
+        }
+        int len = dst.remaining();
+        if (len == 0) {
+            return 0;
+        }
+        if (framingDelimiter != null) {
+            return readIndirect(dst, len);
+        }
+        if (lookaheadCount > 0) {
+            return takeLookahead(dst);
+        }
+        ReceiveBuffer buffer = receiveBuffer;
+        if (buffer != null) {
+            return buffer.read(dst, 1, timeout);
+        }
+        if (isVirtualThread()) {
+            int a = awaitAvailable(1);
+            if (a == 0) {
+                return 0;
+            }
+            len = Math.min(len, a);
+        }
+        if (!dst.isDirect() || !directBufferSupported) {
+            return readIndirect(dst, len);
+        }
+        if (monThreadisInterrupted == true) {
+            return 0;
+        }
+        lockIO();
+        try {
+            waitForTheNativeCodeSilly();
+            int pos = dst.position();
+            int result = readDirectBuffer(dst, pos, len);
+            if (result > 0) {
+                dst.position(pos + result);
+            }
+            return result;
+        } catch (UnsatisfiedLinkError e) {
+            directBufferSupported = false;
+        } finally {
+            unlockIO();
+        }
+        return readIndirect(dst, len);
+    }
+
+    private int readIndirect(ByteBuffer dst, int len) throws IOException {
+        if (dst.hasArray()) {
+            int pos = dst.position();
+            int result = in.read(dst.array(), dst.arrayOffset() + pos, len);
+            if (result > 0) {
+                dst.position(pos + result);
+            }
+            return result;
+        }
+        byte[] buffer = new byte[Math.min(len, 4096)];
+        int result = in.read(buffer, 0, buffer.length);
+        if (result > 0) {
+            dst.put(buffer, 0, result);
+        }
+        return result;
+    }
+
+    /**
+     * Extension to CommAPI. Writes all remaining bytes of a buffer, direct buffers are written by the native code
+     * without copying.
+     * 
+     * @param src
+     *            the buffer to write
+     * @return the number of bytes written
+     * @throws IOException
+     *             if the port is closed or writing fails
+     */
+    public int write(ByteBuffer src) throws IOException {
+        if (debug_write)
+            z.reportln("RXTXPort:write(ByteBuffer) called " + src.remaining());
+        int len = src.remaining();
+        if (speed == 0 || len == 0)
+            return 0;
+        if (!src.isDirect() || !directBufferSupported || isCoalescing()) {
+            return writeIndirect(src, len);
+        }
+        if (fd == 0)
+            throw new IOException();
+        if (monThreadisInterrupted == true) {
+            return 0;
+        }
+        lockIO();
+        try {
+            waitForTheNativeCodeSilly();
+            int pos = src.position();
+            writeDirectBuffer(src, pos, len, monThreadisInterrupted);
+            src.position(pos + len);
+            return len;
+        } catch (UnsatisfiedLinkError e) {
+            directBufferSupported = false;
+        } finally {
+            unlockIO();
+        }
+        return writeIndirect(src, len);
+    }
+
+    private int writeIndirect(ByteBuffer src, int len) throws IOException {
+        if (src.hasArray()) {
+            out.write(src.array(), src.arrayOffset() + src.position(), len);
+            src.position(src.position() + len);
+            return len;
+        }
+        byte[] buffer = new byte[Math.min(len, 4096)];
+        while (src.hasRemaining()) {
+            int n = Math.min(buffer.length, src.remaining());
+            src.get(buffer, 0, n);
+            out.write(buffer, 0, n);
+        }
+        return len;
+    }
+
+    /**
+     * Extension to CommAPI. Writes all remaining bytes of several buffers, e.g. header, body and checksum of a frame, in
+     * one native write without concatenating them first. Direct buffers are written from their memory, the bytes of
+     * heap buffers are copied once by the native code.
+     * <p>
+     * While {@link #enableOutputCoalescing(int)} is enabled or if the native library does not support it, the buffers
+     * are written one after the other by {@link #write(ByteBuffer)}.
+     * 
+     * @param srcs
+     *            the buffers to write
+     * @param offset
+     *            the index of the first buffer to write
+     * @param length
+     *            the number of buffers to write
+     * @return the number of bytes written
+     * @throws IOException
+     *             if the port is closed or writing fails
+     */
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > srcs.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (debug_write)
+            z.reportln("RXTXPort:write(ByteBuffer[]) called " + length);
+        if (speed == 0)
+            return 0;
+        if (length == 1 || !gatherSupported || isCoalescing()) {
+            return writeEach(srcs, offset, length);
+        }
+        Object[] parts = new Object[length];
+        int[] offsets = new int[length];
+        int[] counts = new int[length];
+        long total = 0;
+        for (int i = 0; i < length; i++) {
+            ByteBuffer src = srcs[offset + i];
+            counts[i] = src.remaining();
+            if (src.isDirect()) {
+                parts[i] = src;
+                offsets[i] = src.position();
+            }
+            else if (src.hasArray()) {
+                parts[i] = src.array();
+                offsets[i] = src.arrayOffset() + src.position();
+            }
+            else {
+                // read-only heap buffer
+                byte[] copy = new byte[counts[i]];
+                src.duplicate().get(copy);
+                parts[i] = copy;
+            }
+            total += counts[i];
+        }
+        if (fd == 0)
+            throw new IOException();
+        if (monThreadisInterrupted == true) {
+            return 0;
+        }
+        lockIO();
+        try {
+            waitForTheNativeCodeSilly();
+            writeGather(parts, offsets, counts, length, monThreadisInterrupted);
+        } catch (UnsatisfiedLinkError e) {
+            gatherSupported = false;
+            total = -1;
+        } finally {
+            unlockIO();
+        }
+        if (total < 0) {
+            return writeEach(srcs, offset, length);
+        }
+        for (int i = 0; i < length; i++) {
+            ByteBuffer src = srcs[offset + i];
+            src.position(src.position() + counts[i]);
+        }
+        return total;
+    }
+
+    private long writeEach(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            total += write(srcs[i]);
+        }
+        return total;
+    }
+
     /**
      * Set the SerialPort parameters 1.5 stop bits requires 5 databits
      * 
@@ -208,7 +485,8 @@ final public class RXTXPort extends SerialPort {
 
     private native int nativeGetFlowControlMode(int fd);
 
-    public synchronized void setSerialPortParams(int b, int d, int s, int p) throws UnsupportedCommOperationException {
+    public synchronized void setSerialPortParams(final int b, final int d, final int s, final int p)
+            throws UnsupportedCommOperationException {
         if (debug)
             z.reportln("RXTXPort:setSerialPortParams(" + b + " " + d + " " + s + " " + p + ") called");
         if (nativeSetSerialPortParams(b, d, s, p))
@@ -220,7 +498,11 @@ final public class RXTXPort extends SerialPort {
             dataBits = d;
         stopBits = s;
         parity = p;
-        z.reportln("RXTXPort:setSerialPortParams(" + b + " " + d + " " + s + " " + p + ") returning");
+        z.reportln(Zystem.DEBUG, new Supplier<String>() {
+            public String get() {
+                return "RXTXPort:setSerialPortParams(" + b + " " + d + " " + s + " " + p + ") returning";
+            }
+        });
     }
 
     /**
@@ -316,45 +598,68 @@ final public class RXTXPort extends SerialPort {
 
     native void setflowcontrol(int flowcontrol) throws IOException;
 
-    /*
-     * linux/drivers/char/n_hdlc.c? FIXME taj@www.linux.org.uk
-     */
+    /* the framing byte of enableReceiveFraming(), null if disabled */
+    private volatile byte[] framingDelimiter;
+
     /**
-     * Receive framing control
+     * Receive framing control. While enabled, reads of the input stream and {@link #read(ByteBuffer)} return as soon
+     * as the framing byte was read, ending with it, e.g. the END of SLIP or the flag of HDLC. The native code reads the
+     * bytes that arrived together and splits them on the framing byte, see
+     * {@link #readUntil(byte[], int, int, byte[], int)}. The bytes after it are returned by the next reads.
+     * <p>
+     * The receive timeout applies to the whole frame, on timeout the bytes read so far are returned. The receive
+     * threshold is ignored while framing is enabled.
      * 
      * @param f
-     *            framming
+     *            the framing byte, only the low 8 bits are used
      * @throws UnsupportedCommOperationException
+     *             if the native library does not support it
      */
     public void enableReceiveFraming(int f) throws UnsupportedCommOperationException {
         if (debug)
-            z.reportln("RXTXPort:enableReceiveFramming() throwing exception");
-        throw new UnsupportedCommOperationException("Not supported");
+            z.reportln("RXTXPort:enableReceiveFraming( " + f + " ) called");
+        byte[] delimiter = { (byte) f };
+        if (receiveBuffer == null) {
+            try {
+                // reads nothing and returns right away
+                readUntilArray(delimiter, 0, 0, delimiter, 0, new int[1]);
+            } catch (UnsatisfiedLinkError e) {
+                throw new UnsupportedCommOperationException("Receive framing is not supported by the native library");
+            } catch (IOException e) {
+                throw new UnsupportedCommOperationException(e.getMessage());
+            }
+        }
+        framingDelimiter = delimiter;
     }
 
-    /** 
-    */
+    /**
+     * Disables receive framing, the bytes read after the last framing byte are returned by the next reads.
+     */
     public void disableReceiveFraming() {
         if (debug)
-            z.reportln("RXTXPort:disableReceiveFramming() called and returning (noop)");
+            z.reportln("RXTXPort:disableReceiveFraming() called");
+        framingDelimiter = null;
     }
 
     /**
      * @return true if framing is enabled
      */
     public boolean isReceiveFramingEnabled() {
+        boolean enabled = framingDelimiter != null;
         if (debug)
-            z.reportln("RXTXPort:isReceiveFrammingEnabled() called and returning " + false);
-        return false;
+            z.reportln("RXTXPort:isReceiveFramingEnabled() called and returning " + enabled);
+        return enabled;
     }
 
     /**
-     * @return int representing the framing byte
+     * @return int representing the framing byte, 0 if framing is disabled
      */
     public int getReceiveFramingByte() {
+        byte[] delimiter = framingDelimiter;
+        int f = delimiter != null ? delimiter[0] & 0xff : 0;
         if (debug)
-            z.reportln("RXTXPort:getReceiveFrammingByte() called and returning " + 0);
-        return 0;
+            z.reportln("RXTXPort:getReceiveFramingByte() called and returning " + f);
+        return f;
     }
 
     /** Receive timeout control */
@@ -383,7 +688,7 @@ final public class RXTXPort extends SerialPort {
         if (debug)
             z.reportln("RXTXPort:disableReceiveTimeout() called");
         timeout = -1;
-        NativeEnableReceiveTimeoutThreshold(timeout, threshold, InputBuffer);
+        NativeEnableReceiveTimeoutThreshold(timeout, nativeThreshold(), InputBuffer);
         if (debug)
             z.reportln("RXTXPort:disableReceiveTimeout() returning");
     }
@@ -396,7 +701,7 @@ final public class RXTXPort extends SerialPort {
             z.reportln("RXTXPort:enableReceiveTimeout() called");
         if (time >= 0) {
             timeout = time;
-            NativeEnableReceiveTimeoutThreshold(time, threshold, InputBuffer);
+            NativeEnableReceiveTimeoutThreshold(time, nativeThreshold(), InputBuffer);
         }
         else {
             throw new IllegalArgumentException("Unexpected negative timeout value");
@@ -436,7 +741,7 @@ final public class RXTXPort extends SerialPort {
             z.reportln("RXTXPort:enableReceiveThreshold( " + thresh + " ) called");
         if (thresh >= 0) {
             threshold = thresh;
-            NativeEnableReceiveTimeoutThreshold(timeout, threshold, InputBuffer);
+            NativeEnableReceiveTimeoutThreshold(timeout, nativeThreshold(), InputBuffer);
         }
         else /* invalid thresh */
         {
@@ -446,6 +751,14 @@ final public class RXTXPort extends SerialPort {
             z.reportln("RXTXPort:enableReceiveThreshold( " + thresh + " ) returned");
     }
 
+    /*
+     * With a receive buffer the threshold is applied when reading the buffer. A larger VMIN would keep the buffer
+     * thread from seeing fewer bytes, poll() does not report them readable.
+     */
+    private int nativeThreshold() {
+        return receiveBuffer != null ? Math.min(threshold, 1) : threshold;
+    }
+
     /** 
     */
     public void disableReceiveThreshold() {
@@ -596,12 +909,103 @@ final public class RXTXPort extends SerialPort {
 
     protected native int readTerminatedArray(byte b[], int off, int len, byte t[]) throws IOException;
 
+    /**
+     * Waits for the first byte like readAvailableArray and reads all bytes already buffered, at most len. Sets end[0]
+     * to the number of bytes up to and including the first of the delimiters, -1 if none was read.
+     */
+    private native int readUntilArray(byte b[], int off, int len, byte delimiters[], int timeout, int end[])
+            throws IOException;
+
+    /**
+     * Waits for the first byte like readArray and returns it together with all bytes already buffered, at most len.
+     */
+    private native int readAvailableArray(byte b[], int off, int len) throws IOException;
+
+    /** false if the native library predates readAvailableArray */
+    private static volatile boolean readAvailableArraySupported = true;
+
+    private native int readDirectBuffer(ByteBuffer b, int off, int len) throws IOException;
+
+    /* like readAvailableArray and readDirectBuffer with their own timeout, used by the receive buffer */
+    private native int readAvailableArrayTimeout(byte b[], int off, int len, int timeout) throws IOException;
+
+    private native int readDirectBufferTimeout(ByteBuffer b, int off, int len, int timeout) throws IOException;
+
+    private native void writeDirectBuffer(ByteBuffer b, int off, int len, boolean i) throws IOException;
+
+    /** false if the native library predates readDirectBuffer and writeDirectBuffer */
+    private static volatile boolean directBufferSupported = true;
+
+    /* parts are direct ByteBuffers or byte arrays, written with writev */
+    private native void writeGather(Object[] parts, int[] offsets, int[] counts, int n, boolean i) throws IOException;
+
+    /** false if the native library predates writeGather */
+    private static volatile boolean gatherSupported = true;
+
     /** Serial Port Event listener */
-    private SerialPortEventListener SPEventListener;
+    private volatile SerialPortEventListener SPEventListener;
 
     /** Thread to monitor data */
     private MonitorThread monThread;
 
+    /**
+     * The RXTXEventEngine loop serving this port instead of monThread. monThread is not started then and only holds
+     * the event flags.
+     */
+    private volatile RXTXEventEngine.Loop engineLoop;
+    private boolean useEventEngine;
+    private final Object engineLock = new Object();
+    private boolean engineRegistered = false;
+
+    /**
+     * Start the MonitorThread or hand the port to the RXTXEventEngine and wait until the native code is ready.
+     */
+    private void startMonitorThread() {
+        MonitorThreadLock = true;
+        monThread = new MonitorThread();
+        if (useEventEngine) {
+            monThreadisInterrupted = false;
+            synchronized (engineLock) {
+                engineRegistered = true;
+            }
+            engineLoop = RXTXEventEngine.register(this);
+            if (engineLoop == null) {
+                if (debug)
+                    z.reportln("RXTXPort:startMonitorThread() event engine refused the port");
+                synchronized (engineLock) {
+                    engineRegistered = false;
+                }
+                useEventEngine = false;
+            }
+        }
+        if (engineLoop == null) {
+            monThread.start();
+        }
+        waitForTheNativeCodeSilly();
+        MonitorThreadAlive = true;
+    }
+
+    /**
+     * Called by the native code when the RXTXEventEngine no longer serves this port.
+     */
+    void eventEngineDetached() {
+        synchronized (engineLock) {
+            engineRegistered = false;
+            engineLock.notifyAll();
+        }
+    }
+
+    void waitForEventEngine(long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        synchronized (engineLock) {
+            long remaining = timeout;
+            while (engineRegistered && remaining > 0) {
+                engineLock.wait(remaining);
+                remaining = end - System.currentTimeMillis();
+            }
+        }
+    }
+
     /** Process SerialPortEvents */
     native void eventLoop();
 
@@ -633,6 +1037,9 @@ final public class RXTXPort extends SerialPort {
     public boolean sendEvent(int event, boolean state) {
         if (debug_events)
             z.report("RXTXPort:sendEvent(");
+        if (event == SerialPortEvent.DATA_AVAILABLE && parkingReaders) {
+            signalReadable();
+        }
         /* Let the native side know its time to die */
 
         if (fd == 0 || SPEventListener == null || monThread == null) {
@@ -735,7 +1142,7 @@ final public class RXTXPort extends SerialPort {
         }
         // if (debug_events && debug_verbose)
         // z.reportln(" getting event");
-        SerialPortEvent e = new SerialPortEvent(this, event, !state, state);
+        final SerialPortEvent e = new SerialPortEvent(this, event, !state, state);
         // if (debug_events && debug_verbose)
         // z.reportln(" sending event");
         if (monThreadisInterrupted) {
@@ -743,8 +1150,21 @@ final public class RXTXPort extends SerialPort {
                 z.reportln("	sendEvent return");
             return (true);
         }
-        if (SPEventListener != null) {
-            SPEventListener.serialEvent(e);
+        final SerialPortEventListener listener = SPEventListener;
+        if (listener != null) {
+            if (engineLoop != null) {
+                RXTXEventEngine.dispatch(new Runnable() {
+                    public void run() {
+                        // queued by an executor until after removeEventListener() or close()
+                        if (SPEventListener == listener) {
+                            listener.serialEvent(e);
+                        }
+                    }
+                });
+            }
+            else {
+                listener.serialEvent(e);
+            }
         }
 
         // if (debug_events && debug_verbose)
@@ -780,11 +1200,7 @@ final public class RXTXPort extends SerialPort {
         }
         SPEventListener = lsnr;
         if (!MonitorThreadAlive) {
-            MonitorThreadLock = true;
-            monThread = new MonitorThread();
-            monThread.start();
-            waitForTheNativeCodeSilly();
-            MonitorThreadAlive = true;
+            startMonitorThread();
         }
         if (debug)
             z.reportln("RXTXPort:Interrupt=false");
@@ -799,11 +1215,21 @@ final public class RXTXPort extends SerialPort {
         waitForTheNativeCodeSilly();
         // if( monThread != null && monThread.isAlive() )
         if (monThreadisInterrupted == true) {
-            z.reportln("	RXTXPort:removeEventListener() already interrupted");
+            z.reportln(Zystem.DEBUG, "	RXTXPort:removeEventListener() already interrupted");
             monThread = null;
             SPEventListener = null;
             return;
         }
+        else if (engineLoop != null) {
+            if (debug)
+                z.reportln("	RXTXPort:Interrupt=true, leaving the event engine");
+            monThreadisInterrupted = true;
+            try {
+                RXTXEventEngine.unregister(this, engineLoop);
+            } finally {
+                engineLoop = null;
+            }
+        }
         else if (monThread != null && monThread.isAlive()) {
             if (debug)
                 z.reportln("	RXTXPort:Interrupt=true");
@@ -839,7 +1265,7 @@ final public class RXTXPort extends SerialPort {
         MonitorThreadLock = false;
         MonitorThreadAlive = false;
         monThreadisInterrupted = true;
-        z.reportln("RXTXPort:removeEventListener() returning");
+        z.reportln(Zystem.DEBUG, "RXTXPort:removeEventListener() returning");
     }
 
     /**
@@ -871,7 +1297,8 @@ final public class RXTXPort extends SerialPort {
         waitForTheNativeCodeSilly();
 
         MonitorThreadLock = true;
-        nativeSetEventFlag(fd, SerialPortEvent.DATA_AVAILABLE, enable);
+        // readers on virtual threads depend on the event
+        nativeSetEventFlag(fd, SerialPortEvent.DATA_AVAILABLE, enable || parkingReaders);
         monThread.Data = enable;
         MonitorThreadLock = false;
     }
@@ -929,104 +1356,834 @@ final public class RXTXPort extends SerialPort {
     }
 
     /**
-     * @param enable
+     * @param enable
+     */
+    public void notifyOnCarrierDetect(boolean enable) {
+        if (debug)
+            z.reportln("RXTXPort:notifyOnCarrierDetect( " + enable + " )");
+        waitForTheNativeCodeSilly();
+        MonitorThreadLock = true;
+        nativeSetEventFlag(fd, SerialPortEvent.CD, enable);
+        monThread.CD = enable;
+        MonitorThreadLock = false;
+    }
+
+    /**
+     * @param enable
+     */
+    public void notifyOnOverrunError(boolean enable) {
+        if (debug)
+            z.reportln("RXTXPort:notifyOnOverrunError( " + enable + " )");
+        waitForTheNativeCodeSilly();
+        MonitorThreadLock = true;
+        nativeSetEventFlag(fd, SerialPortEvent.OE, enable);
+        monThread.OE = enable;
+        MonitorThreadLock = false;
+    }
+
+    /**
+     * @param enable
+     */
+    public void notifyOnParityError(boolean enable) {
+        if (debug)
+            z.reportln("RXTXPort:notifyOnParityError( " + enable + " )");
+        waitForTheNativeCodeSilly();
+        MonitorThreadLock = true;
+        nativeSetEventFlag(fd, SerialPortEvent.PE, enable);
+        monThread.PE = enable;
+        MonitorThreadLock = false;
+    }
+
+    /**
+     * @param enable
+     */
+    public void notifyOnFramingError(boolean enable) {
+        if (debug)
+            z.reportln("RXTXPort:notifyOnFramingError( " + enable + " )");
+        waitForTheNativeCodeSilly();
+        MonitorThreadLock = true;
+        nativeSetEventFlag(fd, SerialPortEvent.FE, enable);
+        monThread.FE = enable;
+        MonitorThreadLock = false;
+    }
+
+    /**
+     * @param enable
+     */
+    public void notifyOnBreakInterrupt(boolean enable) {
+        if (debug)
+            z.reportln("RXTXPort:notifyOnBreakInterrupt( " + enable + " )");
+        waitForTheNativeCodeSilly();
+        MonitorThreadLock = true;
+        nativeSetEventFlag(fd, SerialPortEvent.BI, enable);
+        monThread.BI = enable;
+        MonitorThreadLock = false;
+    }
+
+    /** Close the port */
+    private native void nativeClose(String name);
+
+    private native void nativeInterruptRead();
+
+    private native void nativeClearInterruptRead();
+
+    /**
+     * Extension to CommAPI. Wakes up threads blocked in a read on this port. The reads in progress fail with an
+     * IOException, later reads block again.
+     * 
+     * @see #isReadInterruptible()
+     */
+    public void interruptRead() {
+        if (debug)
+            z.reportln("RXTXPort:interruptRead()");
+        readableLock.lock();
+        try {
+            readInterrupts++;
+            readable.signalAll();
+        } finally {
+            readableLock.unlock();
+        }
+        ReceiveBuffer buffer = receiveBuffer;
+        if (buffer != null) {
+            // the thread of the buffer keeps reading
+            buffer.interrupt();
+        }
+        else {
+            wakeNativeReads();
+        }
+    }
+
+    /*
+     * Wakes up the threads in native reads. unlockIO() drains the wakeup pipe again when the last one left, a read
+     * starting later is not affected.
+     */
+    private void wakeNativeReads() {
+        if (wakeupWriteFd < 0) {
+            return;
+        }
+        IOLockedMutex.lock();
+        try {
+            if (IOLocked > 0 && !wakeupPending) {
+                wakeupPending = true;
+                nativeInterruptRead();
+            }
+        } finally {
+            IOLockedMutex.unlock();
+        }
+    }
+
+    /*
+     * Readers on virtual threads don't block in native code, which would pin their carrier thread. They park until
+     * sendEvent() reports DATA_AVAILABLE and then read the bytes already received.
+     */
+    private static final Method isVirtual = lookupIsVirtual();
+    private static final long READABLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private final ReentrantLock readableLock = new ReentrantLock();
+    private final Condition readable = readableLock.newCondition();
+    /* counts the calls of interruptRead(), guarded by readableLock */
+    private volatile int readInterrupts = 0;
+    private volatile boolean parkingReaders = false;
+
+    private static Method lookupIsVirtual() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            // before Java 21
+            return null;
+        }
+    }
+
+    static boolean isVirtualThread() {
+        if (isVirtual == null) {
+            return false;
+        }
+        try {
+            return (Boolean) isVirtual.invoke(Thread.currentThread());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void signalReadable() {
+        readableLock.lock();
+        try {
+            readable.signalAll();
+        } finally {
+            readableLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until at least minimum bytes were received or the receive timeout expired, without blocking in native
+     * code.
+     * 
+     * @return the number of bytes available, less than minimum on timeout
+     */
+    private int awaitAvailable(int minimum) throws IOException {
+        return awaitAvailable(minimum, timeout);
+    }
+
+    private int awaitAvailable(int minimum, int time) throws IOException {
+        if (!parkingReaders) {
+            parkingReaders = true;
+            nativeSetEventFlag(fd, SerialPortEvent.DATA_AVAILABLE, true);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(time);
+        readableLock.lock();
+        try {
+            int interrupts = readInterrupts;
+            while (true) {
+                if (fd == 0 || readInterrupts != interrupts) {
+                    throw new IOException("read interrupted");
+                }
+                int available = nativeavailable();
+                if (available >= minimum) {
+                    return available;
+                }
+                long wait = READABLE_POLL_NANOS;
+                if (time >= 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return available;
+                    }
+                    wait = Math.min(wait, remaining);
+                }
+                // sendEvent() signals with readableLock held, it can't slip in between nativeavailable() and here
+                readable.awaitNanos(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            readableLock.unlock();
+        }
+    }
+
+    /**
+     * Extension to CommAPI.
+     * 
+     * @return true if the native library supports {@link #interruptRead()}, reads with disabled timeout can be used
+     *         then without blocking close forever
+     */
+    public boolean isReadInterruptible() {
+        return wakeupReadFd >= 0;
+    }
+
+    /* set by enableReceiveBuffer(), the input stream reads from it instead of the port */
+    private volatile ReceiveBuffer receiveBuffer;
+
+    /**
+     * Extension to CommAPI. Starts a thread that reads the bytes received into a buffer as soon as they arrive. The
+     * input stream and {@link #read(ByteBuffer)} are served from the buffer without calling native code, with the same
+     * receive timeout and threshold. The buffer is drained into by the thread while the application is busy, so the
+     * smaller buffer of the driver doesn't overrun at high baud rates.
+     * <p>
+     * If the buffer is full the thread stops reading until bytes are taken, see {@link #getReceiveBufferStalls()}.
+     * Bytes lost by the driver meanwhile are counted by {@link SerialPortStatistics#getBufferOverruns()}. The thread
+     * sends the DATA_AVAILABLE events for the bytes it adds. The buffer stays enabled until the port is closed.
+     *
+     * @param size
+     *            the size of the buffer in bytes.
+     * @param direct
+     *            true to allocate the buffer outside of the Java heap. The thread reads into it without copying then,
+     *            reads into heap arrays copy once more.
+     * @throws UnsupportedCommOperationException
+     *             if the native library does not support it or the buffer is enabled already.
+     */
+    public synchronized void enableReceiveBuffer(int size, boolean direct) throws UnsupportedCommOperationException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Receive buffer size must be positive");
+        }
+        if (receiveBuffer != null) {
+            throw new UnsupportedCommOperationException("receive buffer is enabled already");
+        }
+        final ReceiveBuffer buffer = new ReceiveBuffer(size, direct);
+        try {
+            // returns right away, fails if the native library predates them
+            if (direct) {
+                readDirectBufferTimeout(buffer.buffer(), 0, 0, 0);
+            }
+            else {
+                readAvailableArrayTimeout(buffer.array(), 0, 0, 0);
+            }
+        } catch (UnsatisfiedLinkError e) {
+            throw new UnsupportedCommOperationException("receive buffers are not supported by the native library");
+        } catch (IOException e) {
+            throw new UnsupportedCommOperationException(e.getMessage());
+        }
+        if (!isReadInterruptible()) {
+            // close() couldn't wake up the thread
+            throw new UnsupportedCommOperationException("receive buffers are not supported by the native library");
+        }
+        Thread reader = new Thread("RXTX receive buffer " + name) {
+            @Override
+            public void run() {
+                fillReceiveBuffer(buffer);
+            }
+        };
+        reader.setDaemon(true);
+        receiveBuffer = buffer;
+        NativeEnableReceiveTimeoutThreshold(timeout, nativeThreshold(), InputBuffer);
+        reader.start();
+    }
+
+    /**
+     * Extension to CommAPI.
+     *
+     * @return the size of the buffer enabled by {@link #enableReceiveBuffer(int, boolean)}, 0 if it is not enabled.
+     */
+    public int getReceiveBufferSize() {
+        ReceiveBuffer buffer = receiveBuffer;
+        return buffer == null ? 0 : buffer.getCapacity();
+    }
+
+    /**
+     * Extension to CommAPI.
+     *
+     * @return the highest number of bytes that were in the receive buffer at once, 0 if it is not enabled.
+     */
+    public int getReceiveBufferPeak() {
+        ReceiveBuffer buffer = receiveBuffer;
+        return buffer == null ? 0 : buffer.getPeak();
+    }
+
+    /**
+     * Extension to CommAPI.
+     *
+     * @return how often the receive buffer was full and the thread had to stop reading from the port, 0 if it is not
+     *         enabled.
+     */
+    public long getReceiveBufferStalls() {
+        ReceiveBuffer buffer = receiveBuffer;
+        return buffer == null ? 0 : buffer.getStalls();
+    }
+
+    /*
+     * Reads of the input stream while the receive buffer is enabled, with the timeout and threshold of the port
+     */
+    private int readReceiveBuffer(ReceiveBuffer buffer, byte b[], int off, int len) throws IOException {
+        return buffer.read(b, off, len, threshold == 0 ? 1 : threshold, timeout);
+    }
+
+    /*
+     * The loop of the receive buffer thread. Ends when the port is closed or reading fails, readers get the
+     * IOException after the bytes received before.
+     */
+    private void fillReceiveBuffer(ReceiveBuffer buffer) {
+        try {
+            while (true) {
+                int offset = buffer.awaitFree();
+                if (offset < 0) {
+                    return;
+                }
+                int len = buffer.free(offset);
+                int n;
+                lockIO();
+                try {
+                    if (buffer.isDirect()) {
+                        n = readDirectBufferTimeout(buffer.buffer(), offset, len, -1);
+                    }
+                    else {
+                        n = readAvailableArrayTimeout(buffer.array(), offset, len, -1);
+                    }
+                } finally {
+                    unlockIO();
+                }
+                if (n > 0) {
+                    buffer.appended(n);
+                    sendEvent(SerialPortEvent.DATA_AVAILABLE, true);
+                }
+            }
+        } catch (IOException e) {
+            buffer.fail(e);
+        } catch (InterruptedException e) {
+            buffer.fail(new InterruptedIOException());
+        }
+    }
+
+    /*
+     * Called by close(): ends the thread of the receive buffer, it is blocked in native code or waits for free space
+     */
+    private void stopReceiveBuffer() {
+        ReceiveBuffer buffer = receiveBuffer;
+        if (buffer != null) {
+            buffer.fail(new IOException("port closed"));
+            wakeNativeReads();
+        }
+    }
+
+    /*
+     * The bytes read by readUntil() after the delimiter, from lookaheadStart to lookaheadEnd of the lookahead window.
+     * Reads return them before reading the port again. All guarded by lookaheadLock but lookaheadCount, the number of
+     * these bytes, updated before the lock is released, so available() does not wait for a blocked readUntil().
+     */
+    private final ReentrantLock lookaheadLock = new ReentrantLock();
+    private byte[] lookahead = new byte[0];
+    private int lookaheadStart = 0;
+    private int lookaheadEnd = 0;
+    private final int[] delimiterEnd = new int[1];
+    private volatile int lookaheadCount = 0;
+
+    /**
+     * Extension to CommAPI. Reads until one of the delimiters was read, e.g. the line feed ending a line of NMEA 0183,
+     * SCPI or an AT command response. The native code reads the bytes that arrived together and scans them, there is
+     * no call per byte. The bytes read after the delimiter are returned by the next reads.
+     * <p>
+     * If the timeout expires first, 0 is returned and the bytes read so far are kept for the next reads.
+     *
+     * @param b
+     *            the buffer to read into
+     * @param off
+     *            the offset in b
+     * @param len
+     *            the maximum number of bytes to read
+     * @param delimiters
+     *            the bytes that end a read
+     * @param timeout
+     *            the time in ms to wait for the delimiter, -1 to wait without timeout
+     * @return the number of bytes read ending with the delimiter, len if no delimiter was found in len bytes, 0 on
+     *         timeout
+     * @throws IOException
+     *             if the port is closed, reading fails or the native library does not support it
+     */
+    public int readUntil(byte b[], int off, int len, byte delimiters[], int timeout) throws IOException {
+        return readUntil(b, off, len, delimiters, timeout, false);
+    }
+
+    /*
+     * Returns the bytes read so far on timeout if partial is set, 0 otherwise
+     */
+    private int readUntil(byte b[], int off, int len, byte delimiters[], int timeout, boolean partial)
+            throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (delimiters.length == 0) {
+            throw new IllegalArgumentException("No delimiters");
+        }
+        if (debug_read)
+            z.reportln("RXTXPort:readUntil(" + len + ") called");
+        if (fd == 0) {
+            throw new IOException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        lookaheadLock.lock();
+        try {
+            reserveLookahead(len);
+            int end = scan(lookahead, lookaheadStart, Math.min(lookaheadEnd, lookaheadStart + len), delimiters);
+            while (end < 0 && lookaheadEnd - lookaheadStart < len) {
+                int time = -1;
+                if (timeout >= 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    // rounded up, not to return before the deadline
+                    time = (int) TimeUnit.NANOSECONDS.toMillis(remaining + 999999);
+                }
+                int filled = lookaheadEnd;
+                int n = fillLookahead(lookaheadStart + len - lookaheadEnd, delimiters, time);
+                if (n == 0) {
+                    break;
+                }
+                lookaheadEnd += n;
+                if (delimiterEnd[0] >= 0) {
+                    end = filled + delimiterEnd[0];
+                }
+            }
+            int n;
+            if (end >= 0) {
+                n = end - lookaheadStart;
+            }
+            else if (lookaheadEnd - lookaheadStart >= len) {
+                n = len;
+            }
+            else if (partial) {
+                n = lookaheadEnd - lookaheadStart;
+            }
+            else {
+                return 0;
+            }
+            System.arraycopy(lookahead, lookaheadStart, b, off, n);
+            lookaheadStart += n;
+            return n;
+        } finally {
+            if (lookaheadStart == lookaheadEnd) {
+                lookaheadStart = 0;
+                lookaheadEnd = 0;
+            }
+            lookaheadCount = lookaheadEnd - lookaheadStart;
+            lookaheadLock.unlock();
+        }
+    }
+
+    /*
+     * Makes room for len bytes from lookaheadStart
+     */
+    private void reserveLookahead(int len) {
+        int pending = lookaheadEnd - lookaheadStart;
+        if (lookaheadStart + len <= lookahead.length) {
+            return;
+        }
+        byte[] window = lookahead.length < len ? new byte[len] : lookahead;
+        System.arraycopy(lookahead, lookaheadStart, window, 0, pending);
+        lookahead = window;
+        lookaheadStart = 0;
+        lookaheadEnd = pending;
+    }
+
+    /*
+     * Reads up to len bytes to lookaheadEnd and sets delimiterEnd[0] to the end of the first delimiter in them
+     */
+    private int fillLookahead(int len, byte delimiters[], int time) throws IOException {
+        ReceiveBuffer buffer = receiveBuffer;
+        if (buffer != null) {
+            int n = buffer.read(lookahead, lookaheadEnd, len, 1, time);
+            int end = scan(lookahead, lookaheadEnd, lookaheadEnd + n, delimiters);
+            delimiterEnd[0] = end < 0 ? -1 : end - lookaheadEnd;
+            return n;
+        }
+        if (isVirtualThread() && awaitAvailable(1, time) == 0) {
+            return 0;
+        }
+        if (monThreadisInterrupted == true) {
+            return 0;
+        }
+        lockIO();
+        try {
+            waitForTheNativeCodeSilly();
+            return readUntilArray(lookahead, lookaheadEnd, len, delimiters, time, delimiterEnd);
+        } catch (UnsatisfiedLinkError e) {
+            throw new IOException("readUntil is not supported by the native library");
+        } finally {
+            unlockIO();
+        }
+    }
+
+    /*
+     * Returns the index after the first of the delimiters in b from start to end, -1 if there is none
+     */
+    private static int scan(byte b[], int start, int end, byte delimiters[]) {
+        for (int i = start; i < end; i++) {
+            for (byte delimiter : delimiters) {
+                if (b[i] == delimiter) {
+                    return i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int takeLookahead(byte b[], int off, int len) {
+        lookaheadLock.lock();
+        try {
+            int n = Math.min(len, lookaheadEnd - lookaheadStart);
+            System.arraycopy(lookahead, lookaheadStart, b, off, n);
+            tookLookahead(n);
+            return n;
+        } finally {
+            lookaheadLock.unlock();
+        }
+    }
+
+    private int takeLookahead(ByteBuffer dst) {
+        lookaheadLock.lock();
+        try {
+            int n = Math.min(dst.remaining(), lookaheadEnd - lookaheadStart);
+            dst.put(lookahead, lookaheadStart, n);
+            tookLookahead(n);
+            return n;
+        } finally {
+            lookaheadLock.unlock();
+        }
+    }
+
+    private void tookLookahead(int n) {
+        lookaheadStart += n;
+        if (lookaheadStart == lookaheadEnd) {
+            lookaheadStart = 0;
+            lookaheadEnd = 0;
+        }
+        lookaheadCount = lookaheadEnd - lookaheadStart;
+    }
+
+    /*
+     * The bytes already taken from the port by the receive buffer or readUntil() and not read yet. poll(2) on the port
+     * doesn't see them.
+     */
+    int getBufferedBytes() {
+        int count = lookaheadCount;
+        if (count > 0) {
+            return count;
+        }
+        ReceiveBuffer buffer = receiveBuffer;
+        return buffer == null ? 0 : buffer.available();
+    }
+
+    /* set by enableOutputCoalescing(), null if disabled, all guarded by coalesceLock */
+    private final ReentrantLock coalesceLock = new ReentrantLock();
+    private byte[] coalesceBuffer;
+    private int coalesceCount = 0;
+    private volatile long coalescedWrites = 0;
+    private volatile long coalescedFlushes = 0;
+
+    /**
+     * Extension to CommAPI. Collects the bytes of the output stream and of {@link #write(ByteBuffer)} in a buffer
+     * instead of writing each call to the port. The bytes are written at once when the buffer is full, by
+     * {@link OutputStream#flush()} or by {@link #flushOutputCoalescing()}. A frame written as header, payload and
+     * checksum thus costs one native write, and an RS-485 device sees no gaps between the parts.
+     * <p>
+     * Writes larger than the buffer are written right away, after the bytes collected before. Closing the port writes
+     * the bytes collected, unless another thread is writing.
+     *
+     * @param size
+     *            the size of the buffer in bytes.
+     * @throws IOException
+     *             if coalescing was enabled already and writing the bytes collected fails.
+     * @see #getCoalescedWrites()
+     */
+    public void enableOutputCoalescing(int size) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Coalescing buffer size must be positive");
+        }
+        coalesceLock.lock();
+        try {
+            writeCoalesced();
+            coalesceBuffer = new byte[size];
+        } finally {
+            coalesceLock.unlock();
+        }
+    }
+
+    /**
+     * Extension to CommAPI. Writes the bytes collected and disables {@link #enableOutputCoalescing(int)}.
+     *
+     * @throws IOException
+     *             if writing the bytes collected fails.
+     */
+    public void disableOutputCoalescing() throws IOException {
+        coalesceLock.lock();
+        try {
+            writeCoalesced();
+            coalesceBuffer = null;
+        } finally {
+            coalesceLock.unlock();
+        }
+    }
+
+    /**
+     * Extension to CommAPI.
+     *
+     * @return the size of the buffer enabled by {@link #enableOutputCoalescing(int)}, 0 if it is not enabled.
      */
-    public void notifyOnCarrierDetect(boolean enable) {
-        if (debug)
-            z.reportln("RXTXPort:notifyOnCarrierDetect( " + enable + " )");
-        waitForTheNativeCodeSilly();
-        MonitorThreadLock = true;
-        nativeSetEventFlag(fd, SerialPortEvent.CD, enable);
-        monThread.CD = enable;
-        MonitorThreadLock = false;
+    public int getOutputCoalescingSize() {
+        coalesceLock.lock();
+        try {
+            return coalesceBuffer == null ? 0 : coalesceBuffer.length;
+        } finally {
+            coalesceLock.unlock();
+        }
     }
 
     /**
-     * @param enable
+     * Extension to CommAPI. Less {@link #getCoalescedFlushes()} this is the number of native writes saved.
+     *
+     * @return the number of writes whose bytes were collected by {@link #enableOutputCoalescing(int)}.
      */
-    public void notifyOnOverrunError(boolean enable) {
-        if (debug)
-            z.reportln("RXTXPort:notifyOnOverrunError( " + enable + " )");
-        waitForTheNativeCodeSilly();
-        MonitorThreadLock = true;
-        nativeSetEventFlag(fd, SerialPortEvent.OE, enable);
-        monThread.OE = enable;
-        MonitorThreadLock = false;
+    public long getCoalescedWrites() {
+        return coalescedWrites;
     }
 
     /**
-     * @param enable
+     * Extension to CommAPI.
+     *
+     * @return the number of native writes of bytes collected by {@link #enableOutputCoalescing(int)}.
      */
-    public void notifyOnParityError(boolean enable) {
-        if (debug)
-            z.reportln("RXTXPort:notifyOnParityError( " + enable + " )");
-        waitForTheNativeCodeSilly();
-        MonitorThreadLock = true;
-        nativeSetEventFlag(fd, SerialPortEvent.PE, enable);
-        monThread.PE = enable;
-        MonitorThreadLock = false;
+    public long getCoalescedFlushes() {
+        return coalescedFlushes;
     }
 
-    /**
-     * @param enable
+    /*
+     * Adds a write of the output stream to the coalescing buffer, returns false if coalescing is disabled
      */
-    public void notifyOnFramingError(boolean enable) {
-        if (debug)
-            z.reportln("RXTXPort:notifyOnFramingError( " + enable + " )");
-        waitForTheNativeCodeSilly();
-        MonitorThreadLock = true;
-        nativeSetEventFlag(fd, SerialPortEvent.FE, enable);
-        monThread.FE = enable;
-        MonitorThreadLock = false;
+    private boolean coalesce(byte b[], int off, int len) throws IOException {
+        coalesceLock.lock();
+        try {
+            byte[] buffer = coalesceBuffer;
+            if (buffer == null) {
+                return false;
+            }
+            if (len > buffer.length - coalesceCount) {
+                writeCoalesced();
+                if (len >= buffer.length) {
+                    lockIO();
+                    try {
+                        waitForTheNativeCodeSilly();
+                        writeArray(b, off, len, monThreadisInterrupted);
+                    } finally {
+                        unlockIO();
+                    }
+                    return true;
+                }
+            }
+            System.arraycopy(b, off, buffer, coalesceCount, len);
+            coalesceCount += len;
+            coalescedWrites++;
+            if (coalesceCount == buffer.length) {
+                writeCoalesced();
+            }
+            return true;
+        } finally {
+            coalesceLock.unlock();
+        }
     }
 
-    /**
-     * @param enable
+    private boolean coalesce(int b) throws IOException {
+        coalesceLock.lock();
+        try {
+            byte[] buffer = coalesceBuffer;
+            if (buffer == null) {
+                return false;
+            }
+            buffer[coalesceCount++] = (byte) b;
+            coalescedWrites++;
+            if (coalesceCount == buffer.length) {
+                writeCoalesced();
+            }
+            return true;
+        } finally {
+            coalesceLock.unlock();
+        }
+    }
+
+    private boolean isCoalescing() {
+        coalesceLock.lock();
+        try {
+            return coalesceBuffer != null;
+        } finally {
+            coalesceLock.unlock();
+        }
+    }
+
+    /*
+     * Writes the bytes collected in one native write, called holding coalesceLock. The bytes are dropped if it fails, a
+     * part of them may have been written already and must not be sent again.
      */
-    public void notifyOnBreakInterrupt(boolean enable) {
-        if (debug)
-            z.reportln("RXTXPort:notifyOnBreakInterrupt( " + enable + " )");
-        waitForTheNativeCodeSilly();
-        MonitorThreadLock = true;
-        nativeSetEventFlag(fd, SerialPortEvent.BI, enable);
-        monThread.BI = enable;
-        MonitorThreadLock = false;
+    private void writeCoalesced() throws IOException {
+        if (coalesceCount == 0) {
+            return;
+        }
+        lockIO();
+        try {
+            waitForTheNativeCodeSilly();
+            writeArray(coalesceBuffer, 0, coalesceCount, monThreadisInterrupted);
+        } finally {
+            coalesceCount = 0;
+            unlockIO();
+        }
+        coalescedFlushes++;
     }
 
-    /** Close the port */
-    private native void nativeClose(String name);
+    /**
+     * Extension to CommAPI. Writes the bytes collected by {@link #enableOutputCoalescing(int)} to the port. Unlike
+     * {@link OutputStream#flush()} it does not wait until they are transmitted.
+     *
+     * @throws IOException
+     *             if writing the bytes collected fails.
+     */
+    public void flushOutputCoalescing() throws IOException {
+        coalesceLock.lock();
+        try {
+            writeCoalesced();
+        } finally {
+            coalesceLock.unlock();
+        }
+    }
 
     /**
     */
     boolean closeLock = false;
 
+    private final ReentrantLock closeMutex = new ReentrantLock();
+    /* set once the port is closed for good, guarded by closeMutex */
+    private boolean closed;
+
     public void close() {
-        synchronized (this) {
+        boolean interrupted = false;
+        closeMutex.lock();
+        try {
             if (debug)
                 z.reportln("RXTXPort:close( " + this.name + " )");
+            if (closed || closeLock)
+                return;
 
-            while (IOLocked > 0) {
-                if (debug)
-                    z.reportln("IO is locked " + IOLocked);
+            // not if a writer holds coalesceLock, it may be blocked in native code
+            if (coalesceLock.tryLock()) {
                 try {
-                    this.wait(500);
-                } catch (InterruptedException ie) {
-                    // somebody called interrupt() on us
-                    // we obbey and return without without closing the socket
-                    Thread.currentThread().interrupt();
-                    return;
+                    writeCoalesced();
+                } catch (IOException e) {
+                    z.reportln(Zystem.WARNING, "RXTXPort:close coalesced bytes not written " + e.getMessage());
+                } finally {
+                    coalesceLock.unlock();
                 }
             }
-
-            // we set the closeLock after the above check because we might
-            // have returned without proceeding
-            if (closeLock)
-                return;
+            /*
+             * Reads blocked in native code would keep IOLocked up. They can only be woken up with the wakeup pipe,
+             * then the port is closed for sure. Otherwise an interrupt() returns without closing the port as before.
+             */
+            boolean wakeup = isReadInterruptible();
             closeLock = true;
+            if (wakeup) {
+                interruptRead();
+                stopReceiveBuffer();
+            }
+            IOLockedMutex.lock();
+            try {
+                while (IOLocked > 0) {
+                    if (debug)
+                        z.reportln("IO is locked " + IOLocked);
+                    try {
+                        IOUnlocked.await(500, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException ie) {
+                        if (!wakeup) {
+                            // somebody called interrupt() on us
+                            // we obbey and return without without closing the socket
+                            closeLock = false;
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        // the reads leave right away, the interrupt is restored once closed
+                        interrupted = true;
+                    }
+                }
+                IOClosed = true;
+                closed = true;
+            } finally {
+                IOLockedMutex.unlock();
+            }
+            if (!wakeup) {
+                // readers on virtual threads, they don't hold IOLocked
+                interruptRead();
+            }
+        } finally {
+            closeMutex.unlock();
+        }
+
+        try {
+            closePort();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
+    }
 
+    private void closePort() {
         if (fd <= 0) {
-            z.reportln("RXTXPort:close detected bad File Descriptor");
+            z.reportln(Zystem.WARNING, "RXTXPort:close detected bad File Descriptor");
             return;
         }
         setDTR(false);
@@ -1039,6 +2196,9 @@ final public class RXTXPort extends SerialPort {
         if (debug)
             z.reportln("RXTXPort:close( " + this.name + " ) calling nativeClose");
         nativeClose(this.name);
+        if (useEventEngine) {
+            RXTXEventEngine.release(this);
+        }
         if (debug)
             z.reportln("RXTXPort:close( " + this.name + " ) calling super.close");
         super.close();
@@ -1074,9 +2234,10 @@ final public class RXTXPort extends SerialPort {
             if (monThreadisInterrupted == true) {
                 return;
             }
-            synchronized (IOLockedMutex) {
-                IOLocked++;
+            if (coalesce(b)) {
+                return;
             }
+            lockIO();
             try {
                 waitForTheNativeCodeSilly();
                 if (fd == 0) {
@@ -1086,9 +2247,7 @@ final public class RXTXPort extends SerialPort {
                 if (debug_write)
                     z.reportln("Leaving RXTXPort:SerialOutputStream:write( int )");
             } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
-                }
+                unlockIO();
             }
         }
 
@@ -1107,18 +2266,17 @@ final public class RXTXPort extends SerialPort {
             }
             if (fd == 0)
                 throw new IOException();
-            synchronized (IOLockedMutex) {
-                IOLocked++;
+            if (coalesce(b, 0, b.length)) {
+                return;
             }
+            lockIO();
             try {
                 waitForTheNativeCodeSilly();
                 writeArray(b, 0, b.length, monThreadisInterrupted);
                 if (debug_write)
                     z.reportln("Leaving RXTXPort:SerialOutputStream:write(" + b.length + ")");
             } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
-                }
+                unlockIO();
             }
 
         }
@@ -1132,34 +2290,32 @@ final public class RXTXPort extends SerialPort {
         public void write(byte b[], int off, int len) throws IOException {
             if (speed == 0)
                 return;
-            if (off + len > b.length) {
+            if (off < 0 || len < 0 || off + len > b.length) {
                 throw new IndexOutOfBoundsException("Invalid offset/length passed to read");
             }
 
-            byte send[] = new byte[len];
-            System.arraycopy(b, off, send, 0, len);
             if (debug_write) {
-                z.reportln("Entering RXTXPort:SerialOutputStream:write(" + send.length + " " + off + " " + len + " "
-                        + ") " /* + new String(send) */ );
+                z.reportln("Entering RXTXPort:SerialOutputStream:write(" + b.length + " " + off + " " + len + " "
+                        + ") " /* + new String(b, off, len) */ );
             }
             if (fd == 0)
                 throw new IOException();
             if (monThreadisInterrupted == true) {
                 return;
             }
-            synchronized (IOLockedMutex) {
-                IOLocked++;
+            if (coalesce(b, off, len)) {
+                return;
             }
+            lockIO();
             try {
                 waitForTheNativeCodeSilly();
-                writeArray(send, 0, len, monThreadisInterrupted);
+                // the native code honours the offset, no need to copy b
+                writeArray(b, off, len, monThreadisInterrupted);
                 if (debug_write)
-                    z.reportln("Leaving RXTXPort:SerialOutputStream:write(" + send.length + " " + off + " " + len + " "
-                            + ") " /* + new String(send) */ );
+                    z.reportln("Leaving RXTXPort:SerialOutputStream:write(" + b.length + " " + off + " " + len + " "
+                            + ") " /* + new String(b, off, len) */ );
             } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
-                }
+                unlockIO();
             }
         }
 
@@ -1177,9 +2333,8 @@ final public class RXTXPort extends SerialPort {
                     z.reportln("RXTXPort:SerialOutputStream:flush() Leaving Interrupted");
                 return;
             }
-            synchronized (IOLockedMutex) {
-                IOLocked++;
-            }
+            flushOutputCoalescing();
+            lockIO();
             try {
                 waitForTheNativeCodeSilly();
                 /*
@@ -1190,15 +2345,19 @@ final public class RXTXPort extends SerialPort {
                 if (debug)
                     z.reportln("RXTXPort:SerialOutputStream:flush() leave");
             } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
-                }
+                unlockIO();
             }
         }
     }
 
     /** Inner class for SerialInputStream */
     class SerialInputStream extends InputStream {
+
+        /* a lock instead of synchronized, see IOLockedMutex */
+        private final ReentrantLock readLock = new ReentrantLock();
+        /* read() from the receive buffer, guarded by readLock */
+        private final byte[] single = new byte[1];
+
         /**
          * @return int the int read
          * @throws IOException
@@ -1209,32 +2368,43 @@ final public class RXTXPort extends SerialPort {
          *      timeout >0 >0 blocks until timeout, returns - 1 on timeout, magnitude of threshold doesn't play a role.
          *      0 >0 Blocks until 1 byte, magnitude of threshold doesn't play a role
          */
-        public synchronized int read() throws IOException {
-            if (debug_read)
-                z.reportln("RXTXPort:SerialInputStream:read() called");
-            if (fd == 0)
-                throw new IOException();
-            if (monThreadisInterrupted) {
-                z.reportln("+++++++++ read() monThreadisInterrupted");
-            }
-            synchronized (IOLockedMutex) {
-                IOLocked++;
-            }
+        public int read() throws IOException {
+            readLock.lock();
             try {
-                if (debug_read_results)
-                    z.reportln("RXTXPort:SerialInputStream:read() L");
-                waitForTheNativeCodeSilly();
-                if (debug_read_results)
-                    z.reportln("RXTXPort:SerialInputStream:read() N");
-                int result = readByte();
-                if (debug_read_results)
-                    // z.reportln( "RXTXPort:SerialInputStream:read() returns byte = " + result );
-                    z.reportln("RXTXPort:SerialInputStream:read() returns");
-                return (result);
-            } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
+                if (debug_read)
+                    z.reportln("RXTXPort:SerialInputStream:read() called");
+                if (fd == 0)
+                    throw new IOException();
+                if (lookaheadCount > 0) {
+                    return takeLookahead(single, 0, 1) == 1 ? single[0] & 0xff : -1;
+                }
+                ReceiveBuffer buffer = receiveBuffer;
+                if (buffer != null) {
+                    return readReceiveBuffer(buffer, single, 0, 1) == 1 ? single[0] & 0xff : -1;
+                }
+                if (monThreadisInterrupted) {
+                    z.reportln(Zystem.DEBUG, "+++++++++ read() monThreadisInterrupted");
+                }
+                if (isVirtualThread() && awaitAvailable(1) == 0) {
+                    return -1;
+                }
+                lockIO();
+                try {
+                    if (debug_read_results)
+                        z.reportln("RXTXPort:SerialInputStream:read() L");
+                    waitForTheNativeCodeSilly();
+                    if (debug_read_results)
+                        z.reportln("RXTXPort:SerialInputStream:read() N");
+                    int result = readByte();
+                    if (debug_read_results)
+                        // z.reportln( "RXTXPort:SerialInputStream:read() returns byte = " + result );
+                        z.reportln("RXTXPort:SerialInputStream:read() returns");
+                    return (result);
+                } finally {
+                    unlockIO();
                 }
+            } finally {
+                readLock.unlock();
             }
         }
 
@@ -1248,26 +2418,30 @@ final public class RXTXPort extends SerialPort {
          *             is available >0 0 blocks until timeout occurs, returns 0 on timeout >0 >0 blocks until timeout or
          *             reads threshold bytes, returns 0 on timeout 0 >0 blocks until reads threshold bytes
          */
-        public synchronized int read(byte b[]) throws IOException {
-            int result;
-            if (debug_read)
-                z.reportln("RXTXPort:SerialInputStream:read(" + b.length + ") called");
-            if (monThreadisInterrupted == true) {
-                return (0);
-            }
-            synchronized (IOLockedMutex) {
-                IOLocked++;
-            }
+        public int read(byte b[]) throws IOException {
+            readLock.lock();
             try {
-                waitForTheNativeCodeSilly();
-                result = read(b, 0, b.length);
-                if (debug_read_results)
-                    z.reportln("RXTXPort:SerialInputStream:read() returned " + result + " bytes");
-                return (result);
-            } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
+                int result;
+                if (debug_read)
+                    z.reportln("RXTXPort:SerialInputStream:read(" + b.length + ") called");
+                if (receiveBuffer != null) {
+                    return read(b, 0, b.length);
+                }
+                if (monThreadisInterrupted == true) {
+                    return (0);
+                }
+                lockIO();
+                try {
+                    waitForTheNativeCodeSilly();
+                    result = read(b, 0, b.length);
+                    if (debug_read_results)
+                        z.reportln("RXTXPort:SerialInputStream:read() returned " + result + " bytes");
+                    return (result);
+                } finally {
+                    unlockIO();
                 }
+            } finally {
+                readLock.unlock();
             }
         }
 
@@ -1288,86 +2462,128 @@ final public class RXTXPort extends SerialPort {
          *             reads threshold bytes, returns 0 on timeout 0 >0 blocks until either threshold # of bytes or len
          *             bytes, whichever was lower.
          */
-        public synchronized int read(byte b[], int off, int len) throws IOException {
-            if (debug_read)
-                z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len
-                        + ") called" /* + new String(b) */ );
-            int result;
-            /*
-             * Some sanity checks
-             */
-            if (fd == 0) {
-                if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() fd == 0");
-                z.reportln("+++++++ IOException()\n");
-                throw new IOException();
-            }
-
-            if (b == null) {
-                z.reportln("+++++++ NullPointerException()\n");
+        public int read(byte b[], int off, int len) throws IOException {
+            readLock.lock();
+            try {
                 if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() b == 0");
-                throw new NullPointerException();
-            }
+                    z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len
+                            + ") called" /* + new String(b) */ );
+                int result;
+                /*
+                 * Some sanity checks
+                 */
+                if (fd == 0) {
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() fd == 0");
+                    z.reportln(Zystem.DEBUG, "+++++++ IOException()\n");
+                    throw new IOException();
+                }
 
-            if ((off < 0) || (len < 0) || (off + len > b.length)) {
-                z.reportln("+++++++ IndexOutOfBoundsException()\n");
-                if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() off < 0 ..");
-                throw new IndexOutOfBoundsException();
-            }
+                if (b == null) {
+                    z.reportln(Zystem.DEBUG, "+++++++ NullPointerException()\n");
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() b == 0");
+                    throw new NullPointerException();
+                }
 
-            /*
-             * Return immediately if len==0
-             */
-            if (len == 0) {
-                if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() off < 0 ..");
-                return 0;
-            }
-            /*
-             * See how many bytes we should read
-             */
-            int Minimum = len;
+                if ((off < 0) || (len < 0) || (off + len > b.length)) {
+                    z.reportln(Zystem.DEBUG, "+++++++ IndexOutOfBoundsException()\n");
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() off < 0 ..");
+                    throw new IndexOutOfBoundsException();
+                }
 
-            if (threshold == 0) {
                 /*
-                 * If threshold is disabled, read should return as soon as data are available (up to the amount of
-                 * available bytes in order to avoid blocking) Read may return earlier depending of the receive time
-                 * out.
+                 * Return immediately if len==0
                  */
-                int a = nativeavailable();
-                if (a == 0)
-                    Minimum = 1;
-                else
-                    Minimum = Math.min(Minimum, a);
-            }
-            else {
+                if (len == 0) {
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() off < 0 ..");
+                    return 0;
+                }
+                byte[] framing = framingDelimiter;
+                if (framing != null) {
+                    return readUntil(b, off, len, framing, timeout, true);
+                }
+                if (lookaheadCount > 0) {
+                    return takeLookahead(b, off, len);
+                }
+                ReceiveBuffer buffer = receiveBuffer;
+                if (buffer != null) {
+                    return readReceiveBuffer(buffer, b, off, len);
+                }
+                if (isVirtualThread()) {
+                    int a = awaitAvailable(threshold == 0 ? 1 : Math.min(len, threshold));
+                    if (a == 0) {
+                        return 0;
+                    }
+                    len = Math.min(len, a);
+                }
+                if (threshold == 0 && readAvailableArraySupported) {
+                    /*
+                     * Threshold disabled: wait for the first byte and return everything buffered in a single native call.
+                     */
+                    if (monThreadisInterrupted == true) {
+                        if (debug_read)
+                            z.reportln("RXTXPort:SerialInputStream:read() Interrupted");
+                        return (0);
+                    }
+                    lockIO();
+                    try {
+                        waitForTheNativeCodeSilly();
+                        result = readAvailableArray(b, off, len);
+                        if (debug_read_results)
+                            z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len
+                                    + ") returned " + result + " bytes");
+                        return (result);
+                    } catch (UnsatisfiedLinkError e) {
+                        readAvailableArraySupported = false;
+                    } finally {
+                        unlockIO();
+                    }
+                }
                 /*
-                 * Threshold is enabled. Read should return when 'threshold' bytes have been received (or when the
-                 * receive timeout expired)
+                 * See how many bytes we should read
                  */
-                Minimum = Math.min(Minimum, threshold);
-            }
-            if (monThreadisInterrupted == true) {
-                if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() Interrupted");
-                return (0);
-            }
-            synchronized (IOLockedMutex) {
-                IOLocked++;
-            }
-            try {
-                waitForTheNativeCodeSilly();
-                result = readArray(b, off, Minimum);
-                if (debug_read_results)
-                    z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len + ") returned "
-                            + result + " bytes" /* + new String(b) */);
-                return (result);
-            } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
+                int Minimum = len;
+
+                if (threshold == 0) {
+                    /*
+                     * If threshold is disabled, read should return as soon as data are available (up to the amount of
+                     * available bytes in order to avoid blocking) Read may return earlier depending of the receive time
+                     * out.
+                     */
+                    int a = nativeavailable();
+                    if (a == 0)
+                        Minimum = 1;
+                    else
+                        Minimum = Math.min(Minimum, a);
+                }
+                else {
+                    /*
+                     * Threshold is enabled. Read should return when 'threshold' bytes have been received (or when the
+                     * receive timeout expired)
+                     */
+                    Minimum = Math.min(Minimum, threshold);
+                }
+                if (monThreadisInterrupted == true) {
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() Interrupted");
+                    return (0);
                 }
+                lockIO();
+                try {
+                    waitForTheNativeCodeSilly();
+                    result = readArray(b, off, Minimum);
+                    if (debug_read_results)
+                        z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len + ") returned "
+                                + result + " bytes" /* + new String(b) */);
+                    return (result);
+                } finally {
+                    unlockIO();
+                }
+            } finally {
+                readLock.unlock();
             }
         }
 
@@ -1387,86 +2603,97 @@ final public class RXTXPort extends SerialPort {
          *             tested.
          */
 
-        public synchronized int read(byte b[], int off, int len, byte t[]) throws IOException {
-            if (debug_read)
-                z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len
-                        + ") called" /* + new String(b) */ );
-            int result;
-            /*
-             * Some sanity checks
-             */
-            if (fd == 0) {
-                if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() fd == 0");
-                z.reportln("+++++++ IOException()\n");
-                throw new IOException();
-            }
-
-            if (b == null) {
-                z.reportln("+++++++ NullPointerException()\n");
+        public int read(byte b[], int off, int len, byte t[]) throws IOException {
+            readLock.lock();
+            try {
                 if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() b == 0");
-                throw new NullPointerException();
-            }
+                    z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len
+                            + ") called" /* + new String(b) */ );
+                int result;
+                /*
+                 * Some sanity checks
+                 */
+                if (fd == 0) {
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() fd == 0");
+                    z.reportln(Zystem.DEBUG, "+++++++ IOException()\n");
+                    throw new IOException();
+                }
 
-            if ((off < 0) || (len < 0) || (off + len > b.length)) {
-                z.reportln("+++++++ IndexOutOfBoundsException()\n");
-                if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() off < 0 ..");
-                throw new IndexOutOfBoundsException();
-            }
+                if (b == null) {
+                    z.reportln(Zystem.DEBUG, "+++++++ NullPointerException()\n");
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() b == 0");
+                    throw new NullPointerException();
+                }
 
-            /*
-             * Return immediately if len==0
-             */
-            if (len == 0) {
-                if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() off < 0 ..");
-                return 0;
-            }
-            /*
-             * See how many bytes we should read
-             */
-            int Minimum = len;
+                if ((off < 0) || (len < 0) || (off + len > b.length)) {
+                    z.reportln(Zystem.DEBUG, "+++++++ IndexOutOfBoundsException()\n");
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() off < 0 ..");
+                    throw new IndexOutOfBoundsException();
+                }
 
-            if (threshold == 0) {
                 /*
-                 * If threshold is disabled, read should return as soon as data are available (up to the amount of
-                 * available bytes in order to avoid blocking) Read may return earlier depending of the receive time
-                 * out.
+                 * Return immediately if len==0
                  */
-                int a = nativeavailable();
-                if (a == 0)
-                    Minimum = 1;
-                else
-                    Minimum = Math.min(Minimum, a);
-            }
-            else {
+                if (len == 0) {
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() off < 0 ..");
+                    return 0;
+                }
+                if (lookaheadCount > 0) {
+                    return takeLookahead(b, off, len);
+                }
+                if (isVirtualThread()) {
+                    int a = awaitAvailable(threshold == 0 ? 1 : Math.min(len, threshold));
+                    if (a == 0) {
+                        return 0;
+                    }
+                    len = Math.min(len, a);
+                }
                 /*
-                 * Threshold is enabled. Read should return when 'threshold' bytes have been received (or when the
-                 * receive timeout expired)
+                 * See how many bytes we should read
                  */
-                Minimum = Math.min(Minimum, threshold);
-            }
-            if (monThreadisInterrupted == true) {
-                if (debug_read)
-                    z.reportln("RXTXPort:SerialInputStream:read() Interrupted");
-                return (0);
-            }
-            synchronized (IOLockedMutex) {
-                IOLocked++;
-            }
-            try {
-                waitForTheNativeCodeSilly();
-                result = readTerminatedArray(b, off, Minimum, t);
-                if (debug_read_results)
-                    z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len + ") returned "
-                            + result + " bytes" /* + new String(b) */);
-                return (result);
-            } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
+                int Minimum = len;
+
+                if (threshold == 0) {
+                    /*
+                     * If threshold is disabled, read should return as soon as data are available (up to the amount of
+                     * available bytes in order to avoid blocking) Read may return earlier depending of the receive time
+                     * out.
+                     */
+                    int a = nativeavailable();
+                    if (a == 0)
+                        Minimum = 1;
+                    else
+                        Minimum = Math.min(Minimum, a);
+                }
+                else {
+                    /*
+                     * Threshold is enabled. Read should return when 'threshold' bytes have been received (or when the
+                     * receive timeout expired)
+                     */
+                    Minimum = Math.min(Minimum, threshold);
+                }
+                if (monThreadisInterrupted == true) {
+                    if (debug_read)
+                        z.reportln("RXTXPort:SerialInputStream:read() Interrupted");
+                    return (0);
+                }
+                lockIO();
+                try {
+                    waitForTheNativeCodeSilly();
+                    result = readTerminatedArray(b, off, Minimum, t);
+                    if (debug_read_results)
+                        z.reportln("RXTXPort:SerialInputStream:read(" + b.length + " " + off + " " + len + ") returned "
+                                + result + " bytes" /* + new String(b) */);
+                    return (result);
+                } finally {
+                    unlockIO();
                 }
+            } finally {
+                readLock.unlock();
             }
         }
 
@@ -1474,24 +2701,23 @@ final public class RXTXPort extends SerialPort {
          * @return int bytes available
          * @throws IOException
          */
-        public synchronized int available() throws IOException {
+        public int available() throws IOException {
+            if (lookaheadCount > 0 || receiveBuffer != null) {
+                return getBufferedBytes();
+            }
             if (monThreadisInterrupted == true) {
                 return (0);
             }
             if (debug_verbose)
                 z.reportln("RXTXPort:available() called");
-            synchronized (IOLockedMutex) {
-                IOLocked++;
-            }
+            lockIO();
             try {
                 int r = nativeavailable();
                 if (debug_verbose)
                     z.reportln("RXTXPort:available() returning " + r);
                 return r;
             } finally {
-                synchronized (IOLockedMutex) {
-                    IOLocked--;
-                }
+                unlockIO();
             }
         }
     }
@@ -1610,6 +2836,8 @@ final public class RXTXPort extends SerialPort {
 
     private native boolean nativeClearCommInput() throws UnsupportedCommOperationException;
 
+    private native boolean nativeGetStatistics(long[] counts);
+
     /**
      * Extension to CommAPI This is an extension to CommAPI. It may not be supported on all operating systems.
      *
@@ -2069,5 +3297,57 @@ final public class RXTXPort extends SerialPort {
         return nativeClearCommInput();
     }
 
+    /* the statistics read last or at open, for getStatisticsDelta() */
+    private SerialPortStatistics lastStatistics;
+
+    /**
+     * Extension to CommAPI. Reads the counters of received and transmitted bytes, line errors and overruns the driver
+     * keeps for the port.
+     * 
+     * @return the counters since the driver set up the device.
+     * @throws UnsupportedCommOperationException
+     *             if the driver or the native library does not provide the counters, e.g. for USB adapters and
+     *             pseudo terminals.
+     */
+    public synchronized SerialPortStatistics getStatistics() throws UnsupportedCommOperationException {
+        if (debug)
+            z.reportln("RXTXPort:getStatistics()");
+        SerialPortStatistics statistics = readStatistics();
+        if (statistics == null) {
+            throw new UnsupportedCommOperationException("The driver of the port does not provide statistics");
+        }
+        lastStatistics = statistics;
+        return statistics;
+    }
+
+    /**
+     * Extension to CommAPI. Reads the counters like {@link #getStatistics()}, but returns how much they increased
+     * since the last call of either method. The first call returns the counters since the port was opened.
+     * 
+     * @return the counters since the statistics were read last.
+     * @throws UnsupportedCommOperationException
+     *             if the driver or the native library does not provide the counters.
+     */
+    public synchronized SerialPortStatistics getStatisticsDelta() throws UnsupportedCommOperationException {
+        SerialPortStatistics earlier = lastStatistics;
+        SerialPortStatistics current = getStatistics();
+        return earlier != null ? current.since(earlier) : current;
+    }
+
+    /*
+     * Returns null if the counters are not provided
+     */
+    private SerialPortStatistics readStatistics() {
+        long[] counts = new long[SerialPortStatistics.COUNTERS];
+        try {
+            if (nativeGetStatistics(counts)) {
+                return new SerialPortStatistics(counts);
+            }
+        } catch (UnsatisfiedLinkError e) {
+            // native library built before the statistics were added
+        }
+        return null;
+    }
+
     /*------------------------  END OF CommAPI Extensions -----------------------*/
 }
@@ -0,0 +1,318 @@
+package gnu.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extension to CommAPI. Keeps the ports of {@link CommPortIdentifier} up to date while devices are plugged in and out.
+ * The device directory and /dev/serial/by-id are watched with inotify(7), only the entries that changed are checked
+ * instead of rescanning the whole directory.
+ * <p>
+ * While a discovery runs, {@link CommPortIdentifier#getPortIdentifiers()} returns the known ports without rescanning.
+ * It still rescans if one of the properties <code>gnu.io.rxtx.SerialPorts</code>,
+ * <code>gnu.io.rxtx.ParallelPorts</code> or their <code>gnu.io</code> variants changed since the last rescan.
+ * <p>
+ * Ports present when the discovery is started are not reported to the listener. Not supported on other systems than
+ * Linux and by native libraries built before this class was added, the constructor throws an IOException then.
+ */
+public final class RXTXPortDiscovery {
+
+    // flags of event(), see SerialImp.h
+    private static final int ADDED = 1;
+    private static final int REMOVED = 2;
+    private static final int DIRECTORY = 4;
+    private static final int GONE = 8;
+    private static final int OVERFLOW = 16;
+
+    private static final String LINK_DIRECTORY = "/dev/serial/by-id/";
+
+    private final CommPortDiscoveryListener listener;
+    private final RXTXCommDriver driver = new RXTXCommDriver();
+    private final long handle;
+    private final List<Directory> directories = new ArrayList<Directory>();
+    /* the watched directories by watch descriptor, only used by the discovery thread once it is started */
+    private final Map<Integer, Directory> watches = new HashMap<Integer, Directory>();
+    private final Thread thread;
+    private boolean closed = false;
+
+    /**
+     * Starts watching the device directory of the OS and /dev/serial/by-id.
+     *
+     * @param listener
+     *            told about added and removed ports.
+     * @throws IOException
+     *             if the native library does not support port discovery.
+     */
+    public RXTXPortDiscovery(CommPortDiscoveryListener listener) throws IOException {
+        this(listener, null, LINK_DIRECTORY);
+    }
+
+    /**
+     * Starts watching the given directories. Directories that don't exist yet are watched as soon as they are
+     * created.
+     *
+     * @param listener
+     *            told about added and removed ports.
+     * @param deviceDirectory
+     *            the directory whose entries are ports if their names start with a port prefix of the OS, e.g.
+     *            <code>ttyUSB</code>. Null for the device directory of the OS.
+     * @param linkDirectories
+     *            directories only containing ports, e.g. the links of <code>/dev/serial/by-id</code>.
+     * @throws IOException
+     *             if the native library does not support port discovery.
+     */
+    public RXTXPortDiscovery(CommPortDiscoveryListener listener, String deviceDirectory, String... linkDirectories)
+            throws IOException {
+        this.listener = listener;
+        long handle;
+        try {
+            handle = nativeCreate();
+        } catch (UnsatisfiedLinkError e) {
+            handle = 0;
+        }
+        if (handle == 0) {
+            throw new IOException("port discovery is not supported by the native library");
+        }
+        this.handle = handle;
+
+        String portDirectory = driver.getPortDirectory();
+        directories.add(new Directory(deviceDirectory == null ? portDirectory : deviceDirectory, true, true));
+        for (String linkDirectory : linkDirectories) {
+            directories.add(new Directory(linkDirectory, false, true));
+        }
+        for (Directory directory : directories) {
+            if (!watch(directory)) {
+                watchParent(directory);
+            }
+        }
+
+        // events from now on are queued until the thread runs, ports found twice are ignored
+        CommPortIdentifier.getPortIdentifiers();
+        CommPortIdentifier.discoveryStarted();
+        for (Directory directory : directories) {
+            // the rescan has already checked the device directory of the OS
+            if (directory.wd >= 0 && !(directory.prefixed && directory.path.equals(portDirectory))) {
+                sync(directory, false);
+            }
+        }
+
+        thread = new Thread("RXTX port discovery") {
+            @Override
+            public void run() {
+                try {
+                    nativeRun(RXTXPortDiscovery.this.handle);
+                } finally {
+                    synchronized (RXTXPortDiscovery.this) {
+                        closed = true;
+                        nativeClose(RXTXPortDiscovery.this.handle);
+                    }
+                    CommPortIdentifier.discoveryStopped();
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching. Afterwards {@link CommPortIdentifier#getPortIdentifiers()} rescans again if no other discovery
+     * runs. May be called from the listener.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the discovery thread to end.
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            nativeWakeup(handle);
+        }
+        if (Thread.currentThread() != thread) {
+            thread.join();
+        }
+    }
+
+    /**
+     * @return true until the discovery is closed.
+     */
+    public synchronized boolean isOpen() {
+        return !closed;
+    }
+
+    /*
+     * Called by nativeRun for each inotify event
+     */
+    private void event(int wd, int flags, String name) {
+        if ((flags & OVERFLOW) != 0) {
+            // events were lost
+            for (Directory directory : directories) {
+                if (directory.wd >= 0) {
+                    sync(directory, true);
+                }
+            }
+            watchCreated();
+            return;
+        }
+        Directory directory = watches.get(wd);
+        if (directory == null) {
+            return;
+        }
+        if ((flags & GONE) != 0) {
+            watches.remove(wd);
+            nativeRemoveWatch(handle, wd);
+            directory.wd = -1;
+            if (directory.ports) {
+                for (CommPortIdentifier cpi : CommPortIdentifier.getKnownPorts()) {
+                    if (directory.contains(cpi.getName())) {
+                        removed(cpi.getName(), true);
+                    }
+                }
+            }
+            // watch the parents of the directories that are missing now
+            watchCreated();
+        }
+        else if ((flags & DIRECTORY) != 0) {
+            if ((flags & ADDED) != 0) {
+                watchCreated();
+            }
+        }
+        else if (directory.ports) {
+            if ((flags & ADDED) != 0) {
+                added(directory, name, true);
+            }
+            else if ((flags & REMOVED) != 0) {
+                removed(directory.path + name, true);
+            }
+        }
+    }
+
+    private void added(Directory directory, String name, boolean notify) {
+        String portName = directory.path + name;
+        if (CommPortIdentifier.getKnownPort(portName) != null) {
+            return;
+        }
+        int portType = driver.probePort(directory.path, name, directory.prefixed);
+        if (portType == 0) {
+            return;
+        }
+        CommPortIdentifier cpi = CommPortIdentifier.addDiscoveredPort(portName, portType, driver);
+        if (cpi != null && notify) {
+            listener.portAdded(cpi);
+        }
+    }
+
+    private void removed(String portName, boolean notify) {
+        CommPortIdentifier cpi = CommPortIdentifier.removeDiscoveredPort(portName);
+        if (cpi != null && notify) {
+            listener.portRemoved(cpi);
+        }
+    }
+
+    /*
+     * Brings the known ports of the directory in line with its entries
+     */
+    private void sync(Directory directory, boolean notify) {
+        String[] names = new File(directory.path).list();
+        if (names == null) {
+            return;
+        }
+        Set<String> portNames = new HashSet<String>();
+        for (String name : names) {
+            portNames.add(directory.path + name);
+            added(directory, name, notify);
+        }
+        for (CommPortIdentifier cpi : CommPortIdentifier.getKnownPorts()) {
+            if (directory.contains(cpi.getName()) && !portNames.contains(cpi.getName())) {
+                removed(cpi.getName(), notify);
+            }
+        }
+    }
+
+    private boolean watch(Directory directory) {
+        directory.wd = nativeAddWatch(handle, directory.path);
+        if (directory.wd < 0) {
+            return false;
+        }
+        // a directory watched for ports and as the parent of a missing one has one watch descriptor
+        if (directory.ports || !watches.containsKey(directory.wd)) {
+            watches.put(directory.wd, directory);
+        }
+        return true;
+    }
+
+    /*
+     * Watches the nearest existing parent of a missing directory, to notice when it is created
+     */
+    private void watchParent(Directory directory) {
+        File parent = new File(directory.path).getParentFile();
+        while (parent != null && !parent.isDirectory()) {
+            parent = parent.getParentFile();
+        }
+        if (parent == null) {
+            return;
+        }
+        Directory watched = new Directory(parent.getPath(), false, false);
+        for (Directory d : watches.values()) {
+            if (d.path.equals(watched.path)) {
+                return;
+            }
+        }
+        watch(watched);
+    }
+
+    /*
+     * Watches the missing directories that were created, or else their nearest existing parent
+     */
+    private void watchCreated() {
+        for (Directory directory : directories) {
+            if (directory.wd < 0) {
+                if (watch(directory)) {
+                    sync(directory, true);
+                }
+                else {
+                    watchParent(directory);
+                }
+            }
+        }
+    }
+
+    private static final class Directory {
+        /* ends with the separator, like the device directory */
+        private final String path;
+        private final boolean prefixed;
+        /* false if the directory is watched only until a missing directory below it is created */
+        private final boolean ports;
+        private int wd = -1;
+
+        Directory(String path, boolean prefixed, boolean ports) {
+            this.path = path.endsWith(File.separator) ? path : path + File.separator;
+            this.prefixed = prefixed;
+            this.ports = ports;
+        }
+
+        boolean contains(String portName) {
+            return portName.startsWith(path) && portName.indexOf(File.separatorChar, path.length()) < 0;
+        }
+    }
+
+    private native static long nativeCreate();
+
+    private native static int nativeAddWatch(long handle, String directory);
+
+    private native static void nativeRemoveWatch(long handle, int wd);
+
+    private native void nativeRun(long handle);
+
+    private native static void nativeWakeup(long handle);
+
+    private native static void nativeClose(long handle);
+
+}
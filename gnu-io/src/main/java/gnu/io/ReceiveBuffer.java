@@ -0,0 +1,264 @@
+package gnu.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * The ring buffer of RXTXPort.enableReceiveBuffer(). A single reader thread appends the bytes read from the port into
+ * the free part of the ring, readers of the input stream take them from the filled part. Both parts are only changed
+ * while holding lock. The reader thread fills the free part without holding it, as it blocks in native code meanwhile.
+ */
+final class ReceiveBuffer {
+
+    private final ByteBuffer buffer;
+    /* the backing array of a heap buffer, null for a direct buffer */
+    private final byte[] array;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    /* guarded by lock */
+    private int head = 0;
+    private int count = 0;
+    private IOException failure;
+    /* counts the calls of interrupt() */
+    private int interrupts = 0;
+
+    private volatile int peak = 0;
+    private volatile long stalls = 0;
+
+    ReceiveBuffer(int capacity, boolean direct) {
+        this.capacity = capacity;
+        if (direct) {
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+            this.array = null;
+        }
+        else {
+            this.array = new byte[capacity];
+            this.buffer = ByteBuffer.wrap(array);
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    boolean isDirect() {
+        return array == null;
+    }
+
+    /*
+     * The heap array to read into, null for a direct buffer
+     */
+    byte[] array() {
+        return array;
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    int getPeak() {
+        return peak;
+    }
+
+    long getStalls() {
+        return stalls;
+    }
+
+    /*
+     * Called by the reader thread: waits for free space and returns the offset of the first free byte. The number of
+     * contiguous free bytes from there is returned by free(offset). Returns -1 if the buffer failed.
+     */
+    int awaitFree() throws InterruptedException {
+        lock.lock();
+        try {
+            if (count == capacity && failure == null) {
+                stalls++;
+                while (count == capacity && failure == null) {
+                    notFull.await();
+                }
+            }
+            if (failure != null) {
+                return -1;
+            }
+            return (head + count) % capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int free(int offset) {
+        lock.lock();
+        try {
+            return Math.min(capacity - count, capacity - offset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Called by the reader thread after it wrote n bytes at the offset returned by awaitFree()
+     */
+    void appended(int n) {
+        lock.lock();
+        try {
+            count += n;
+            if (count > peak) {
+                peak = count;
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Makes readers fail with e once the bytes received before are read. Ends the reader thread.
+     */
+    void fail(IOException e) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+            }
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * See RXTXPort.interruptRead(): the readers waiting now fail right away, later reads wait again
+     */
+    void interrupt() {
+        lock.lock();
+        try {
+            interrupts++;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int available() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Waits until at least minimum bytes are buffered or timeout ms passed, -1 to wait without timeout. Returns the
+     * number of bytes buffered, less than minimum on timeout.
+     */
+    private int await(int minimum, int timeout) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int interrupt = interrupts;
+        try {
+            while (count < minimum) {
+                if (interrupts != interrupt) {
+                    throw new IOException("read interrupted");
+                }
+                if (failure != null && count == 0) {
+                    throw failure;
+                }
+                if (failure != null) {
+                    // no more bytes will come
+                    return count;
+                }
+                if (timeout < 0) {
+                    notEmpty.await();
+                }
+                else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return count;
+                    }
+                    notEmpty.awaitNanos(remaining);
+                }
+            }
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /*
+     * Like the read of RXTXPort: waits until minimum bytes are buffered, then takes up to len bytes. On timeout takes
+     * the bytes buffered so far, fewer than minimum and 0 if there are none.
+     */
+    int read(byte[] b, int off, int len, int minimum, int timeout) throws IOException {
+        lock.lock();
+        try {
+            int available = await(Math.min(minimum, len), timeout);
+            int n = Math.min(available, len);
+            int first = Math.min(n, capacity - head);
+            get(head, b, off, first);
+            get(0, b, off + first, n - first);
+            take(n);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int read(ByteBuffer dst, int minimum, int timeout) throws IOException {
+        lock.lock();
+        try {
+            int len = dst.remaining();
+            int available = await(Math.min(minimum, len), timeout);
+            int n = Math.min(available, len);
+            int first = Math.min(n, capacity - head);
+            put(dst, head, first);
+            put(dst, 0, n - first);
+            take(n);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void get(int from, byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        if (array != null) {
+            System.arraycopy(array, from, b, off, len);
+        }
+        else {
+            ByteBuffer src = buffer.duplicate();
+            src.position(from);
+            src.get(b, off, len);
+        }
+    }
+
+    private void put(ByteBuffer dst, int from, int len) {
+        if (len == 0) {
+            return;
+        }
+        ByteBuffer src = buffer.duplicate();
+        src.limit(from + len);
+        src.position(from);
+        dst.put(src);
+    }
+
+    private void take(int n) {
+        if (n == 0) {
+            return;
+        }
+        head = (head + n) % capacity;
+        count -= n;
+        notFull.signalAll();
+    }
+
+}
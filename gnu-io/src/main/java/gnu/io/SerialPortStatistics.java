@@ -0,0 +1,89 @@
+package gnu.io;
+
+/**
+ * Extension to CommAPI. The counters the UART driver keeps for a port, read with TIOCGICOUNT by
+ * {@link RXTXPort#getStatistics()} or {@link RXTXPort#getStatisticsDelta()}.
+ * <p>
+ * Polling the counters costs one ioctl, unlike listening for OE, PE, FE and BI events. The driver counts from the
+ * time the device was set up, not from the time the port was opened. Counters are 32 bit and wrap around, deltas are
+ * correct across one wrap.
+ */
+public final class SerialPortStatistics {
+
+    /* the order of the counters written by nativeGetStatistics */
+    static final int COUNTERS = 7;
+
+    private final long[] counts;
+
+    SerialPortStatistics(long[] counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * @return the number of bytes received.
+     */
+    public long getReceived() {
+        return counts[0];
+    }
+
+    /**
+     * @return the number of bytes transmitted.
+     */
+    public long getTransmitted() {
+        return counts[1];
+    }
+
+    /**
+     * @return the number of framing errors.
+     */
+    public long getFramingErrors() {
+        return counts[2];
+    }
+
+    /**
+     * @return the number of bytes lost because the hardware FIFO overran.
+     */
+    public long getOverrunErrors() {
+        return counts[3];
+    }
+
+    /**
+     * @return the number of parity errors.
+     */
+    public long getParityErrors() {
+        return counts[4];
+    }
+
+    /**
+     * @return the number of breaks received.
+     */
+    public long getBreaks() {
+        return counts[5];
+    }
+
+    /**
+     * @return the number of bytes lost because the receive buffer of the driver was full.
+     */
+    public long getBufferOverruns() {
+        return counts[6];
+    }
+
+    /*
+     * The counters since the earlier statistics
+     */
+    SerialPortStatistics since(SerialPortStatistics earlier) {
+        long[] delta = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++) {
+            delta[i] = (counts[i] - earlier.counts[i]) & 0xffffffffL;
+        }
+        return new SerialPortStatistics(delta);
+    }
+
+    @Override
+    public String toString() {
+        return "rx=" + getReceived() + " tx=" + getTransmitted() + " frame=" + getFramingErrors() + " overrun="
+                + getOverrunErrors() + " parity=" + getParityErrors() + " brk=" + getBreaks() + " buf_overrun="
+                + getBufferOverruns();
+    }
+
+}
@@ -57,7 +57,20 @@
 --------------------------------------------------------------------------*/
 package gnu.io;
 
-import java.io.RandomAccessFile;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class Zystem {
     public static final int SILENT_MODE = 0;
@@ -67,8 +80,16 @@ public class Zystem {
     public static final int PRINT_MODE = 4;
     public static final int J2EE_MSG_MODE = 5;
     public static final int J2SE_LOG_MODE = 6;
+    public static final int SYSTEM_LOGGER_MODE = 7;
+
+    /* levels of the reports, the reports without a level are DEBUG reports */
+    public static final int ERROR = 1;
+    public static final int WARNING = 2;
+    public static final int INFO = 3;
+    public static final int DEBUG = 4;
 
     static int mode;
+    static int level = DEBUG;
 
     static {
         /*
@@ -83,6 +104,8 @@ public class Zystem {
     }
 
     private static String target;
+    private static FileSink sink;
+    private static SystemLogger systemLogger;
 
     public Zystem(int m) throws UnSupportedLoggerException {
         mode = m;
@@ -99,7 +122,12 @@ public class Zystem {
      * <li>PRINT_MODE
      * <li>J2EE_MSG_MODE
      * <li>J2SE_LOG_MODE log to java.util.logging
+     * <li>SYSTEM_LOGGER_MODE log to System.Logger, or to java.util.logging before Java 9
      * </ul>
+     * The reports above the level of the property "gnu.io.log.level" (ERROR, WARNING, INFO or DEBUG, default DEBUG)
+     * are dropped. In FILE_MODE the file is taken from the property "gnu.io.log.file", the reports are queued and
+     * appended by a background thread. Up to "gnu.io.log.buffer" reports (default 4096) are queued, further reports
+     * are dropped and counted until the thread catches up.
      */
     public Zystem() throws UnSupportedLoggerException {
         String s = System.getProperty("gnu.io.log.mode");
@@ -125,6 +153,9 @@ public class Zystem {
             else if ("J2SE_LOG_MODE".equals(s)) {
                 mode = J2SE_LOG_MODE;
             }
+            else if ("SYSTEM_LOGGER_MODE".equals(s)) {
+                mode = SYSTEM_LOGGER_MODE;
+            }
             else {
                 try {
                     mode = Integer.parseInt(s);
@@ -136,7 +167,30 @@ public class Zystem {
         else {
             mode = SILENT_MODE;
         }
-        startLogger("asdf");
+
+        s = System.getProperty("gnu.io.log.level");
+        if (s != null) {
+            if ("ERROR".equals(s)) {
+                level = ERROR;
+            }
+            else if ("WARNING".equals(s)) {
+                level = WARNING;
+            }
+            else if ("INFO".equals(s)) {
+                level = INFO;
+            }
+            else if ("DEBUG".equals(s)) {
+                level = DEBUG;
+            }
+            else {
+                try {
+                    level = Integer.parseInt(s);
+                } catch (NumberFormatException e) {
+                    level = DEBUG;
+                }
+            }
+        }
+        startLogger(System.getProperty("gnu.io.log.file", "asdf"));
     }
 
     public void startLogger() throws UnSupportedLoggerException {
@@ -166,42 +220,39 @@ public class Zystem {
         target = null;
     }
 
+    /**
+     * Queues the string to be appended to the log file. Returns at once, the file is written by a background thread.
+     * 
+     * @param s
+     *            the string to append.
+     */
     public void filewrite(String s) {
-        try {
-            RandomAccessFile w = new RandomAccessFile(target, "rw");
-            w.seek(w.length());
-            w.writeBytes(s);
-            w.close();
-        } catch (Exception e) {
-            System.out.println("Debug output file write failed");
-        }
+        fileSink().offer(s);
     }
 
-    public boolean report(String s) {
-        if (mode == NET_MODE) {
-            // return( nativeNetReportln( s ) );
-        }
-        else if (mode == PRINT_MODE) {
-            System.out.println(s);
-            return (true);
-        }
-        else if (mode == MEX_MODE) {
-            // return( nativeMexReport( s ) );
-        }
-        else if (mode == SILENT_MODE) {
-            return (true);
-        }
-        else if (mode == FILE_MODE) {
-            filewrite(s);
+    /**
+     * @param l
+     *            the level, one of ERROR, WARNING, INFO or DEBUG.
+     * @return true if a report of the level would be logged. Callers check it before building an expensive report.
+     */
+    public boolean isLoggable(int l) {
+        if (l > level) {
+            return false;
         }
-        else if (mode == J2EE_MSG_MODE) {
-            return (false);
+        if (mode == FILE_MODE || mode == PRINT_MODE) {
+            return true;
         }
         else if (mode == J2SE_LOG_MODE) {
-            java.util.logging.Logger.getLogger("gnu.io").fine(s);
-            return (true);
+            return Logger.getLogger("gnu.io").isLoggable(julLevel(l));
         }
-        return (false);
+        else if (mode == SYSTEM_LOGGER_MODE) {
+            return systemLogger().isLoggable(l);
+        }
+        return false;
+    }
+
+    public boolean report(String s) {
+        return report(DEBUG, s, false);
     }
 
     public boolean reportln() {
@@ -223,6 +274,7 @@ public class Zystem {
         }
         else if (mode == FILE_MODE) {
             filewrite("\n");
+            return (true);
         }
         else if (mode == J2EE_MSG_MODE) {
             return (false);
@@ -231,34 +283,301 @@ public class Zystem {
     }
 
     public boolean reportln(String s) {
-        // boolean b;
+        return report(DEBUG, s, true);
+    }
+
+    /**
+     * Reports a line of the given level.
+     * 
+     * @param l
+     *            the level, one of ERROR, WARNING, INFO or DEBUG.
+     * @param s
+     *            the line.
+     * @return false if the mode cannot report.
+     */
+    public boolean reportln(int l, String s) {
+        return report(l, s, true);
+    }
+
+    /**
+     * Reports a line of the given level. The line is only built if it is logged.
+     * 
+     * @param l
+     *            the level, one of ERROR, WARNING, INFO or DEBUG.
+     * @param s
+     *            builds the line.
+     * @return true if the line was logged.
+     */
+    public boolean reportln(int l, Supplier<String> s) {
+        if (!isLoggable(l)) {
+            return false;
+        }
+        return report(l, s.get(), true);
+    }
+
+    private boolean report(int l, String s, boolean newline) {
         if (mode == NET_MODE) {
-            // b= nativeNetReportln( s + "\n" );
-            // return(b);
+            // return( nativeNetReportln( s ) );
         }
         else if (mode == PRINT_MODE) {
-            System.out.println(s);
+            if (l <= level) {
+                System.out.println(s);
+            }
             return (true);
         }
         else if (mode == MEX_MODE) {
-            // b = nativeMexReportln( s + "\n" );
-            // return(b);
+            // return( nativeMexReport( s ) );
         }
         else if (mode == SILENT_MODE) {
             return (true);
         }
         else if (mode == FILE_MODE) {
-            filewrite(s + "\n");
+            if (l <= level) {
+                filewrite(newline ? s + "\n" : s);
+            }
+            return (true);
         }
         else if (mode == J2EE_MSG_MODE) {
             return (false);
         }
         else if (mode == J2SE_LOG_MODE) {
+            if (l <= level) {
+                Logger.getLogger("gnu.io").log(julLevel(l), s);
+            }
+            return (true);
+        }
+        else if (mode == SYSTEM_LOGGER_MODE) {
+            if (l <= level) {
+                systemLogger().log(l, s);
+            }
             return (true);
         }
         return (false);
     }
 
+    /**
+     * @return the number of reports dropped because the queue of the log file was full.
+     */
+    static long droppedReports() {
+        return fileSink().dropped.get();
+    }
+
+    /**
+     * Waits until the reports queued so far have been written to the log file.
+     */
+    static void flush() {
+        fileSink().flush(Long.MAX_VALUE / 2);
+    }
+
+    private static synchronized FileSink fileSink() {
+        if (sink == null) {
+            int capacity;
+            try {
+                capacity = Integer.parseInt(System.getProperty("gnu.io.log.buffer", "4096"));
+            } catch (NumberFormatException e) {
+                capacity = 4096;
+            }
+            sink = new FileSink(Math.max(capacity, 1));
+            Thread thread = new Thread(sink, "RXTX log writer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread("RXTX log flush") {
+                @Override
+                public void run() {
+                    sink.flush(1000);
+                }
+            });
+        }
+        return sink;
+    }
+
+    private static Level julLevel(int l) {
+        switch (l) {
+        case ERROR:
+            return Level.SEVERE;
+        case WARNING:
+            return Level.WARNING;
+        case INFO:
+            return Level.INFO;
+        default:
+            return Level.FINE;
+        }
+    }
+
+    private static synchronized SystemLogger systemLogger() {
+        if (systemLogger == null) {
+            systemLogger = SystemLogger.create();
+        }
+        return systemLogger;
+    }
+
+    /*
+     * System.Logger is called by reflection, it does not exist before Java 9. Falls back to java.util.logging then.
+     */
+    private static final class SystemLogger {
+        /* the System.Logger, null if it does not exist */
+        private final Object logger;
+        private final Method isLoggable;
+        private final Method log;
+        /* the System.Logger.Levels of ERROR, WARNING, INFO and DEBUG */
+        private final Object[] levels;
+
+        private SystemLogger(Object logger, Method isLoggable, Method log, Object[] levels) {
+            this.logger = logger;
+            this.isLoggable = isLoggable;
+            this.log = log;
+            this.levels = levels;
+        }
+
+        static SystemLogger create() {
+            try {
+                Class<?> levelClass = Class.forName("java.lang.System$Logger$Level");
+                Class<?> loggerClass = Class.forName("java.lang.System$Logger");
+                String[] names = { "ERROR", "WARNING", "INFO", "DEBUG" };
+                Object[] levels = new Object[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    levels[i] = levelClass.getField(names[i]).get(null);
+                }
+                return new SystemLogger(System.class.getMethod("getLogger", String.class).invoke(null, "gnu.io"),
+                        loggerClass.getMethod("isLoggable", levelClass),
+                        loggerClass.getMethod("log", levelClass, String.class), levels);
+            } catch (Exception e) {
+                return new SystemLogger(null, null, null, null);
+            }
+        }
+
+        boolean isLoggable(int l) {
+            if (logger == null) {
+                return Logger.getLogger("gnu.io").isLoggable(julLevel(l));
+            }
+            try {
+                return (Boolean) isLoggable.invoke(logger, level(l));
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        void log(int l, String s) {
+            if (logger == null) {
+                Logger.getLogger("gnu.io").log(julLevel(l), s);
+                return;
+            }
+            try {
+                log.invoke(logger, level(l), s);
+            } catch (Exception e) {
+                // nowhere to report it
+            }
+        }
+
+        private Object level(int l) {
+            return levels[Math.min(Math.max(l, ERROR), DEBUG) - 1];
+        }
+    }
+
+    /*
+     * Appends the queued reports to the log file. The file stays open, each batch of reports is written with one call.
+     */
+    private static final class FileSink implements Runnable {
+        private static final int BATCH = 1024;
+
+        /* the reports, and a latch per flush() counted down once the reports before it are written */
+        private final BlockingQueue<Object> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private final StringBuilder text = new StringBuilder();
+        private long reportedDropped = 0;
+        private String file;
+        private OutputStream out;
+
+        FileSink(int capacity) {
+            queue = new ArrayBlockingQueue<Object>(capacity);
+        }
+
+        void offer(String s) {
+            if (!queue.offer(s)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        /*
+         * Waits until the reports queued before have been written, at most for the given time
+         */
+        void flush(long timeout) {
+            long deadline = System.currentTimeMillis() + timeout;
+            CountDownLatch flushed = new CountDownLatch(1);
+            try {
+                // the queue may stay full if the writer thread hangs
+                if (queue.offer(flushed, timeout, TimeUnit.MILLISECONDS)) {
+                    flushed.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public void run() {
+            List<Object> batch = new ArrayList<Object>();
+            List<CountDownLatch> flushes = new ArrayList<CountDownLatch>();
+            while (true) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, BATCH - 1);
+                long d = dropped.get();
+                if (d != reportedDropped) {
+                    text.append("Zystem: ").append(d - reportedDropped).append(" reports dropped\n");
+                    reportedDropped = d;
+                }
+                for (Object o : batch) {
+                    if (o instanceof CountDownLatch) {
+                        flushes.add((CountDownLatch) o);
+                    }
+                    else {
+                        text.append((String) o);
+                    }
+                }
+                batch.clear();
+                append();
+                text.setLength(0);
+                for (CountDownLatch flushed : flushes) {
+                    flushed.countDown();
+                }
+                flushes.clear();
+            }
+        }
+
+        private void append() {
+            String t = target;
+            if (t == null || text.length() == 0) {
+                return;
+            }
+            try {
+                if (!t.equals(file)) {
+                    close();
+                    out = new FileOutputStream(t, true);
+                    file = t;
+                }
+                out.write(text.toString().getBytes("UTF-8"));
+            } catch (IOException e) {
+                System.out.println("Debug output file write failed");
+                close();
+            }
+        }
+
+        private void close() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // reopened by the next batch
+                }
+            }
+            out = null;
+            file = null;
+        }
+    }
+
     /*
      * private native boolean nativeInit( ); private native void nativeFinalize();
      */
@@ -0,0 +1,135 @@
+package gnu.io;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks the listeners of ports served by the {@link RXTXEventEngine} on the ports of an {@link RXTXNullModem}. Runs
+ * with the system property <code>gnu.io.rxtx.EventEngine=true</code>, set by the build.
+ */
+public class EventEngineTest {
+
+    @Rule
+    public final NullModemRule nullModem = new NullModemRule();
+
+    private RXTXPort port1;
+    private RXTXPort port2;
+
+    @BeforeClass
+    public static void assumeEnabled() {
+        Assume.assumeTrue(RXTXEventEngine.isEnabled());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        port1 = nullModem.openPort1();
+        port2 = nullModem.openPort2();
+    }
+
+    @Test(timeout = 10000)
+    public void removeListenerOfInterruptedThread() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            final Semaphore dataAvailable = new Semaphore(0);
+            port2.addEventListener(new SerialPortEventListener() {
+                public void serialEvent(SerialPortEvent event) {
+                    if (event.getEventType() == SerialPortEvent.DATA_AVAILABLE) {
+                        dataAvailable.release();
+                    }
+                }
+            });
+            port2.notifyOnDataAvailable(true);
+            port1.getOutputStream().write(i);
+            Assert.assertTrue(dataAvailable.tryAcquire(2, TimeUnit.SECONDS));
+            Assert.assertEquals(i, port2.getInputStream().read());
+
+            Thread.currentThread().interrupt();
+            port2.removeEventListener();
+            Assert.assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void queuedEventsDroppedAfterRemove() throws Exception {
+        final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+        RXTXEventEngine.setExecutor(new Executor() {
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        try {
+            final AtomicInteger events = new AtomicInteger();
+            port2.addEventListener(new SerialPortEventListener() {
+                public void serialEvent(SerialPortEvent event) {
+                    events.incrementAndGet();
+                }
+            });
+            port2.notifyOnDataAvailable(true);
+            port1.getOutputStream().write(1);
+            Runnable task = tasks.poll(2, TimeUnit.SECONDS);
+            Assert.assertNotNull(task);
+
+            port2.removeEventListener();
+            task.run();
+            Assert.assertEquals(0, events.get());
+        } finally {
+            RXTXEventEngine.setExecutor(null);
+        }
+    }
+
+    /*
+     * The listener closes its port on the loop thread while another thread opens and closes the ports of another null
+     * modem, and thus takes the locks of the engine in the order of an open.
+     */
+    @Test(timeout = 20000)
+    public void listenerClosesPortWhileOtherPortsOpen() throws Exception {
+        final RXTXNullModem other = new RXTXNullModem();
+        final AtomicBoolean stop = new AtomicBoolean();
+        Thread opener = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!stop.get()) {
+                        NullModemRule.open(other.getPortName1()).close();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        opener.start();
+        try {
+            for (int i = 0; i < 50; i++) {
+                port2.close();
+                port2 = nullModem.openPort2();
+                final RXTXPort port = port2;
+                final Semaphore closed = new Semaphore(0);
+                port.addEventListener(new SerialPortEventListener() {
+                    public void serialEvent(SerialPortEvent event) {
+                        port.close();
+                        closed.release();
+                    }
+                });
+                port.notifyOnDataAvailable(true);
+                port1.getOutputStream().write(i);
+                Assert.assertTrue(closed.tryAcquire(2, TimeUnit.SECONDS));
+            }
+        } finally {
+            stop.set(true);
+            opener.join();
+            other.close();
+        }
+    }
+
+}
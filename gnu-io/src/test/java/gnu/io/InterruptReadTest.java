@@ -0,0 +1,131 @@
+package gnu.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks {@link RXTXPort#interruptRead()} and closing on the ports of an {@link RXTXNullModem}.
+ */
+public class InterruptReadTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Rule
+    public final NullModemRule nullModem = new NullModemRule();
+
+    private RXTXPort port1;
+    private RXTXPort port2;
+
+    @Before
+    public void setUp() throws Exception {
+        port1 = nullModem.openPort1();
+        port2 = nullModem.openPort2();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void laterReadsBlockAgain() throws Exception {
+        Assert.assertTrue(port2.isReadInterruptible());
+        for (int i = 0; i < 3; i++) {
+            Future<Boolean> reader = read(port2.getInputStream());
+            Thread.sleep(50);
+            port2.interruptRead();
+            Assert.assertTrue(reader.get(2, TimeUnit.SECONDS));
+        }
+
+        // neither fails nor returns right away
+        port2.enableReceiveTimeout(200);
+        long start = System.nanoTime();
+        Assert.assertEquals(-1, port2.getInputStream().read());
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+
+        port1.getOutputStream().write(42);
+        Assert.assertEquals(42, port2.getInputStream().read());
+    }
+
+    @Test(timeout = 10000)
+    public void interruptWithoutReader() throws Exception {
+        port2.interruptRead();
+        port1.getOutputStream().write(42);
+        port2.enableReceiveTimeout(1000);
+        Assert.assertEquals(42, port2.getInputStream().read());
+    }
+
+    @Test(timeout = 10000)
+    public void receiveBufferKeepsReading() throws Exception {
+        port2.enableReceiveBuffer(4096, false);
+        Future<Boolean> reader = read(port2.getInputStream());
+        Thread.sleep(50);
+        port2.interruptRead();
+        Assert.assertTrue(reader.get(2, TimeUnit.SECONDS));
+
+        port1.getOutputStream().write(42);
+        port2.enableReceiveTimeout(1000);
+        Assert.assertEquals(42, port2.getInputStream().read());
+    }
+
+    @Test(timeout = 10000)
+    public void closeByInterruptedThread() throws Exception {
+        Future<Boolean> reader = read(port2.getInputStream());
+        Thread.sleep(50);
+        Thread.currentThread().interrupt();
+        port2.close();
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertTrue(reader.get(2, TimeUnit.SECONDS));
+        Assert.assertEquals(0, port2.getFd());
+
+        // the port can be opened again
+        port2 = nullModem.openPort2();
+    }
+
+    @Test(timeout = 10000)
+    public void secondCloseDoesNothing() throws Exception {
+        port2.close();
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        new Zystem(Zystem.PRINT_MODE);
+        try {
+            port2.close();
+        } finally {
+            new Zystem(Zystem.SILENT_MODE);
+            System.setOut(out);
+        }
+        // e.g. no warning about a bad file descriptor
+        Assert.assertEquals("", printed.toString());
+    }
+
+    /*
+     * Reads a byte with the timeout disabled, returns true if the read failed
+     */
+    private Future<Boolean> read(final InputStream is) {
+        return executor.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                try {
+                    is.read();
+                } catch (IOException e) {
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+}
@@ -1,13 +1,26 @@
 package gnu.io;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class LibraryLoaderTest {
 
+    @Rule
+    public TemporaryFolder cache = new TemporaryFolder();
+
     @Test
     public void test1() throws Exception {
 
@@ -22,4 +35,66 @@ public class LibraryLoaderTest {
         Assert.assertEquals("hello.hello.world", matcher.group(1));
     }
 
+    @Test
+    public void cachedLibraryIsReused() throws Exception {
+        byte[] lib = "not really a library".getBytes("US-ASCII");
+        File first = LibraryLoader.cachedLibrary(cache.getRoot(), "librxtxSerial.so", lib);
+        Assert.assertEquals("librxtxSerial.so", first.getName());
+        Assert.assertEquals("3855c305-20", first.getParentFile().getName());
+        first.setLastModified(1000);
+
+        File second = LibraryLoader.cachedLibrary(cache.getRoot(), "librxtxSerial.so", lib);
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(1000, second.lastModified());
+        Assert.assertEquals(1, first.getParentFile().list().length);
+    }
+
+    @Test
+    public void damagedLibraryIsReplaced() throws Exception {
+        byte[] lib = "not really a library".getBytes("US-ASCII");
+        File cached = LibraryLoader.cachedLibrary(cache.getRoot(), "librxtxSerial.so", lib);
+        FileOutputStream fos = new FileOutputStream(cached);
+        fos.write("not really".getBytes("US-ASCII"));
+        fos.close();
+
+        Assert.assertEquals(cached, LibraryLoader.cachedLibrary(cache.getRoot(), "librxtxSerial.so", lib));
+        Assert.assertEquals(lib.length, cached.length());
+    }
+
+    @Test
+    public void otherContentIsCachedSeparately() throws Exception {
+        File a = LibraryLoader.cachedLibrary(cache.getRoot(), "librxtxSerial.so", new byte[] { 1 });
+        File b = LibraryLoader.cachedLibrary(cache.getRoot(), "librxtxSerial.so", new byte[] { 2 });
+        Assert.assertNotEquals(a.getParentFile(), b.getParentFile());
+    }
+
+    @Test
+    public void concurrentExtraction() throws Exception {
+        final byte[] lib = new byte[512 * 1024];
+        for (int i = 0; i < lib.length; i++) {
+            lib[i] = (byte) i;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<File>> results = new ArrayList<Future<File>>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        return LibraryLoader.cachedLibrary(cache.getRoot(), "librxtxSerial.so", lib);
+                    }
+                }));
+            }
+            File cached = results.get(0).get();
+            for (Future<File> result : results) {
+                Assert.assertEquals(cached, result.get());
+            }
+            Assert.assertEquals(lib.length, cached.length());
+            // no temporary files are left behind
+            Assert.assertEquals(1, cached.getParentFile().list().length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
@@ -0,0 +1,67 @@
+package gnu.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.rules.ExternalResource;
+
+/**
+ * An {@link RXTXNullModem} for each test as a <code>@Rule</code>, or for all tests of a class as a
+ * <code>@ClassRule</code>. Ports are opened at 115200 8N1, the ports opened by {@link #openPort1()} and
+ * {@link #openPort2()} are closed with the null modem.
+ */
+class NullModemRule extends ExternalResource {
+
+    private final List<RXTXPort> ports = new ArrayList<RXTXPort>();
+
+    private RXTXNullModem nullModem;
+
+    @Override
+    protected void before() throws IOException {
+        nullModem = new RXTXNullModem();
+    }
+
+    @Override
+    protected void after() {
+        for (RXTXPort port : ports) {
+            port.close();
+        }
+        ports.clear();
+        try {
+            nullModem.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    String getPortName1() {
+        return nullModem.getPortName1();
+    }
+
+    String getPortName2() {
+        return nullModem.getPortName2();
+    }
+
+    RXTXPort openPort1() throws Exception {
+        RXTXPort port = open(getPortName1());
+        ports.add(port);
+        return port;
+    }
+
+    RXTXPort openPort2() throws Exception {
+        RXTXPort port = open(getPortName2());
+        ports.add(port);
+        return port;
+    }
+
+    /**
+     * Opens a port at 115200 8N1, e.g. one of another null modem. Closing it is up to the caller.
+     */
+    static RXTXPort open(String portName) throws Exception {
+        RXTXPort port = (RXTXPort) CommPortIdentifier.getPortIdentifier(portName).open("NullModemRule", 1000);
+        port.setSerialPortParams(115200, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+        return port;
+    }
+
+}
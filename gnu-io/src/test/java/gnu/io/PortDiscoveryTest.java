@@ -0,0 +1,110 @@
+package gnu.io;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks that {@link RXTXPortDiscovery} reports ports plugged in and out. A temporary directory stands in for /dev,
+ * the ports are "plugged in" by creating links to a port of an {@link RXTXNullModem} in it and in its serial/by-id
+ * directory, which does not exist when the discovery starts.
+ */
+public class PortDiscoveryTest {
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+    @Rule
+    public final NullModemRule nullModem = new NullModemRule();
+
+    private Path port;
+    private Path dev;
+    private Path byId;
+    private RXTXPortDiscovery discovery;
+
+    @Before
+    public void setUp() throws Exception {
+        port = new File(nullModem.getPortName1()).toPath();
+        dev = Files.createTempDirectory("dev");
+        byId = dev.resolve("serial").resolve("by-id");
+
+        discovery = new RXTXPortDiscovery(new CommPortDiscoveryListener() {
+            public void portAdded(CommPortIdentifier portIdentifier) {
+                events.add("added " + portIdentifier.getName());
+            }
+
+            public void portRemoved(CommPortIdentifier portIdentifier) {
+                events.add("removed " + portIdentifier.getName());
+            }
+        }, dev.toString(), byId.toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        discovery.close();
+        Files.deleteIfExists(dev.resolve("ttyUSB0"));
+        Files.deleteIfExists(dev.resolve("foo0"));
+        Files.deleteIfExists(dev.resolve("foo1"));
+        Files.deleteIfExists(byId.resolve("usb-FTDI_TTL232R-if00-port0"));
+        Files.deleteIfExists(byId);
+        Files.deleteIfExists(byId.getParent());
+        Files.delete(dev);
+    }
+
+    @Test(timeout = 20000)
+    public void pluggedInAndOut() throws Exception {
+        Files.createSymbolicLink(dev.resolve("ttyUSB0"), port);
+        expect("added " + dev.resolve("ttyUSB0"));
+        // no port prefix of the OS
+        Files.createSymbolicLink(dev.resolve("foo0"), port);
+        CommPortIdentifier.getPortIdentifier(dev.resolve("ttyUSB0").toString()).open("PortDiscoveryTest", 1000)
+                .close();
+
+        Files.createDirectories(byId);
+        Files.createSymbolicLink(byId.resolve("usb-FTDI_TTL232R-if00-port0"), port);
+        expect("added " + byId.resolve("usb-FTDI_TTL232R-if00-port0"));
+
+        Files.delete(dev.resolve("ttyUSB0"));
+        expect("removed " + dev.resolve("ttyUSB0"));
+        Files.delete(byId.resolve("usb-FTDI_TTL232R-if00-port0"));
+        expect("removed " + byId.resolve("usb-FTDI_TTL232R-if00-port0"));
+        Files.delete(byId);
+        Files.delete(byId.getParent());
+        Files.delete(dev.resolve("foo0"));
+
+        Assert.assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 20000)
+    public void addedByName() throws Exception {
+        // not found by a rescan, as it has no port prefix of the OS
+        Files.createSymbolicLink(dev.resolve("foo0"), port);
+        String name = dev.resolve("foo0").toString();
+        CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(name, CommPortIdentifier.PORT_SERIAL);
+        Assert.assertSame(portIdentifier, CommPortIdentifier.getKnownPort(name));
+        portIdentifier.open("PortDiscoveryTest", 1000).close();
+
+        // a file that is no port
+        Files.createFile(dev.resolve("foo1"));
+        try {
+            CommPortIdentifier.getPortIdentifier(dev.resolve("foo1").toString(), CommPortIdentifier.PORT_SERIAL);
+            Assert.fail();
+        } catch (NoSuchPortException e) {
+            Assert.assertNull(CommPortIdentifier.getKnownPort(dev.resolve("foo1").toString()));
+        }
+        CommPortIdentifier.removeDiscoveredPort(name);
+    }
+
+    private void expect(String event) throws InterruptedException {
+        Assert.assertEquals(event, events.poll(3, TimeUnit.SECONDS));
+    }
+
+}
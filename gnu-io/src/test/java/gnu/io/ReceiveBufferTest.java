@@ -0,0 +1,167 @@
+package gnu.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+/**
+ * Sends 4 MB over an {@link RXTXNullModem} to a port with a heap and a direct receive buffer, while the reader pauses
+ * for a while, and checks the bytes, the timeout, the threshold, DATA_AVAILABLE events and closing during a read.
+ */
+public class ReceiveBufferTest {
+
+    private static final int SIZE = 4 * 1024 * 1024;
+
+    @ClassRule
+    public static final NullModemRule nullModem = new NullModemRule();
+
+    @Test(timeout = 60000)
+    public void heapBuffer() throws Exception {
+        receive(false);
+    }
+
+    @Test(timeout = 60000)
+    public void directBuffer() throws Exception {
+        receive(true);
+    }
+
+    @Test(timeout = 20000)
+    public void singleByteReads() throws Exception {
+        for (boolean buffered : new boolean[] { false, true }) {
+            RXTXPort sender = NullModemRule.open(nullModem.getPortName1());
+            RXTXPort receiver = NullModemRule.open(nullModem.getPortName2());
+            try {
+                if (buffered) {
+                    receiver.enableReceiveBuffer(65536, false);
+                }
+                // fits into the buffers of the pseudo terminals
+                int count = 2000;
+                write(sender, count).join();
+                awaitAvailable(receiver, count);
+                InputStream is = receiver.getInputStream();
+                for (int i = 0; i < count; i++) {
+                    Assert.assertEquals((byte) (i * 7) & 0xff, is.read());
+                }
+            } finally {
+                receiver.close();
+                sender.close();
+            }
+        }
+    }
+
+    private static void receive(boolean direct) throws Exception {
+        final RXTXPort sender = NullModemRule.open(nullModem.getPortName1());
+        final RXTXPort receiver = NullModemRule.open(nullModem.getPortName2());
+        try {
+            // a full buffer would count as a stall
+            receiver.enableReceiveBuffer(SIZE + 4096, direct);
+            final Semaphore dataAvailable = new Semaphore(0);
+            receiver.addEventListener(new SerialPortEventListener() {
+                public void serialEvent(SerialPortEvent event) {
+                    if (event.getEventType() == SerialPortEvent.DATA_AVAILABLE) {
+                        dataAvailable.release();
+                    }
+                }
+            });
+            receiver.notifyOnDataAvailable(true);
+
+            Thread writer = write(sender, SIZE);
+            // the receive buffer takes all bytes while nobody reads
+            writer.join(10000);
+            Assert.assertFalse(writer.isAlive());
+            awaitAvailable(receiver, SIZE);
+            Assert.assertTrue(dataAvailable.tryAcquire(1, TimeUnit.SECONDS));
+            InputStream is = receiver.getInputStream();
+            byte[] buffer = new byte[1000];
+            int numBytesRead = 0;
+            while (numBytesRead < SIZE) {
+                int n = is.read(buffer, 0, Math.min(buffer.length, SIZE - numBytesRead));
+                for (int i = 0; i < n; i++) {
+                    Assert.assertEquals((byte) ((numBytesRead + i) * 7), buffer[i]);
+                }
+                numBytesRead += n;
+            }
+            Assert.assertEquals(SIZE, receiver.getReceiveBufferPeak());
+            Assert.assertEquals(0, receiver.getReceiveBufferStalls());
+
+            receiver.enableReceiveTimeout(100);
+            long start = System.nanoTime();
+            Assert.assertEquals(-1, is.read());
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Assert.assertTrue(elapsed >= 99 && elapsed < 200);
+
+            // fewer bytes than the threshold are returned on timeout
+            receiver.enableReceiveThreshold(3);
+            sender.getOutputStream().write(new byte[] { 1, 2 });
+            start = System.nanoTime();
+            Assert.assertEquals(2, is.read(buffer));
+            Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(99));
+            sender.getOutputStream().write(new byte[] { 1, 2, 3 });
+            Assert.assertEquals(3, is.read(buffer));
+            Assert.assertEquals(3, buffer[2]);
+
+            receiver.disableReceiveTimeout();
+            receiver.disableReceiveThreshold();
+            Thread closer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                    }
+                    receiver.close();
+                }
+            };
+            closer.start();
+            try {
+                is.read();
+                Assert.fail();
+            } catch (IOException e) {
+                // closed during the read
+            }
+            closer.join();
+        } finally {
+            receiver.close();
+            sender.close();
+        }
+    }
+
+    private static void awaitAvailable(RXTXPort port, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (port.getInputStream().available() < count) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /* bytes larger than the buffers of the pseudo terminals have to be written by another thread */
+    private static Thread write(final RXTXPort port, final int size) {
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    OutputStream os = port.getOutputStream();
+                    byte[] chunk = new byte[4096];
+                    for (int offset = 0; offset < size; offset += chunk.length) {
+                        int len = Math.min(chunk.length, size - offset);
+                        for (int i = 0; i < len; i++) {
+                            chunk[i] = (byte) ((offset + i) * 7);
+                        }
+                        os.write(chunk, 0, len);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        writer.start();
+        return writer;
+    }
+
+}
@@ -0,0 +1,49 @@
+package gnu.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the deltas of {@link SerialPortStatistics}. The counters of the driver need a UART, pseudo terminals don't
+ * keep them.
+ */
+public class SerialPortStatisticsTest {
+
+    @Test
+    public void delta() {
+        SerialPortStatistics earlier = statistics(100, 200, 1, 2, 3, 4, 5);
+        SerialPortStatistics later = statistics(150, 300, 1, 3, 5, 7, 9);
+        SerialPortStatistics delta = later.since(earlier);
+        Assert.assertEquals(50, delta.getReceived());
+        Assert.assertEquals(100, delta.getTransmitted());
+        Assert.assertEquals(0, delta.getFramingErrors());
+        Assert.assertEquals(1, delta.getOverrunErrors());
+        Assert.assertEquals(2, delta.getParityErrors());
+        Assert.assertEquals(3, delta.getBreaks());
+        Assert.assertEquals(4, delta.getBufferOverruns());
+    }
+
+    @Test
+    public void deltaAcrossWrap() {
+        // the 32 bit counters of the driver wrapped around between the two reads
+        SerialPortStatistics earlier = statistics(0xfffffff0L, 0xffffffffL, 0, 0, 0, 0, 0);
+        SerialPortStatistics later = statistics(0x10, 0, 0, 0, 0, 0, 0);
+        SerialPortStatistics delta = later.since(earlier);
+        Assert.assertEquals(0x20, delta.getReceived());
+        Assert.assertEquals(1, delta.getTransmitted());
+        Assert.assertEquals(0, delta.getFramingErrors());
+    }
+
+    @Test
+    public void deltaOfUnchanged() {
+        SerialPortStatistics statistics = statistics(0xffffffffL, 7, 0, 0, 0, 0, 0);
+        Assert.assertEquals(0, statistics.since(statistics).getReceived());
+        Assert.assertEquals(0, statistics.since(statistics).getTransmitted());
+    }
+
+    private static SerialPortStatistics statistics(long... counts) {
+        Assert.assertEquals(SerialPortStatistics.COUNTERS, counts.length);
+        return new SerialPortStatistics(counts);
+    }
+
+}
@@ -0,0 +1,77 @@
+package gnu.io;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks that reads on virtual threads don't pin their carrier thread, on the ports of an {@link RXTXNullModem}. More
+ * virtual threads than there are carrier threads block reading one port, a virtual thread writing to the other port
+ * could not run if they pinned their carriers.
+ * <p>
+ * Skipped before Java 21.
+ */
+public class VirtualThreadPinningTest {
+
+    @Rule
+    public final NullModemRule nullModem = new NullModemRule();
+
+    private Method startVirtualThread;
+    private RXTXPort port1;
+    private RXTXPort port2;
+
+    @Before
+    public void setUp() throws Exception {
+        try {
+            startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            Assume.assumeNoException("virtual threads need Java 21 or later", e);
+        }
+        port1 = nullModem.openPort1();
+        port2 = nullModem.openPort2();
+    }
+
+    @Test(timeout = 30000)
+    public void blockedReadsDontPinCarriers() throws Exception {
+        // more than the carriers of the default scheduler, one per processor
+        final int readers = Runtime.getRuntime().availableProcessors() * 2 + 2;
+        final CountDownLatch received = new CountDownLatch(readers);
+        for (int i = 0; i < readers; i++) {
+            startVirtualThread.invoke(null, new Runnable() {
+                public void run() {
+                    try {
+                        if (port2.getInputStream().read() != -1) {
+                            received.countDown();
+                        }
+                    } catch (IOException e) {
+                        // port closed
+                    }
+                }
+            });
+        }
+        // let the readers block
+        Thread.sleep(200);
+
+        final CountDownLatch writerRunning = new CountDownLatch(1);
+        startVirtualThread.invoke(null, new Runnable() {
+            public void run() {
+                writerRunning.countDown();
+                try {
+                    port1.getOutputStream().write(new byte[readers]);
+                } catch (IOException e) {
+                    // port closed
+                }
+            }
+        });
+        Assert.assertTrue("carriers pinned by blocked reads", writerRunning.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+    }
+
+}
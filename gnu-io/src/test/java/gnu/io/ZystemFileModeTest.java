@@ -0,0 +1,57 @@
+package gnu.io;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reports lines in FILE_MODE and checks that each line is written once and in order.
+ */
+public class ZystemFileModeTest {
+
+    private static final int REPORTS = 2000;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("zystem", ".log");
+        file.delete();
+        System.setProperty("gnu.io.log.mode", "FILE_MODE");
+        System.setProperty("gnu.io.log.file", file.getPath());
+        // nothing is dropped if the queue holds all reports
+        System.setProperty("gnu.io.log.buffer", Integer.toString(REPORTS));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty("gnu.io.log.mode");
+        System.clearProperty("gnu.io.log.file");
+        System.clearProperty("gnu.io.log.buffer");
+        new Zystem(Zystem.SILENT_MODE);
+        file.delete();
+    }
+
+    @Test(timeout = 20000)
+    public void linesWrittenInOrder() throws Exception {
+        Zystem z = new Zystem();
+        long dropped = Zystem.droppedReports();
+        for (int i = 0; i < REPORTS; i++) {
+            z.reportln("line " + i);
+        }
+        Zystem.flush();
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        Assert.assertEquals(dropped, Zystem.droppedReports());
+        Assert.assertEquals(REPORTS, lines.size());
+        for (int i = 0; i < REPORTS; i++) {
+            Assert.assertEquals("line " + i, lines.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openmuc.jrxtx.SerialPortBuilder;
+
+import gnu.io.CommPortDiscoveryListener;
+import gnu.io.CommPortIdentifier;
+import gnu.io.RXTXPortDiscovery;
+
+/**
+ * Listing the ports of the system. Without a running {@link RXTXPortDiscovery} each listing rescans the device
+ * directory and probes the candidate ports, with one it returns the known ports.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnumerationBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean discovery;
+
+    private RXTXPortDiscovery portDiscovery;
+
+    @Setup
+    public void startDiscovery() throws Exception {
+        if (!this.discovery) {
+            return;
+        }
+        this.portDiscovery = new RXTXPortDiscovery(new CommPortDiscoveryListener() {
+            public void portAdded(CommPortIdentifier portIdentifier) {
+            }
+
+            public void portRemoved(CommPortIdentifier portIdentifier) {
+            }
+        });
+    }
+
+    @TearDown
+    public void stopDiscovery() throws Exception {
+        if (this.portDiscovery != null) {
+            this.portDiscovery.close();
+        }
+    }
+
+    @Benchmark
+    public void getPortIdentifiers(Blackhole blackhole) {
+        Enumeration<CommPortIdentifier> identifiers = CommPortIdentifier.getPortIdentifiers();
+        while (identifiers.hasMoreElements()) {
+            blackhole.consume(identifiers.nextElement());
+        }
+    }
+
+    @Benchmark
+    public String[] getSerialPortNames() {
+        return SerialPortBuilder.getSerialPortNames();
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gnu.io.SerialPortEvent;
+import gnu.io.SerialPortEventListener;
+
+/**
+ * The time from writing a byte until the receiving port tells about it: a DATA_AVAILABLE event of the
+ * <code>RXTXPort</code> or the completion of an asynchronous read of the <code>JRxTxPort</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventLatencyBenchmark {
+
+    private final Semaphore dataAvailable = new Semaphore(0);
+    private final byte[] received = new byte[1];
+    private final ByteBuffer buffer = ByteBuffer.allocate(1);
+
+    @Setup
+    public void addEventListener(final Loopback loopback) throws Exception {
+        if (!(loopback.port2 instanceof Port.Rxtx)) {
+            return;
+        }
+        Port.Rxtx port = (Port.Rxtx) loopback.port2;
+        port.port.addEventListener(new SerialPortEventListener() {
+            public void serialEvent(SerialPortEvent event) {
+                if (event.getEventType() == SerialPortEvent.DATA_AVAILABLE) {
+                    dataAvailable.release();
+                }
+            }
+        });
+        port.port.notifyOnDataAvailable(true);
+    }
+
+    @Benchmark
+    public int event(Loopback loopback) throws Exception {
+        loopback.port1.out.write(0x55);
+        if (loopback.port2 instanceof Port.JRxTx) {
+            this.buffer.clear();
+            return ((Port.JRxTx) loopback.port2).port.readAsync(this.buffer, 0).get();
+        }
+        this.dataAvailable.acquire();
+        int numBytesRead = loopback.port2.in.read(this.received);
+        // events of the same byte
+        this.dataAvailable.drainPermits();
+        return numBytesRead;
+    }
+
+}
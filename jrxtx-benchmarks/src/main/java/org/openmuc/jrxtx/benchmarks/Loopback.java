@@ -0,0 +1,38 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * Two ports connected by an {@link RXTXNullModem}, opened through the API given by the parameter <code>api</code>.
+ */
+@State(Scope.Benchmark)
+public class Loopback {
+
+    @Param({ Port.RXTX_PORT, Port.JRXTX_PORT })
+    public String api;
+
+    RXTXNullModem nullModem;
+    Port port1;
+    Port port2;
+
+    @Setup
+    public void open() throws Exception {
+        this.nullModem = new RXTXNullModem();
+        this.port1 = Port.open(this.api, this.nullModem.getPortName1());
+        this.port2 = Port.open(this.api, this.nullModem.getPortName2());
+    }
+
+    @TearDown
+    public void close() throws Exception {
+        this.port1.close();
+        this.port2.close();
+        this.nullModem.close();
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * The cost of a call of the natives used in tight polling loops of an <code>RXTXPort</code>: available(), isCTS() and
+ * a single byte read. A thread keeps bytes waiting at the read port, so the reads measure the call and not the line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NativeCallBenchmark {
+
+    private RXTXNullModem nullModem;
+    private Port.Rxtx writePort;
+    private Port.Rxtx readPort;
+
+    @Setup
+    public void open() throws Exception {
+        this.nullModem = new RXTXNullModem();
+        this.writePort = new Port.Rxtx(this.nullModem.getPortName1());
+        this.readPort = new Port.Rxtx(this.nullModem.getPortName2());
+
+        Thread feeder = new Thread("feeder") {
+            @Override
+            public void run() {
+                byte[] block = new byte[1024];
+                try {
+                    while (true) {
+                        if (readPort.in.available() < 2048) {
+                            writePort.out.write(block);
+                        }
+                        else {
+                            Thread.sleep(1);
+                        }
+                    }
+                } catch (IOException e) {
+                    // port closed
+                } catch (InterruptedException e) {
+                    // stopped
+                }
+            }
+        };
+        feeder.setDaemon(true);
+        feeder.start();
+    }
+
+    @TearDown
+    public void close() throws Exception {
+        this.writePort.close();
+        this.readPort.close();
+        this.nullModem.close();
+    }
+
+    @Benchmark
+    public int available() throws IOException {
+        return this.readPort.in.available();
+    }
+
+    @Benchmark
+    public boolean isCTS() {
+        return this.readPort.port.isCTS();
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+        return this.readPort.in.read();
+    }
+
+}
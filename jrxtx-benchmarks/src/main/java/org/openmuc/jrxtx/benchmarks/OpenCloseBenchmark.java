@@ -0,0 +1,52 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * Opening, configuring and closing a port, including the lock file and the event thread or event engine
+ * registration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OpenCloseBenchmark {
+
+    @Param({ Port.RXTX_PORT, Port.JRXTX_PORT })
+    public String api;
+
+    private RXTXNullModem nullModem;
+
+    @Setup
+    public void createNullModem() throws Exception {
+        this.nullModem = new RXTXNullModem();
+    }
+
+    @TearDown
+    public void closeNullModem() throws Exception {
+        this.nullModem.close();
+    }
+
+    @Benchmark
+    public void openClose() throws Exception {
+        Port.open(this.api, this.nullModem.getPortName1()).close();
+    }
+
+}
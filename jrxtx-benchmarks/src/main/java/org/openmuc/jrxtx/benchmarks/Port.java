@@ -0,0 +1,100 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.openmuc.jrxtx.Parity;
+import org.openmuc.jrxtx.SerialPortBuilder;
+
+import gnu.io.CommPortIdentifier;
+import gnu.io.RXTXPort;
+import gnu.io.SerialPort;
+
+/**
+ * A port opened through one of the two APIs that are measured: <code>RXTXPort</code> for gnu.io, <code>JRxTxPort</code>
+ * for the jRxTx {@link org.openmuc.jrxtx.SerialPort}.
+ */
+abstract class Port {
+
+    static final String RXTX_PORT = "RXTXPort";
+    static final String JRXTX_PORT = "JRxTxPort";
+
+    final InputStream in;
+    final OutputStream out;
+
+    Port(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    static Port open(String api, String portName) throws Exception {
+        if (RXTX_PORT.equals(api)) {
+            return new Rxtx(portName);
+        }
+        else if (JRXTX_PORT.equals(api)) {
+            return new JRxTx(portName);
+        }
+        throw new IllegalArgumentException("Unknown API " + api);
+    }
+
+    /**
+     * Reads exactly <code>len</code> bytes.
+     */
+    void readFully(byte[] b, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int n = this.in.read(b, off, len - off);
+            if (n < 0) {
+                throw new IOException("End of stream");
+            }
+            off += n;
+        }
+    }
+
+    abstract void close() throws IOException;
+
+    static final class Rxtx extends Port {
+        final RXTXPort port;
+
+        private Rxtx(RXTXPort port) {
+            super(port.getInputStream(), port.getOutputStream());
+            this.port = port;
+        }
+
+        Rxtx(String portName) throws Exception {
+            this(open(portName));
+        }
+
+        private static RXTXPort open(String portName) throws Exception {
+            RXTXPort port = (RXTXPort) CommPortIdentifier.getPortIdentifier(portName, CommPortIdentifier.PORT_SERIAL)
+                    .open("jrxtx-benchmarks", 1000);
+            port.setSerialPortParams(115200, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+            return port;
+        }
+
+        @Override
+        void close() {
+            this.port.close();
+        }
+    }
+
+    static final class JRxTx extends Port {
+        final org.openmuc.jrxtx.SerialPort port;
+
+        private JRxTx(org.openmuc.jrxtx.SerialPort port) throws IOException {
+            super(port.getInputStream(), port.getOutputStream());
+            this.port = port;
+        }
+
+        JRxTx(String portName) throws IOException {
+            this(SerialPortBuilder.newBuilder(portName).setBaudRate(115200).setParity(Parity.NONE).build());
+        }
+
+        @Override
+        void close() throws IOException {
+            this.port.close();
+        }
+    }
+
+}
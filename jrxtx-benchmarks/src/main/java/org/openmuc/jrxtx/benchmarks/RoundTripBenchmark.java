@@ -0,0 +1,33 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A single byte sent to the other port and echoed back. The time includes two writes, two blocking reads and two
+ * hops through the null modem.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    @Benchmark
+    public int roundTrip(Loopback loopback) throws IOException {
+        loopback.port1.out.write(0x55);
+        int b = loopback.port2.in.read();
+        loopback.port2.out.write(b);
+        return loopback.port1.in.read();
+    }
+
+}
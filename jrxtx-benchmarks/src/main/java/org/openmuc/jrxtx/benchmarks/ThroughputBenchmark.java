@@ -0,0 +1,52 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A chunk written to one port and read completely from the other. Bytes per second are operations per second times
+ * <code>chunkSize</code>.
+ * <p>
+ * Chunks are kept small enough to fit into the buffers of the pseudo terminals, larger ones would block the write
+ * before the read starts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThroughputBenchmark {
+
+    @Param({ "1", "64", "1024", "4096" })
+    public int chunkSize;
+
+    private byte[] chunk;
+    private byte[] received;
+
+    @Setup
+    public void createChunk() {
+        this.chunk = new byte[this.chunkSize];
+        this.received = new byte[this.chunkSize];
+        for (int i = 0; i < this.chunkSize; i++) {
+            this.chunk[i] = (byte) i;
+        }
+    }
+
+    @Benchmark
+    public byte[] transfer(Loopback loopback) throws IOException {
+        loopback.port1.out.write(this.chunk);
+        loopback.port2.readFully(this.received, this.chunkSize);
+        return this.received;
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.openmuc.jrxtx.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Many small writes with an offset, the typical pattern of a field bus master polling its slaves. A thread drains the
+ * other port. Run with <code>-prof gc</code> for the garbage produced per write.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteAllocationBenchmark {
+
+    @Param({ "8", "64" })
+    public int frameSize;
+
+    // frames are taken from a larger buffer, so off != 0 as in a protocol encoder
+    private final byte[] buffer = new byte[256];
+    private int offset;
+
+    @Setup
+    public void startDrain(final Loopback loopback) {
+        Thread drain = new Thread("drain") {
+            @Override
+            public void run() {
+                byte[] received = new byte[4096];
+                try {
+                    while (true) {
+                        loopback.port2.in.read(received, 0, received.length);
+                    }
+                } catch (IOException e) {
+                    // port closed
+                }
+            }
+        };
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @Benchmark
+    public void write(Loopback loopback) throws IOException {
+        this.offset = (this.offset + this.frameSize) % (this.buffer.length - this.frameSize);
+        loopback.port1.out.write(this.buffer, this.offset, this.frameSize);
+    }
+
+}
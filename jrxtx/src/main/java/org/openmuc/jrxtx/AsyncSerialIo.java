@@ -0,0 +1,461 @@
+package org.openmuc.jrxtx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.TooManyListenersException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import gnu.io.RXTXPort;
+import gnu.io.SerialPortEvent;
+import gnu.io.SerialPortEventListener;
+
+/**
+ * The asynchronous operations of a {@link JRxTxPort}.
+ * <p>
+ * Pending reads are queued and served in order by the DATA_AVAILABLE events of the port, which come from the native
+ * event loop. Served reads only take the bytes already received, so they never block the loop. Bytes received after
+ * the response of a transaction are kept for the following reads. Timeouts of all ports share one timer thread.
+ * <p>
+ * The futures of served reads are completed in order by a task of the common fork join pool, never by the event loop,
+ * the timer or while a lock is held, as their dependent actions may issue further operations.
+ */
+class AsyncSerialIo implements SerialPortEventListener {
+
+    private static final int INITIAL_RESPONSE_SIZE = 256;
+
+    private static ScheduledExecutorService timer;
+
+    private final JRxTxPort serialPort;
+    private final Queue<PendingRead<?>> pendingReads = new ArrayDeque<PendingRead<?>>();
+    private final Object writeLock = new Object();
+
+    /* reads taken from pendingReads with their result, guarded by itself */
+    private final Queue<PendingRead<?>> finishedReads = new ArrayDeque<PendingRead<?>>();
+
+    /* bytes received after the response of a transaction, guarded by pendingReads */
+    private ByteBuffer surplus;
+
+    /* a task completes the finished reads, guarded by finishedReads */
+    private boolean completing;
+
+    private boolean listening;
+
+    AsyncSerialIo(JRxTxPort serialPort) {
+        this.serialPort = serialPort;
+    }
+
+    CompletableFuture<Integer> readAsync(ByteBuffer dst, int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout");
+        }
+        if (!dst.hasRemaining()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return enqueue(new BufferRead(dst), timeout);
+    }
+
+    CompletableFuture<Integer> writeAsync(ByteBuffer src) {
+        CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        try {
+            future.complete(write(src));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    CompletableFuture<ByteBuffer> transactAsync(ByteBuffer request, ResponseMatcher matcher, int timeout) {
+        if (matcher == null) {
+            throw new NullPointerException();
+        }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout");
+        }
+        // queue the response before writing the request, so no byte of it is missed
+        CompletableFuture<ByteBuffer> future = enqueue(new Transaction(matcher), timeout);
+        if (!future.isDone()) {
+            try {
+                write(request);
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * The future of an asynchronous operation an implementation of {@link SerialPort} does not support.
+     */
+    static <T> CompletableFuture<T> unsupported(String operation) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(new SerialPortException(operation + " is not supported."));
+        return future;
+    }
+
+    public void serialEvent(SerialPortEvent event) {
+        if (event.getEventType() == SerialPortEvent.DATA_AVAILABLE) {
+            serveReads();
+        }
+    }
+
+    /**
+     * Fails all pending operations, called when the port is closed.
+     */
+    void close() {
+        synchronized (this.pendingReads) {
+            PendingRead<?> read;
+            while ((read = this.pendingReads.poll()) != null) {
+                read.setFailure(new SerialPortException("Serial port has been closed."));
+                finish(read);
+            }
+            this.surplus = null;
+        }
+    }
+
+    private int write(ByteBuffer src) throws IOException {
+        synchronized (this.writeLock) {
+            SerialPortChannel channel = this.serialPort.getChannel();
+            int numBytesWritten = channel.write(src);
+            // the future must not complete while the bytes wait in the coalescing buffer
+            channel.flush();
+            return numBytesWritten;
+        }
+    }
+
+    private <T> CompletableFuture<T> enqueue(final PendingRead<T> read, int timeout) {
+        try {
+            startListening();
+        } catch (IOException e) {
+            read.future.completeExceptionally(e);
+            return read.future;
+        }
+        synchronized (this.pendingReads) {
+            this.pendingReads.add(read);
+        }
+        if (timeout > 0) {
+            read.timeoutTask = timer().schedule(new Runnable() {
+                public void run() {
+                    synchronized (pendingReads) {
+                        if (pendingReads.remove(read)) {
+                            SerialPortMetrics metrics = serialPort.getMetrics();
+                            if (metrics != null) {
+                                metrics.timeout();
+                            }
+                            read.setFailure(new SerialPortTimeoutException());
+                            finish(read);
+                        }
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        // bytes may have arrived before the read was queued
+        serveReads();
+        return read.future;
+    }
+
+    private synchronized void startListening() throws IOException {
+        if (this.listening) {
+            return;
+        }
+        RXTXPort port = this.serialPort.getRxtxPort();
+        if (port == null || this.serialPort.isClosed()) {
+            throw new SerialPortException("Serial port has been closed.");
+        }
+        try {
+            port.addEventListener(this);
+        } catch (TooManyListenersException e) {
+            throw new SerialPortException("Serial port events are already in use.");
+        }
+        port.notifyOnDataAvailable(true);
+        this.listening = true;
+    }
+
+    /**
+     * Hands the bytes already received to the pending reads in order.
+     */
+    private void serveReads() {
+        synchronized (this.pendingReads) {
+            PendingRead<?> read;
+            while ((read = this.pendingReads.peek()) != null) {
+                if (read.future.isDone()) {
+                    // cancelled or timed out
+                    this.pendingReads.poll();
+                    continue;
+                }
+                if (this.surplus != null) {
+                    ByteBuffer received = this.surplus;
+                    this.surplus = null;
+                    if (read.consume(received)) {
+                        this.pendingReads.poll();
+                        keepSurplus(read.takeExcess());
+                        finish(read);
+                    }
+                    keepSurplus(received);
+                    continue;
+                }
+                RXTXPort port = this.serialPort.getRxtxPort();
+                if (port == null) {
+                    return;
+                }
+                try {
+                    int available = port.getInputStream().available();
+                    if (available <= 0) {
+                        return;
+                    }
+                    if (!read.consume(port, available, this.serialPort.getMetrics())) {
+                        continue;
+                    }
+                } catch (IOException e) {
+                    read.setFailure(e);
+                } catch (RuntimeException e) {
+                    // thrown by a ResponseMatcher
+                    read.setFailure(e);
+                }
+                this.pendingReads.poll();
+                keepSurplus(read.takeExcess());
+                finish(read);
+            }
+        }
+    }
+
+    /**
+     * Queues a read taken from the pending reads for the completion of its future.
+     */
+    private void finish(PendingRead<?> read) {
+        synchronized (this.finishedReads) {
+            this.finishedReads.add(read);
+            if (this.completing) {
+                return;
+            }
+            this.completing = true;
+        }
+        CompletableFuture.runAsync(new Runnable() {
+            public void run() {
+                completeFinishedReads();
+            }
+        });
+    }
+
+    private void completeFinishedReads() {
+        while (true) {
+            PendingRead<?> read;
+            synchronized (this.finishedReads) {
+                read = this.finishedReads.poll();
+                if (read == null) {
+                    this.completing = false;
+                    return;
+                }
+            }
+            read.completeFuture();
+        }
+    }
+
+    /**
+     * Keeps the remaining bytes of the given buffer, before the bytes kept already.
+     */
+    private void keepSurplus(ByteBuffer received) {
+        if (received == null || !received.hasRemaining()) {
+            return;
+        }
+        if (this.surplus != null) {
+            ByteBuffer joined = ByteBuffer.allocate(received.remaining() + this.surplus.remaining());
+            joined.put(received).put(this.surplus).flip();
+            received = joined;
+        }
+        this.surplus = received;
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (timer == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "jrxtx async timeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            timer = executor;
+        }
+        return timer;
+    }
+
+    /**
+     * Reads at most the given number of bytes without blocking.
+     */
+    private static int readAvailable(RXTXPort port, ByteBuffer dst, int available, SerialPortMetrics metrics)
+            throws IOException {
+        int numBytesRead;
+        if (dst.remaining() <= available) {
+            numBytesRead = port.read(dst);
+        }
+        else {
+            int limit = dst.limit();
+            dst.limit(dst.position() + available);
+            try {
+                numBytesRead = port.read(dst);
+            } finally {
+                dst.limit(limit);
+            }
+        }
+        if (metrics != null) {
+            metrics.readCall(numBytesRead);
+        }
+        return numBytesRead;
+    }
+
+    private static abstract class PendingRead<T> {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        volatile ScheduledFuture<?> timeoutTask;
+
+        /* set before the read is finished */
+        private T result;
+        private Throwable failure;
+
+        /**
+         * @return true if the read is complete.
+         */
+        abstract boolean consume(RXTXPort port, int available, SerialPortMetrics metrics) throws IOException;
+
+        /**
+         * Takes bytes received already, leaves the bytes not needed in the buffer.
+         * 
+         * @return true if the read is complete.
+         */
+        abstract boolean consume(ByteBuffer received);
+
+        /**
+         * @return the bytes received after the end of a complete read, null if none.
+         */
+        ByteBuffer takeExcess() {
+            return null;
+        }
+
+        void setResult(T result) {
+            cancelTimeout();
+            this.result = result;
+        }
+
+        void setFailure(Throwable e) {
+            cancelTimeout();
+            this.failure = e;
+        }
+
+        void completeFuture() {
+            if (this.failure != null) {
+                this.future.completeExceptionally(this.failure);
+            }
+            else {
+                this.future.complete(this.result);
+            }
+        }
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> task = this.timeoutTask;
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static class BufferRead extends PendingRead<Integer> {
+        private final ByteBuffer dst;
+
+        BufferRead(ByteBuffer dst) {
+            this.dst = dst;
+        }
+
+        @Override
+        boolean consume(RXTXPort port, int available, SerialPortMetrics metrics) throws IOException {
+            int numBytesRead = readAvailable(port, this.dst, available, metrics);
+            if (numBytesRead <= 0) {
+                return false;
+            }
+            setResult(numBytesRead);
+            return true;
+        }
+
+        @Override
+        boolean consume(ByteBuffer received) {
+            int numBytes = Math.min(this.dst.remaining(), received.remaining());
+            ByteBuffer part = received.duplicate();
+            part.limit(part.position() + numBytes);
+            this.dst.put(part);
+            received.position(received.position() + numBytes);
+            setResult(numBytes);
+            return true;
+        }
+    }
+
+    private static class Transaction extends PendingRead<ByteBuffer> {
+        private final ResponseMatcher matcher;
+        private ByteBuffer response = ByteBuffer.allocate(INITIAL_RESPONSE_SIZE);
+        private ByteBuffer excess;
+
+        Transaction(ResponseMatcher matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        boolean consume(RXTXPort port, int available, SerialPortMetrics metrics) throws IOException {
+            ensureRemaining(available);
+            int start = this.response.position();
+            if (readAvailable(port, this.response, available, metrics) <= 0) {
+                return false;
+            }
+            return match(start);
+        }
+
+        @Override
+        boolean consume(ByteBuffer received) {
+            ensureRemaining(received.remaining());
+            int start = this.response.position();
+            this.response.put(received);
+            return match(start);
+        }
+
+        @Override
+        ByteBuffer takeExcess() {
+            ByteBuffer result = this.excess;
+            this.excess = null;
+            return result;
+        }
+
+        private void ensureRemaining(int numBytes) {
+            if (this.response.remaining() < numBytes) {
+                int capacity = Math.max(this.response.capacity() * 2, this.response.position() + numBytes);
+                ByteBuffer grown = ByteBuffer.allocate(capacity);
+                this.response.flip();
+                grown.put(this.response);
+                this.response = grown;
+            }
+        }
+
+        /**
+         * Offers the response to the matcher growing byte by byte from the bytes received before start, as several
+         * responses may have been received at once. The bytes after the end of the response are kept as excess.
+         */
+        private boolean match(int start) {
+            int end = this.response.position();
+            for (int length = start + 1; length <= end; length++) {
+                ByteBuffer received = (ByteBuffer) this.response.duplicate().position(0).limit(length);
+                if (this.matcher.isComplete(received.asReadOnlyBuffer())) {
+                    if (length < end) {
+                        this.excess = (ByteBuffer) this.response.duplicate().position(length).limit(end);
+                    }
+                    setResult(received.slice());
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
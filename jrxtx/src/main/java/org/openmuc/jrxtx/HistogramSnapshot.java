@@ -0,0 +1,105 @@
+package org.openmuc.jrxtx;
+
+/**
+ * The values recorded by a histogram of {@link SerialPortMetrics} at one point in time. Percentiles are accurate to
+ * within 1/16 of the value, they are rounded up to the largest value of their bucket.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long total;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long count, long total, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.total = total;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of recorded values.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return the sum of the recorded values.
+     */
+    public long getTotal() {
+        return this.total;
+    }
+
+    /**
+     * @return the mean of the recorded values, 0 if none was recorded.
+     */
+    public double getMean() {
+        return this.count == 0 ? 0 : (double) this.total / this.count;
+    }
+
+    /**
+     * @return the largest recorded value, 0 if none was recorded.
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of the recorded values lie.
+     *
+     * @param percentile
+     *            the percentile, between 0 and 100.
+     * @return the value at the percentile, 0 if none was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(Histogram.highestValue(i), this.max);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the median.
+     */
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 90th percentile.
+     */
+    public long getP90() {
+        return getValueAtPercentile(90);
+    }
+
+    /**
+     * @return the 99th percentile.
+     */
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile.
+     */
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + this.count + " mean=" + (long) getMean() + " p50=" + getP50() + " p90=" + getP90() + " p99="
+                + getP99() + " p999=" + getP999() + " max=" + this.max;
+    }
+
+}
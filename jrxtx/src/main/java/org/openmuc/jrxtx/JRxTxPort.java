@@ -10,12 +10,17 @@ import static java.text.MessageFormat.format;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
 
 import gnu.io.CommPort;
 import gnu.io.CommPortIdentifier;
 import gnu.io.NoSuchPortException;
 import gnu.io.PortInUseException;
 import gnu.io.RXTXPort;
+import gnu.io.SerialPortStatistics;
 import gnu.io.UnsupportedCommOperationException;
 
 @SuppressWarnings("deprecation")
@@ -23,10 +28,22 @@ class JRxTxPort implements SerialPort {
 
     private volatile boolean closed;
 
-    private RXTXPort rxtxPort;
+    private static final long SLEEP_TIME = 10L; // sleep appropriate time
+
+    private volatile RXTXPort rxtxPort;
+
+    /**
+     * Native reads block until data arrives and are woken up by close. Old native libraries don't support this, reads
+     * poll available() then.
+     */
+    private final boolean blockingRead;
 
     private SerialInputStream serialIs;
     private SerialOutputStream serial0s;
+    private SerialChannel serialChannel;
+    private final AsyncSerialIo asyncIo;
+    /* null unless enabled, checked before each measurement */
+    private final SerialPortMetrics metrics;
 
     private String portName;
 
@@ -43,17 +60,19 @@ class JRxTxPort implements SerialPort {
     private FlowControl flowControl;
 
     public static JRxTxPort openSerialPort(String portName, int baudRate, Parity parity, DataBits dataBits,
-            StopBits stopBits, FlowControl flowControl) throws SerialPortException {
+            StopBits stopBits, FlowControl flowControl, boolean metricsEnabled, int receiveBufferSize,
+            boolean receiveBufferDirect, int writeCoalescingSize, int receiveFramingByte)
+            throws SerialPortException {
         try {
-            System.setProperty("gnu.io.rxtx.SerialPorts", portName);
-
-            CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(portName);
+            CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(portName,
+                    CommPortIdentifier.PORT_SERIAL);
 
             String theOwner = JRxTxPort.class.getCanonicalName() + System.currentTimeMillis();
 
             CommPort comPort = portIdentifier.open(theOwner, 0);
 
             if (!(comPort instanceof RXTXPort)) {
+                comPort.close();
                 throw new SerialPortException("Unable to open the serial port. Port is not RXTX.");
             }
 
@@ -64,12 +83,32 @@ class JRxTxPort implements SerialPort {
                         parity.getOldValue());
 
                 setFlowControl(flowControl, rxtxPort);
+
+                if (receiveBufferSize > 0) {
+                    rxtxPort.enableReceiveBuffer(receiveBufferSize, receiveBufferDirect);
+                }
+                if (writeCoalescingSize > 0) {
+                    rxtxPort.enableOutputCoalescing(writeCoalescingSize);
+                }
+                if (receiveFramingByte >= 0) {
+                    rxtxPort.enableReceiveFraming(receiveFramingByte);
+                }
             } catch (UnsupportedCommOperationException e) {
+                rxtxPort.close();
+                String message = format("Unable to apply config on serial port.\n{0}", e.getMessage());
+                throw new SerialPortException(message);
+            } catch (IOException e) {
+                rxtxPort.close();
                 String message = format("Unable to apply config on serial port.\n{0}", e.getMessage());
                 throw new SerialPortException(message);
             }
 
-            return new JRxTxPort(rxtxPort, portName, baudRate, parity, dataBits, stopBits, flowControl);
+            SerialPortMetrics metrics = null;
+            if (metricsEnabled) {
+                metrics = new SerialPortMetrics(portName);
+                metrics.register();
+            }
+            return new JRxTxPort(rxtxPort, portName, baudRate, parity, dataBits, stopBits, flowControl, metrics);
         } catch (NoSuchPortException e) {
             String errMessage = format("Serial port {0} not found or port is busy.", portName);
             throw new PortNotFoundException(errMessage);
@@ -98,7 +137,7 @@ class JRxTxPort implements SerialPort {
     }
 
     private JRxTxPort(RXTXPort comPort, String portName, int baudRate, Parity parity, DataBits dataBits,
-            StopBits stopBits, FlowControl flowControl) {
+            StopBits stopBits, FlowControl flowControl, SerialPortMetrics metrics) {
         this.rxtxPort = comPort;
         this.portName = portName;
         this.baudRate = baudRate;
@@ -106,11 +145,16 @@ class JRxTxPort implements SerialPort {
         this.dataBits = dataBits;
         this.stopBits = stopBits;
         this.flowControl = flowControl;
+        this.metrics = metrics;
 
         this.closed = false;
 
+        this.blockingRead = comPort.isReadInterruptible();
+
         this.serial0s = new SerialOutputStream(this.rxtxPort.getOutputStream());
         this.serialIs = new SerialInputStream();
+        this.serialChannel = new SerialChannel();
+        this.asyncIo = new AsyncSerialIo(this);
 
     }
 
@@ -129,20 +173,118 @@ class JRxTxPort implements SerialPort {
         return this.serial0s;
     }
 
+    public SerialPortChannel getChannel() throws IOException {
+        if (isClosed()) {
+            throw new SerialPortException("Serial port is closed");
+        }
+
+        return this.serialChannel;
+    }
+
+    public long write(ByteBuffer[] srcs) throws IOException {
+        checkIfOpen();
+        return this.serialChannel.write(srcs);
+    }
+
+    public byte[] readUntil(byte[] delimiters, int maxLen, int timeout) throws IOException {
+        if (maxLen <= 0) {
+            throw new IllegalArgumentException("maxLen must be positive.");
+        }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative.");
+        }
+        RXTXPort port = checkIfOpen();
+        byte[] buffer = new byte[maxLen];
+        long start = System.nanoTime();
+        int numBytesRead;
+        try {
+            numBytesRead = port.readUntil(buffer, 0, maxLen, delimiters, timeout == 0 ? -1 : timeout);
+        } catch (IOException e) {
+            checkIfOpen();
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.readFinished(start);
+            }
+        }
+        if (metrics != null) {
+            metrics.readCall(numBytesRead);
+        }
+        if (numBytesRead == 0) {
+            throw timeout();
+        }
+        return numBytesRead == maxLen ? buffer : Arrays.copyOf(buffer, numBytesRead);
+    }
+
+    public CompletableFuture<Integer> readAsync(ByteBuffer dst, int timeout) {
+        return this.asyncIo.readAsync(dst, timeout);
+    }
+
+    public CompletableFuture<Integer> writeAsync(ByteBuffer src) {
+        return this.asyncIo.writeAsync(src);
+    }
+
+    public CompletableFuture<ByteBuffer> transactAsync(ByteBuffer request, ResponseMatcher matcher, int timeout) {
+        return this.asyncIo.transactAsync(request, matcher, timeout);
+    }
+
+    public SerialPortMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public SerialPortStatistics getStatistics() throws IOException {
+        try {
+            return checkIfOpen().getStatistics();
+        } catch (UnsupportedCommOperationException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    public SerialPortStatistics getStatisticsDelta() throws IOException {
+        try {
+            return checkIfOpen().getStatisticsDelta();
+        } catch (UnsupportedCommOperationException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    public int getReceiveBufferPeak() throws IOException {
+        return checkIfOpen().getReceiveBufferPeak();
+    }
+
+    public long getReceiveBufferStalls() throws IOException {
+        return checkIfOpen().getReceiveBufferStalls();
+    }
+
+    public long getCoalescedWrites() throws IOException {
+        return checkIfOpen().getCoalescedWrites();
+    }
+
+    public long getCoalescedFlushes() throws IOException {
+        return checkIfOpen().getCoalescedFlushes();
+    }
+
     public synchronized void close() throws IOException {
         if (isClosed()) {
             return;
         }
 
+        // set first, so readers woken up by the close see it
+        this.closed = true;
         try {
             this.serial0s.closeStream();
             this.serialIs.closeStream();
             this.rxtxPort.close();
             this.serial0s = null;
             this.serialIs = null;
+            this.serialChannel = null;
             this.rxtxPort = null;
         } finally {
             this.closed = true;
+            this.asyncIo.close();
+            if (this.metrics != null) {
+                this.metrics.unregister();
+            }
         }
     }
 
@@ -150,36 +292,169 @@ class JRxTxPort implements SerialPort {
         return this.closed;
     }
 
+    /**
+     * @return the underlying port used by {@link SerialPortSelector}, null if closed.
+     */
+    RXTXPort getRxtxPort() {
+        return this.rxtxPort;
+    }
+
+    private int pollAvailable() throws IOException {
+        long elapsedTime = 0;
+
+        InputStream serialInputStream = checkIfOpen().getInputStream();
+        do {
+            int available = serialInputStream.available();
+            if (available > 0) {
+                return available;
+            }
+            if (this.metrics != null) {
+                this.metrics.pollSleep();
+            }
+            try {
+                Thread.sleep(SLEEP_TIME);
+                elapsedTime += SLEEP_TIME;
+            } catch (InterruptedException e) {
+                // ignore
+            }
+
+            checkIfOpen();
+        } while (getSerialPortTimeout() == 0 || elapsedTime <= getSerialPortTimeout());
+
+        throw timeout();
+    }
+
+    private SerialPortTimeoutException timeout() {
+        if (this.metrics != null) {
+            this.metrics.timeout();
+        }
+        return new SerialPortTimeoutException();
+    }
+
+    private RXTXPort checkIfOpen() throws SerialPortException {
+        RXTXPort port = this.rxtxPort;
+        if (isClosed() || port == null) {
+            throw new SerialPortException("Serial port has been closed.");
+        }
+        return port;
+    }
+
     private class SerialInputStream extends InputStream {
-        private static final long SLEEP_TIME = 10L; // sleep appropriate time
+
+        // not synchronized, a virtual thread blocked holding a monitor pins its carrier thread
+        private final ReentrantLock readLock = new ReentrantLock();
 
         @Override
-        public synchronized int read() throws IOException {
-            long elapsedTime = 0;
+        public int read() throws IOException {
+            this.readLock.lock();
+            try {
+                if (metrics == null) {
+                    return readByte();
+                }
+                long start = System.nanoTime();
+                try {
+                    return readByte();
+                } finally {
+                    metrics.readFinished(start);
+                }
+            } finally {
+                this.readLock.unlock();
+            }
+        }
+
+        private int readByte() throws IOException {
+            if (!blockingRead) {
+                pollAvailable();
+                int b = checkIfOpen().getInputStream().read();
+                if (metrics != null) {
+                    metrics.readCall(b == -1 ? 0 : 1);
+                }
+                return b;
+            }
 
-            InputStream serialInputStream = rxtxPort.getInputStream();
+            RXTXPort port = checkIfOpen();
+            int b;
             do {
-                if (serialInputStream.available() > 0) {
-                    return serialInputStream.read();
+                try {
+                    b = port.getInputStream().read();
+                } catch (IOException e) {
+                    checkIfOpen();
+                    throw e;
+                }
+                if (metrics != null) {
+                    metrics.readCall(b == -1 ? 0 : 1);
+                }
+                checkIfOpen();
+            } while (b == -1 && getSerialPortTimeout() == 0);
+
+            if (b == -1) {
+                throw timeout();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (b == null) {
+                throw new NullPointerException();
+            }
+            if (off < 0 || len < 0 || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return 0;
+            }
+
+            this.readLock.lock();
+            try {
+                if (metrics == null) {
+                    return readBytes(b, off, len);
                 }
+                long start = System.nanoTime();
                 try {
-                    Thread.sleep(SLEEP_TIME);
-                    elapsedTime += SLEEP_TIME;
-                } catch (InterruptedException e) {
-                    // ignore
+                    return readBytes(b, off, len);
+                } finally {
+                    metrics.readFinished(start);
                 }
+            } finally {
+                this.readLock.unlock();
+            }
+        }
+
+        private int readBytes(byte[] b, int off, int len) throws IOException {
+            if (!blockingRead) {
+                int available = pollAvailable();
+                int numBytesRead = checkIfOpen().getInputStream().read(b, off, Math.min(len, available));
+                if (metrics != null) {
+                    metrics.readCall(numBytesRead);
+                }
+                return numBytesRead;
+            }
 
-                if (isClosed()) {
-                    throw new SerialPortException("Serial port has been closed.");
+            RXTXPort port = checkIfOpen();
+            int numBytesRead;
+            do {
+                try {
+                    numBytesRead = port.getInputStream().read(b, off, len);
+                } catch (IOException e) {
+                    checkIfOpen();
+                    throw e;
+                }
+                if (metrics != null) {
+                    metrics.readCall(numBytesRead);
                 }
-            } while (getSerialPortTimeout() == 0 || elapsedTime <= getSerialPortTimeout());
+                checkIfOpen();
+            } while (numBytesRead <= 0 && getSerialPortTimeout() == 0);
 
-            throw new SerialPortTimeoutException();
+            if (numBytesRead <= 0) {
+                throw timeout();
+            }
+            return numBytesRead;
         }
 
         @Override
         public int available() throws IOException {
-            return rxtxPort.getInputStream().available();
+            return checkIfOpen().getInputStream().available();
         }
 
         private void closeStream() throws IOException {
@@ -192,6 +467,102 @@ class JRxTxPort implements SerialPort {
         }
     }
 
+    private class SerialChannel implements SerialPortChannel {
+
+        private final ReentrantLock readLock = new ReentrantLock();
+
+        public int read(ByteBuffer dst) throws IOException {
+            RXTXPort port = checkIfOpen();
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+
+            this.readLock.lock();
+            try {
+                if (metrics == null) {
+                    return read(port, dst);
+                }
+                long start = System.nanoTime();
+                try {
+                    return read(port, dst);
+                } finally {
+                    metrics.readFinished(start);
+                }
+            } finally {
+                this.readLock.unlock();
+            }
+        }
+
+        private int read(RXTXPort port, ByteBuffer dst) throws IOException {
+            if (!blockingRead) {
+                pollAvailable();
+            }
+
+            int numBytesRead;
+            do {
+                try {
+                    numBytesRead = port.read(dst);
+                } catch (IOException e) {
+                    checkIfOpen();
+                    throw e;
+                }
+                if (metrics != null) {
+                    metrics.readCall(numBytesRead);
+                }
+                checkIfOpen();
+            } while (numBytesRead <= 0 && blockingRead && getSerialPortTimeout() == 0);
+
+            if (numBytesRead <= 0) {
+                throw timeout();
+            }
+            return numBytesRead;
+        }
+
+        public int write(ByteBuffer src) throws IOException {
+            return write(checkIfOpen(), src);
+        }
+
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            if (offset < 0 || length < 0 || offset > srcs.length - length) {
+                throw new IndexOutOfBoundsException();
+            }
+            RXTXPort port = checkIfOpen();
+            if (metrics == null) {
+                return port.write(srcs, offset, length);
+            }
+            long start = System.nanoTime();
+            long numBytesWritten = port.write(srcs, offset, length);
+            metrics.writeCall((int) Math.min(numBytesWritten, Integer.MAX_VALUE), start);
+            return numBytesWritten;
+        }
+
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        private int write(RXTXPort port, ByteBuffer src) throws IOException {
+            if (metrics == null) {
+                return port.write(src);
+            }
+            long start = System.nanoTime();
+            int numBytesWritten = port.write(src);
+            metrics.writeCall(numBytesWritten, start);
+            return numBytesWritten;
+        }
+
+        public void flush() throws IOException {
+            checkIfOpen().flushOutputCoalescing();
+        }
+
+        public boolean isOpen() {
+            return !isClosed();
+        }
+
+        public void close() throws IOException {
+            JRxTxPort.this.close();
+        }
+    }
+
     private class SerialOutputStream extends OutputStream {
 
         private OutputStream serialOutputStream;
@@ -204,7 +575,13 @@ class JRxTxPort implements SerialPort {
         public void write(int b) throws IOException {
             checkIfOpen();
 
+            if (metrics == null) {
+                this.serialOutputStream.write(b);
+                return;
+            }
+            long start = System.nanoTime();
             this.serialOutputStream.write(b);
+            metrics.writeCall(1, start);
         }
 
         private void checkIfOpen() throws SerialPortException {
@@ -216,19 +593,30 @@ class JRxTxPort implements SerialPort {
         @Override
         public void write(byte[] b, int off, int len) throws IOException {
             checkIfOpen();
+            if (metrics == null) {
+                this.serialOutputStream.write(b, off, len);
+                return;
+            }
+            long start = System.nanoTime();
             this.serialOutputStream.write(b, off, len);
+            metrics.writeCall(len, start);
         }
 
         @Override
         public void write(byte[] b) throws IOException {
-            checkIfOpen();
-            this.serialOutputStream.write(b);
+            write(b, 0, b.length);
         }
 
         @Override
         public void flush() throws IOException {
             checkIfOpen();
+            if (metrics == null) {
+                this.serialOutputStream.flush();
+                return;
+            }
+            long start = System.nanoTime();
             this.serialOutputStream.flush();
+            metrics.drained(start);
         }
 
         private void closeStream() throws IOException {
@@ -295,6 +683,15 @@ class JRxTxPort implements SerialPort {
     }
 
     public void setSerialPortTimeout(int serialPortTimeout) throws IOException {
+        if (serialPortTimeout < 0) {
+            throw new IllegalArgumentException("Serial port timeout must not be negative.");
+        }
+        if (serialPortTimeout == 0) {
+            this.rxtxPort.disableReceiveTimeout();
+        }
+        else {
+            this.rxtxPort.enableReceiveTimeout(serialPortTimeout);
+        }
         this.serialPortTimeout = serialPortTimeout;
     }
 
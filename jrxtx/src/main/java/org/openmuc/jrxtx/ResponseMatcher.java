@@ -0,0 +1,22 @@
+package org.openmuc.jrxtx;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides when the response of a {@link SerialPort#transactAsync(ByteBuffer, ResponseMatcher, int)} is complete, e.g.
+ * by checking the length field or the end delimiter of a frame.
+ */
+public interface ResponseMatcher {
+
+    /**
+     * Called each time bytes of the response were received. If several bytes were received at once it is called for
+     * each of them, so the response ends with the first byte it is complete at. The bytes received after it are kept
+     * for the following asynchronous reads.
+     * 
+     * @param response
+     *            a read-only buffer holding all bytes received so far, from position 0 up to its limit.
+     * @return true if the response is complete.
+     */
+    boolean isComplete(ByteBuffer response);
+
+}
@@ -4,12 +4,19 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import gnu.io.SerialPortStatistics;
 
 /**
  * Serial port for communication using UARTs. Can be used for communication protocols such as RS-232 and RS-485.
  * <p>
  * A SerialPort is created using {@link SerialPortBuilder}. Once closed it cannot be opened again but has to be
  * recreated.
+ * <p>
+ * The methods added after the first release have default implementations, so other implementations of this interface
+ * keep working. They report the feature as disabled or unsupported.
  */
 public interface SerialPort extends Closeable {
 
@@ -33,6 +40,190 @@ public interface SerialPort extends Closeable {
      */
     OutputStream getOutputStream() throws IOException;
 
+    /**
+     * Returns a channel for this serial port. Reads and writes using direct buffers avoid copying the data.
+     * <p>
+     * The channel shares the serial port timeout with the input stream. Closing the returned channel will close the
+     * associated serial port.
+     * 
+     * @return the channel that can be used to read from and write to the port.
+     * @throws IOException
+     *             if an I/O error occurred or the implementation does not support channels.
+     */
+    default SerialPortChannel getChannel() throws IOException {
+        throw new IOException("Channels are not supported.");
+    }
+
+    /**
+     * Writes all remaining bytes of the given buffers in one write to the port, e.g. header, body and checksum of a
+     * frame, without concatenating them first. The same as the gathering write of {@link #getChannel()}.
+     * 
+     * @param srcs
+     *            the buffers from which bytes are to be retrieved.
+     * @return the number of bytes written.
+     * @throws IOException
+     *             if the port is closed or an I/O error occurred.
+     */
+    default long write(ByteBuffer[] srcs) throws IOException {
+        return getChannel().write(srcs);
+    }
+
+    /**
+     * Reads until one of the delimiters was received, e.g. a line of an NMEA 0183 GPS, a SCPI instrument or an AT
+     * command modem ending with <code>'\n'</code>. The bytes are scanned for the delimiters in native code, not byte by
+     * byte in Java. Bytes received after the delimiter are returned by the next reads.
+     * 
+     * @param delimiters
+     *            the bytes that end the read.
+     * @param maxLen
+     *            the maximum number of bytes to read.
+     * @param timeout
+     *            the time in ms to wait for a delimiter, 0 for no timeout.
+     * @return the bytes read, ending with the delimiter unless <code>maxLen</code> bytes were read without one.
+     * @throws SerialPortTimeoutException
+     *             if the timeout elapsed before a delimiter was received. The bytes received until then are returned
+     *             by the next reads.
+     * @throws IOException
+     *             if the port is closed, an I/O error occurred or the implementation does not support it.
+     */
+    default byte[] readUntil(byte[] delimiters, int maxLen, int timeout) throws IOException {
+        throw new IOException("readUntil is not supported.");
+    }
+
+    /**
+     * Reads bytes into the given buffer without blocking the calling thread.
+     * <p>
+     * The returned future completes with the number of bytes read as soon as at least one byte was received, up to
+     * <code>dst.remaining()</code>. Pending asynchronous reads and transactions are served in the order they were
+     * issued. Mixing them with reads of the input stream or channel leads to undefined results. The futures are not
+     * completed by the thread receiving the bytes, so dependent actions may issue further operations.
+     * 
+     * @param dst
+     *            the buffer into which bytes are to be transferred. Must not be accessed until the future completed.
+     * @param timeout
+     *            the time in ms after which the future fails with a {@link SerialPortTimeoutException}, 0 for no
+     *            timeout.
+     * @return the future of the number of bytes read. Fails with a {@link SerialPortException} if the port is or gets
+     *         closed or the implementation does not support it.
+     */
+    default CompletableFuture<Integer> readAsync(ByteBuffer dst, int timeout) {
+        return AsyncSerialIo.unsupported("readAsync");
+    }
+
+    /**
+     * Writes all remaining bytes of the given buffer.
+     * <p>
+     * The returned future completes when the bytes were handed to the operating system, not when they were
+     * transmitted. Only blocks the calling thread if the output buffer of the operating system is full.
+     * 
+     * @param src
+     *            the buffer from which bytes are to be retrieved.
+     * @return the future of the number of bytes written. Fails with a {@link SerialPortException} if the
+     *         implementation does not support it.
+     */
+    default CompletableFuture<Integer> writeAsync(ByteBuffer src) {
+        return AsyncSerialIo.unsupported("writeAsync");
+    }
+
+    /**
+     * Writes a request and collects the bytes received afterwards until the matcher reports the response complete.
+     * Typical for master/slave protocols such as Modbus RTU.
+     * 
+     * @param request
+     *            the request to write.
+     * @param matcher
+     *            decides when the response is complete.
+     * @param timeout
+     *            the time in ms after which the future fails with a {@link SerialPortTimeoutException}, 0 for no
+     *            timeout.
+     * @return the future of the response, holding all bytes read until the matcher reported it complete. Fails with a
+     *         {@link SerialPortException} if the implementation does not support it.
+     * @see #readAsync(ByteBuffer, int)
+     */
+    default CompletableFuture<ByteBuffer> transactAsync(ByteBuffer request, ResponseMatcher matcher, int timeout) {
+        return AsyncSerialIo.unsupported("transactAsync");
+    }
+
+    /**
+     * Returns the I/O metrics of this serial port.
+     * 
+     * @return the metrics, null unless enabled by {@link SerialPortBuilder#setMetricsEnabled(boolean)}.
+     */
+    default SerialPortMetrics getMetrics() {
+        return null;
+    }
+
+    /**
+     * Reads the counters of received and transmitted bytes, line errors and overruns the UART driver keeps for this
+     * port. Polling them is much cheaper than listening for error events.
+     * 
+     * @return the counters since the driver set up the device.
+     * @throws IOException
+     *             if the port is closed or the driver does not provide the counters, e.g. for USB adapters.
+     */
+    default SerialPortStatistics getStatistics() throws IOException {
+        throw new IOException("Statistics are not supported.");
+    }
+
+    /**
+     * Reads the counters like {@link #getStatistics()}, but returns how much they increased since the last call of
+     * either method, or since the port was opened.
+     * 
+     * @return the counters since the statistics were read last.
+     * @throws IOException
+     *             if the port is closed or the driver does not provide the counters.
+     */
+    default SerialPortStatistics getStatisticsDelta() throws IOException {
+        throw new IOException("Statistics are not supported.");
+    }
+
+    /**
+     * Returns the highest number of bytes that were in the receive buffer at once. Close to the buffer size the
+     * application does not keep up with the port.
+     * 
+     * @return the peak, 0 unless enabled by {@link SerialPortBuilder#setReceiveBufferSize(int)}.
+     * @throws IOException
+     *             if the port is closed.
+     */
+    default int getReceiveBufferPeak() throws IOException {
+        return 0;
+    }
+
+    /**
+     * Returns how often the receive buffer was full, so the port was not read until the application took bytes. Bytes
+     * the driver lost meanwhile are counted by {@link SerialPortStatistics#getBufferOverruns()}.
+     * 
+     * @return the number of stalls, 0 unless enabled by {@link SerialPortBuilder#setReceiveBufferSize(int)}.
+     * @throws IOException
+     *             if the port is closed.
+     */
+    default long getReceiveBufferStalls() throws IOException {
+        return 0;
+    }
+
+    /**
+     * Returns the number of writes whose bytes were collected to be written at once. Less
+     * {@link #getCoalescedFlushes()} this is the number of writes to the port saved.
+     * 
+     * @return the number of writes, 0 unless enabled by {@link SerialPortBuilder#setWriteCoalescingSize(int)}.
+     * @throws IOException
+     *             if the port is closed.
+     */
+    default long getCoalescedWrites() throws IOException {
+        return 0;
+    }
+
+    /**
+     * Returns the number of writes of collected bytes to the port, on flush or when the buffer was full.
+     * 
+     * @return the number of writes, 0 unless enabled by {@link SerialPortBuilder#setWriteCoalescingSize(int)}.
+     * @throws IOException
+     *             if the port is closed.
+     */
+    default long getCoalescedFlushes() throws IOException {
+        return 0;
+    }
+
     /**
      * Closes the serial port.
      * <p>
@@ -32,6 +32,11 @@ public class SerialPortBuilder {
     private Parity parity;
     private StopBits stopBits;
     private FlowControl flowControl;
+    private boolean metricsEnabled;
+    private int receiveBufferSize;
+    private boolean receiveBufferDirect;
+    private int writeCoalescingSize;
+    private int receiveFramingByte;
 
     /**
      * Get the serial port names on the host system.
@@ -61,6 +66,7 @@ public class SerialPortBuilder {
         this.parity = Parity.EVEN;
         this.stopBits = StopBits.STOPBITS_1;
         this.flowControl = FlowControl.NONE;
+        this.receiveFramingByte = -1;
     }
 
     /**
@@ -155,6 +161,91 @@ public class SerialPortBuilder {
         return this;
     }
 
+    /**
+     * Enable the I/O metrics of the serial port. They are also registered as a JMX MBean while the port is open.
+     * Disabled by default.
+     * 
+     * @param metricsEnabled
+     *            true to measure the I/O of the port.
+     * @return the serial port builder.
+     * 
+     * @see SerialPort#getMetrics()
+     */
+    public SerialPortBuilder setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        return this;
+    }
+
+    /**
+     * Read the bytes received into a buffer of the given size as soon as they arrive, by a thread of the port. The
+     * streams and the channel read from the buffer then. Keeps the driver from overrunning at high baud rates while the
+     * application is busy. Disabled by default.
+     * 
+     * @param receiveBufferSize
+     *            the size of the buffer in bytes, 0 to read from the driver directly.
+     * @return the serial port builder.
+     * 
+     * @see SerialPort#getReceiveBufferStalls()
+     */
+    public SerialPortBuilder setReceiveBufferSize(int receiveBufferSize) {
+        if (receiveBufferSize < 0) {
+            throw new IllegalArgumentException("Receive buffer size must not be negative.");
+        }
+        this.receiveBufferSize = receiveBufferSize;
+        return this;
+    }
+
+    /**
+     * Allocate the buffer of {@link #setReceiveBufferSize(int)} outside of the Java heap. The thread reads into it
+     * without copying then. Disabled by default.
+     * 
+     * @param receiveBufferDirect
+     *            true for a direct buffer.
+     * @return the serial port builder.
+     */
+    public SerialPortBuilder setReceiveBufferDirect(boolean receiveBufferDirect) {
+        this.receiveBufferDirect = receiveBufferDirect;
+        return this;
+    }
+
+    /**
+     * Collect the bytes written to the output stream and the channel in a buffer of the given size and write them to
+     * the port at once, when the buffer is full or on {@link java.io.OutputStream#flush()} or
+     * {@link SerialPortChannel#flush()}. A frame written in several parts then goes out in one write, without gaps
+     * between the parts. Disabled by default.
+     * 
+     * @param writeCoalescingSize
+     *            the size of the buffer in bytes, 0 to write each call to the port.
+     * @return the serial port builder.
+     * 
+     * @see SerialPort#getCoalescedWrites()
+     */
+    public SerialPortBuilder setWriteCoalescingSize(int writeCoalescingSize) {
+        if (writeCoalescingSize < 0) {
+            throw new IllegalArgumentException("Write coalescing size must not be negative.");
+        }
+        this.writeCoalescingSize = writeCoalescingSize;
+        return this;
+    }
+
+    /**
+     * End each read of the input stream and the channel after the given framing byte, e.g. <code>0xC0</code> for SLIP
+     * or <code>0x7E</code> for HDLC-like framing. A read then returns one complete frame, read and split by the native
+     * code, instead of the bytes that happened to arrive. On timeout the bytes of the frame received so far are
+     * returned. Disabled by default.
+     * 
+     * @param receiveFramingByte
+     *            the framing byte from 0 to 255, -1 to disable framing.
+     * @return the serial port builder.
+     */
+    public SerialPortBuilder setReceiveFramingByte(int receiveFramingByte) {
+        if (receiveFramingByte < -1 || receiveFramingByte > 255) {
+            throw new IllegalArgumentException("Receive framing byte must be between 0 and 255 or -1.");
+        }
+        this.receiveFramingByte = receiveFramingByte;
+        return this;
+    }
+
     /**
      * Combine all of the options that have been set and return a new SerialPort object.
      * 
@@ -163,6 +254,8 @@ public class SerialPortBuilder {
      *             if an I/O exception occurred while opening the serial port.
      */
     public SerialPort build() throws IOException {
-        return JRxTxPort.openSerialPort(portName, baudRate, parity, dataBits, stopBits, flowControl);
+        return JRxTxPort.openSerialPort(portName, baudRate, parity, dataBits, stopBits, flowControl,
+                metricsEnabled, receiveBufferSize, receiveBufferDirect, writeCoalescingSize,
+                receiveFramingByte);
     }
 }
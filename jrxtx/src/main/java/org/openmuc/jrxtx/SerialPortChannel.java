@@ -0,0 +1,76 @@
+package org.openmuc.jrxtx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * A blocking channel view of a {@link SerialPort}, obtained by {@link SerialPort#getChannel()}.
+ * <p>
+ * Direct buffers are read and written by the native code without being copied into a Java byte array. Closing the
+ * channel closes the associated serial port.
+ */
+public interface SerialPortChannel extends ByteChannel, GatheringByteChannel {
+
+    /**
+     * Reads bytes from the serial port into the given buffer.
+     * <p>
+     * Blocks until at least one byte is available and then returns all bytes already received, up to
+     * <code>dst.remaining()</code>.
+     * 
+     * @param dst
+     *            the buffer into which bytes are to be transferred.
+     * @return the number of bytes read, possibly zero if the buffer has no remaining space.
+     * @throws SerialPortTimeoutException
+     *             if the serial port timeout elapsed before any byte was received.
+     * @throws IOException
+     *             if the port is closed or an I/O error occurred.
+     * 
+     * @see SerialPort#setSerialPortTimeout(int)
+     */
+    @Override
+    int read(ByteBuffer dst) throws IOException;
+
+    /**
+     * Writes all remaining bytes of the given buffer to the serial port. While write coalescing is enabled the bytes
+     * may stay collected until {@link #flush()}.
+     * 
+     * @param src
+     *            the buffer from which bytes are to be retrieved.
+     * @return the number of bytes written, always <code>src.remaining()</code> at the time of the call.
+     * @throws IOException
+     *             if the port is closed or an I/O error occurred.
+     */
+    @Override
+    int write(ByteBuffer src) throws IOException;
+
+    /**
+     * Writes all remaining bytes of the given buffers to the serial port in one write, without concatenating them
+     * first.
+     * 
+     * @param srcs
+     *            the buffers from which bytes are to be retrieved.
+     * @param offset
+     *            the index of the first buffer to write.
+     * @param length
+     *            the number of buffers to write.
+     * @return the number of bytes written.
+     * @throws IOException
+     *             if the port is closed or an I/O error occurred.
+     */
+    @Override
+    long write(ByteBuffer[] srcs, int offset, int length) throws IOException;
+
+    /**
+     * Writes the bytes collected by write coalescing to the serial port. Unlike {@link java.io.OutputStream#flush()}
+     * of the port it does not wait until they are transmitted. Does nothing if write coalescing is disabled.
+     * 
+     * @throws IOException
+     *             if the port is closed or an I/O error occurred.
+     * 
+     * @see SerialPortBuilder#setWriteCoalescingSize(int)
+     */
+    void flush() throws IOException;
+
+}
@@ -0,0 +1,169 @@
+package org.openmuc.jrxtx;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * I/O metrics of a serial port, enabled by {@link SerialPortBuilder#setMetricsEnabled(boolean)}.
+ * <p>
+ * Tells apart time spent waiting for the device, from {@link #getBlockedReadTimes()} and {@link #getReadSizes()}, and
+ * time added by the library, such as the polls of old native libraries counted by {@link #getPollSleeps()}. Updated
+ * without locking, ports without metrics pay nothing but a null check.
+ */
+public final class SerialPortMetrics implements SerialPortMetricsMXBean {
+
+    private static final String DOMAIN = "org.openmuc.jrxtx";
+
+    private final String portName;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong readCalls = new AtomicLong();
+    private final AtomicLong writeCalls = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong pollSleeps = new AtomicLong();
+    private final Histogram readSizes = new Histogram();
+    private final Histogram writeSizes = new Histogram();
+    private final Histogram blockedReadTimes = new Histogram();
+    private final Histogram writeTimes = new Histogram();
+    private final Histogram drainTimes = new Histogram();
+
+    private ObjectName objectName;
+
+    SerialPortMetrics(String portName) {
+        this.portName = portName;
+    }
+
+    public String getPortName() {
+        return this.portName;
+    }
+
+    public long getBytesRead() {
+        return this.bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return this.bytesWritten.get();
+    }
+
+    public long getReadCalls() {
+        return this.readCalls.get();
+    }
+
+    public long getWriteCalls() {
+        return this.writeCalls.get();
+    }
+
+    public long getTimeouts() {
+        return this.timeouts.get();
+    }
+
+    public long getPollSleeps() {
+        return this.pollSleeps.get();
+    }
+
+    public HistogramSnapshot getReadSizes() {
+        return this.readSizes.snapshot();
+    }
+
+    public HistogramSnapshot getWriteSizes() {
+        return this.writeSizes.snapshot();
+    }
+
+    public HistogramSnapshot getBlockedReadTimes() {
+        return this.blockedReadTimes.snapshot();
+    }
+
+    public HistogramSnapshot getWriteTimes() {
+        return this.writeTimes.snapshot();
+    }
+
+    public HistogramSnapshot getDrainTimes() {
+        return this.drainTimes.snapshot();
+    }
+
+    public void reset() {
+        this.bytesRead.set(0);
+        this.bytesWritten.set(0);
+        this.readCalls.set(0);
+        this.writeCalls.set(0);
+        this.timeouts.set(0);
+        this.pollSleeps.set(0);
+        this.readSizes.reset();
+        this.writeSizes.reset();
+        this.blockedReadTimes.reset();
+        this.writeTimes.reset();
+        this.drainTimes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return this.portName + ": read " + getBytesRead() + " bytes in " + getReadCalls() + " calls, wrote "
+                + getBytesWritten() + " bytes in " + getWriteCalls() + " calls, " + getTimeouts() + " timeouts, "
+                + getPollSleeps() + " poll sleeps";
+    }
+
+    void readCall(int numBytesRead) {
+        this.readCalls.incrementAndGet();
+        if (numBytesRead > 0) {
+            this.bytesRead.addAndGet(numBytesRead);
+            this.readSizes.record(numBytesRead);
+        }
+    }
+
+    void readFinished(long startNanos) {
+        this.blockedReadTimes.record(System.nanoTime() - startNanos);
+    }
+
+    void writeCall(int numBytesWritten, long startNanos) {
+        this.writeTimes.record(System.nanoTime() - startNanos);
+        this.writeCalls.incrementAndGet();
+        this.bytesWritten.addAndGet(numBytesWritten);
+        this.writeSizes.record(numBytesWritten);
+    }
+
+    void drained(long startNanos) {
+        this.drainTimes.record(System.nanoTime() - startNanos);
+    }
+
+    void timeout() {
+        this.timeouts.incrementAndGet();
+    }
+
+    void pollSleep() {
+        this.pollSleeps.incrementAndGet();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. The metrics are still available from
+     * {@link SerialPort#getMetrics()} if JMX is not available.
+     */
+    synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=SerialPort,name=" + ObjectName.quote(this.portName));
+            server.registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException e) {
+            // e.g. registered by a port of the same name that was not closed
+        } catch (SecurityException e) {
+            // not allowed to register
+        }
+    }
+
+    synchronized void unregister() {
+        if (this.objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException e) {
+            // unregistered by someone else
+        }
+        this.objectName = null;
+    }
+
+}
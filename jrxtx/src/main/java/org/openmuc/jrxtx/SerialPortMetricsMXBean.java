@@ -0,0 +1,76 @@
+package org.openmuc.jrxtx;
+
+/**
+ * The JMX view of {@link SerialPortMetrics}. Registered as
+ * <code>org.openmuc.jrxtx:type=SerialPort,name="&lt;port name&gt;"</code> while the port is open. Times are in
+ * nanoseconds, sizes in bytes.
+ */
+public interface SerialPortMetricsMXBean {
+
+    /**
+     * @return the name of the measured serial port.
+     */
+    String getPortName();
+
+    /**
+     * @return the number of bytes read.
+     */
+    long getBytesRead();
+
+    /**
+     * @return the number of bytes written.
+     */
+    long getBytesWritten();
+
+    /**
+     * @return the number of native read calls, including those that returned no byte.
+     */
+    long getReadCalls();
+
+    /**
+     * @return the number of native write calls.
+     */
+    long getWriteCalls();
+
+    /**
+     * @return the number of reads that failed with a {@link SerialPortTimeoutException}.
+     */
+    long getTimeouts();
+
+    /**
+     * @return the number of times a read slept to poll for received bytes. Only native libraries that cannot block
+     *         in reads are polled.
+     */
+    long getPollSleeps();
+
+    /**
+     * @return the bytes returned by each native read call that returned bytes.
+     */
+    HistogramSnapshot getReadSizes();
+
+    /**
+     * @return the bytes passed to each native write call.
+     */
+    HistogramSnapshot getWriteSizes();
+
+    /**
+     * @return the time each blocking read waited until it returned or failed.
+     */
+    HistogramSnapshot getBlockedReadTimes();
+
+    /**
+     * @return the time each write took to hand its bytes to the operating system.
+     */
+    HistogramSnapshot getWriteTimes();
+
+    /**
+     * @return the time each flush waited until the written bytes were transmitted.
+     */
+    HistogramSnapshot getDrainTimes();
+
+    /**
+     * Sets all counters and histograms to zero.
+     */
+    void reset();
+
+}
@@ -0,0 +1,217 @@
+package org.openmuc.jrxtx;
+
+import java.nio.channels.CancelledKeyException;
+
+import gnu.io.RXTXPort;
+
+/**
+ * The registration of a {@link SerialPort} with a {@link SerialPortSelector}, obtained by
+ * {@link SerialPortSelector#register(SerialPort, int, Object)}.
+ * <p>
+ * A key is valid until it is cancelled or its selector is closed. Keys of closed serial ports are cancelled by the
+ * next selection.
+ */
+public final class SerialPortSelectionKey {
+
+    /**
+     * The serial port has received bytes. A closed or hung up serial port is reported readable as well, the following
+     * read fails then.
+     */
+    public static final int OP_READ = 1;
+
+    /**
+     * The serial port can be written without blocking.
+     */
+    public static final int OP_WRITE = 4;
+
+    /**
+     * One of the input lines CTS, DSR, CD or RI changed.
+     */
+    public static final int OP_LINE_STATE = 8;
+
+    private static final int ALL_OPS = OP_READ | OP_WRITE | OP_LINE_STATE;
+
+    private static final int CTS = 1;
+    private static final int DSR = 2;
+    private static final int CD = 4;
+    private static final int RI = 8;
+
+    private final SerialPort serialPort;
+    private final RXTXPort rxtxPort;
+    private final SerialPortSelector selector;
+
+    private volatile int interestOps;
+    private volatile int readyOps;
+    private volatile Object attachment;
+    private volatile boolean valid = true;
+
+    private int lineState;
+
+    SerialPortSelectionKey(SerialPort serialPort, RXTXPort rxtxPort, SerialPortSelector selector, int ops) {
+        this.serialPort = serialPort;
+        this.rxtxPort = rxtxPort;
+        this.selector = selector;
+        interestOps(ops);
+    }
+
+    /**
+     * @return the serial port this key was created for.
+     */
+    public SerialPort port() {
+        return this.serialPort;
+    }
+
+    /**
+     * @return the selector this key was created by.
+     */
+    public SerialPortSelector selector() {
+        return this.selector;
+    }
+
+    /**
+     * @return the interest set.
+     * @throws CancelledKeyException
+     *             if the key is no longer valid.
+     */
+    public int interestOps() {
+        checkValid();
+        return this.interestOps;
+    }
+
+    /**
+     * Sets the interest set. Takes effect with the next selection, a selection in progress is not woken up.
+     * 
+     * @param ops
+     *            a combination of {@link #OP_READ}, {@link #OP_WRITE} and {@link #OP_LINE_STATE}.
+     * @return this key.
+     * @throws IllegalArgumentException
+     *             if ops contains an unknown operation.
+     * @throws CancelledKeyException
+     *             if the key is no longer valid.
+     */
+    public SerialPortSelectionKey interestOps(int ops) {
+        checkValid();
+        if ((ops & ~ALL_OPS) != 0) {
+            throw new IllegalArgumentException("Unknown operation in interest set: " + ops);
+        }
+        synchronized (this) {
+            if ((ops & OP_LINE_STATE) != 0 && (this.interestOps & OP_LINE_STATE) == 0) {
+                this.lineState = readLineState();
+            }
+            this.interestOps = ops;
+        }
+        return this;
+    }
+
+    /**
+     * @return the operations the serial port was found ready for by the last selection that added this key to the
+     *         selected set.
+     * @throws CancelledKeyException
+     *             if the key is no longer valid.
+     */
+    public int readyOps() {
+        checkValid();
+        return this.readyOps;
+    }
+
+    public boolean isReadable() {
+        return (readyOps() & OP_READ) != 0;
+    }
+
+    public boolean isWritable() {
+        return (readyOps() & OP_WRITE) != 0;
+    }
+
+    public boolean isLineStateChanged() {
+        return (readyOps() & OP_LINE_STATE) != 0;
+    }
+
+    /**
+     * Attaches an object to this key, e.g. the state of the protocol running on the serial port.
+     * 
+     * @param attachment
+     *            the object to attach, may be null.
+     * @return the previously attached object.
+     */
+    public Object attach(Object attachment) {
+        Object previous = this.attachment;
+        this.attachment = attachment;
+        return previous;
+    }
+
+    /**
+     * @return the attached object or null.
+     */
+    public Object attachment() {
+        return this.attachment;
+    }
+
+    /**
+     * @return true if the key is neither cancelled nor its selector closed.
+     */
+    public boolean isValid() {
+        return this.valid;
+    }
+
+    /**
+     * Cancels the registration. The key is removed from the selector with the next selection.
+     */
+    public void cancel() {
+        this.valid = false;
+    }
+
+    RXTXPort rxtxPort() {
+        return this.rxtxPort;
+    }
+
+    int currentInterestOps() {
+        return this.interestOps;
+    }
+
+    int currentReadyOps() {
+        return this.readyOps;
+    }
+
+    void setReadyOps(int ops) {
+        this.readyOps = ops;
+    }
+
+    /**
+     * @return {@link #OP_LINE_STATE} if one of the input lines changed since the last call, else 0.
+     */
+    synchronized int pollLineState() {
+        if ((this.interestOps & OP_LINE_STATE) == 0) {
+            return 0;
+        }
+        int state = readLineState();
+        if (state == this.lineState) {
+            return 0;
+        }
+        this.lineState = state;
+        return OP_LINE_STATE;
+    }
+
+    private int readLineState() {
+        int state = 0;
+        if (this.rxtxPort.isCTS()) {
+            state |= CTS;
+        }
+        if (this.rxtxPort.isDSR()) {
+            state |= DSR;
+        }
+        if (this.rxtxPort.isCD()) {
+            state |= CD;
+        }
+        if (this.rxtxPort.isRI()) {
+            state |= RI;
+        }
+        return state;
+    }
+
+    private void checkValid() {
+        if (!isValid()) {
+            throw new CancelledKeyException();
+        }
+    }
+
+}
@@ -0,0 +1,311 @@
+package org.openmuc.jrxtx;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import gnu.io.RXTXPoller;
+import gnu.io.RXTXPort;
+
+/**
+ * Lets a single thread wait until one of many serial ports is ready for reading, writing or changed its input lines,
+ * like {@link java.nio.channels.Selector} does for sockets.
+ * 
+ * <pre>
+ * SerialPortSelector selector = SerialPortSelector.open();
+ * selector.register(serialPort, SerialPortSelectionKey.OP_READ, protocol);
+ * while (running) {
+ *     selector.select(0);
+ *     Iterator&lt;SerialPortSelectionKey&gt; it = selector.selectedKeys().iterator();
+ *     while (it.hasNext()) {
+ *         SerialPortSelectionKey key = it.next();
+ *         it.remove();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * Keys stay in the selected set until they are removed by the caller. Reads of a serial port reported readable return
+ * without blocking. A serial port is readable as well while its receive buffer or
+ * {@link SerialPort#readUntil(byte[], int, int)} holds bytes not read yet.
+ * <p>
+ * Read and write readiness is detected by poll(2) in the native library, which is not supported on Windows. Changes of
+ * the input lines are detected by sampling them every {@value #LINE_STATE_INTERVAL} ms while a key is interested in
+ * {@link SerialPortSelectionKey#OP_LINE_STATE}, short pulses can be missed.
+ */
+public class SerialPortSelector implements Closeable {
+
+    /** Interval in ms in which the input lines are sampled. */
+    public static final int LINE_STATE_INTERVAL = 100;
+
+    private final RXTXPoller poller;
+
+    private final Map<SerialPort, SerialPortSelectionKey> keys = new LinkedHashMap<SerialPort, SerialPortSelectionKey>();
+    private final Set<SerialPortSelectionKey> selectedKeys = Collections
+            .synchronizedSet(new HashSet<SerialPortSelectionKey>());
+
+    private volatile boolean closed;
+    private volatile boolean wakeupPending;
+
+    private SerialPortSelector(RXTXPoller poller) {
+        this.poller = poller;
+    }
+
+    /**
+     * Opens a selector.
+     * 
+     * @return the new selector.
+     * @throws IOException
+     *             if the native library does not support selecting serial ports.
+     */
+    public static SerialPortSelector open() throws IOException {
+        return new SerialPortSelector(new RXTXPoller());
+    }
+
+    /**
+     * Registers a serial port with this selector. If the serial port is already registered its key is updated.
+     * <p>
+     * A selection in progress is woken up, so it takes the new key into account.
+     * 
+     * @param serialPort
+     *            the serial port created by {@link SerialPortBuilder}.
+     * @param ops
+     *            the interest set, a combination of {@link SerialPortSelectionKey#OP_READ},
+     *            {@link SerialPortSelectionKey#OP_WRITE} and {@link SerialPortSelectionKey#OP_LINE_STATE}.
+     * @param attachment
+     *            the object to attach to the key, may be null.
+     * @return the key of the serial port.
+     * @throws IOException
+     *             if the serial port is closed.
+     * @throws IllegalArgumentException
+     *             if the serial port was not created by {@link SerialPortBuilder} or ops contains an unknown
+     *             operation.
+     * @throws ClosedSelectorException
+     *             if the selector is closed.
+     */
+    public SerialPortSelectionKey register(SerialPort serialPort, int ops, Object attachment) throws IOException {
+        checkOpen();
+        if (!(serialPort instanceof JRxTxPort)) {
+            throw new IllegalArgumentException("Serial port was not created by SerialPortBuilder.");
+        }
+        RXTXPort rxtxPort = ((JRxTxPort) serialPort).getRxtxPort();
+        if (rxtxPort == null || serialPort.isClosed()) {
+            throw new SerialPortException("Serial port is closed");
+        }
+
+        SerialPortSelectionKey key;
+        synchronized (this.keys) {
+            key = this.keys.get(serialPort);
+            if (key == null || !key.isValid()) {
+                key = new SerialPortSelectionKey(serialPort, rxtxPort, this, ops);
+                this.keys.put(serialPort, key);
+            }
+            else {
+                key.interestOps(ops);
+            }
+        }
+        key.attach(attachment);
+        this.poller.wakeup();
+        return key;
+    }
+
+    /**
+     * Waits until at least one registered serial port is ready for an operation of its interest set, the timeout
+     * elapsed or {@link #wakeup()} was called.
+     * 
+     * @param timeout
+     *            the maximum time to wait in ms, 0 to wait without timeout.
+     * @return the number of keys added to or updated in the selected set, possibly zero.
+     * @throws IOException
+     *             if an I/O error occurred.
+     * @throws IllegalArgumentException
+     *             if the timeout is negative.
+     * @throws ClosedSelectorException
+     *             if the selector is closed.
+     */
+    public int select(long timeout) throws IOException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout");
+        }
+        return doSelect(timeout == 0 ? -1 : timeout);
+    }
+
+    /**
+     * Selects the ready serial ports without waiting.
+     * 
+     * @return the number of keys added to or updated in the selected set, possibly zero.
+     * @throws IOException
+     *             if an I/O error occurred.
+     * @throws ClosedSelectorException
+     *             if the selector is closed.
+     */
+    public int selectNow() throws IOException {
+        return doSelect(0);
+    }
+
+    /**
+     * Makes a blocked selection return immediately. If no selection is in progress the next one returns immediately.
+     */
+    public void wakeup() {
+        this.wakeupPending = true;
+        this.poller.wakeup();
+    }
+
+    /**
+     * @return the set of keys ready for at least one operation of their interest set. Keys may be removed from it
+     *         but not added.
+     * @throws ClosedSelectorException
+     *             if the selector is closed.
+     */
+    public Set<SerialPortSelectionKey> selectedKeys() {
+        checkOpen();
+        return this.selectedKeys;
+    }
+
+    /**
+     * @return a snapshot of the registered keys.
+     * @throws ClosedSelectorException
+     *             if the selector is closed.
+     */
+    public Set<SerialPortSelectionKey> keys() {
+        checkOpen();
+        synchronized (this.keys) {
+            return Collections.unmodifiableSet(new HashSet<SerialPortSelectionKey>(this.keys.values()));
+        }
+    }
+
+    /**
+     * @return true if the selector is not closed.
+     */
+    public boolean isOpen() {
+        return !this.closed;
+    }
+
+    /**
+     * Closes the selector and cancels all keys. The serial ports stay open. A blocked selection returns.
+     */
+    public void close() throws IOException {
+        synchronized (this.keys) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            for (SerialPortSelectionKey key : this.keys.values()) {
+                key.cancel();
+            }
+            this.keys.clear();
+        }
+        this.selectedKeys.clear();
+        this.poller.wakeup();
+        synchronized (this.poller) {
+            this.poller.close();
+        }
+    }
+
+    private synchronized int doSelect(long timeout) throws IOException {
+        checkOpen();
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+
+        while (true) {
+            List<SerialPortSelectionKey> active = activeKeys();
+            int count = active.size();
+            RXTXPort[] ports = new RXTXPort[count];
+            int[] ops = new int[count];
+            int[] ready = new int[count];
+            boolean lineState = false;
+            for (int i = 0; i < count; i++) {
+                SerialPortSelectionKey key = active.get(i);
+                ports[i] = key.rxtxPort();
+                int interestOps = key.currentInterestOps();
+                ops[i] = interestOps & (RXTXPoller.READ | RXTXPoller.WRITE);
+                lineState |= (interestOps & SerialPortSelectionKey.OP_LINE_STATE) != 0;
+            }
+
+            int pollTimeout;
+            if (timeout == 0) {
+                pollTimeout = 0;
+            }
+            else if (timeout < 0) {
+                pollTimeout = lineState ? LINE_STATE_INTERVAL : -1;
+            }
+            else {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                pollTimeout = (int) (lineState ? Math.min(remaining, LINE_STATE_INTERVAL) : remaining);
+            }
+
+            synchronized (this.poller) {
+                checkOpen();
+                this.poller.poll(ports, ops, ready, count, pollTimeout);
+            }
+
+            int updated = 0;
+            for (int i = 0; i < count; i++) {
+                SerialPortSelectionKey key = active.get(i);
+                int readyOps = ready[i] | key.pollLineState();
+                if (readyOps != 0 && updateSelected(key, readyOps)) {
+                    updated++;
+                }
+            }
+
+            boolean woken = this.wakeupPending;
+            this.wakeupPending = false;
+            if (updated > 0 || woken || timeout == 0 || this.closed
+                    || (timeout > 0 && System.currentTimeMillis() >= deadline)) {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * @return the valid keys after removing cancelled keys and keys of closed serial ports.
+     */
+    private List<SerialPortSelectionKey> activeKeys() {
+        List<SerialPortSelectionKey> active = new ArrayList<SerialPortSelectionKey>();
+        synchronized (this.keys) {
+            Iterator<SerialPortSelectionKey> it = this.keys.values().iterator();
+            while (it.hasNext()) {
+                SerialPortSelectionKey key = it.next();
+                if (key.port().isClosed()) {
+                    key.cancel();
+                }
+                if (!key.isValid()) {
+                    it.remove();
+                    this.selectedKeys.remove(key);
+                    continue;
+                }
+                active.add(key);
+            }
+        }
+        return active;
+    }
+
+    /**
+     * @return true if the key was added to the selected set or its ready set gained an operation.
+     */
+    private boolean updateSelected(SerialPortSelectionKey key, int readyOps) {
+        synchronized (this.selectedKeys) {
+            if (this.selectedKeys.add(key)) {
+                key.setReadyOps(readyOps);
+                return true;
+            }
+            int previous = key.currentReadyOps();
+            key.setReadyOps(previous | readyOps);
+            return (previous | readyOps) != previous;
+        }
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new ClosedSelectorException();
+        }
+    }
+
+}
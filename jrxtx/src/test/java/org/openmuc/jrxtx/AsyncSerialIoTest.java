@@ -0,0 +1,141 @@
+package org.openmuc.jrxtx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * Checks the asynchronous operations of a {@link SerialPort} on the ports of an {@link RXTXNullModem}.
+ */
+public class AsyncSerialIoTest {
+
+    @ClassRule
+    public static final NullModemRule nullModem = new NullModemRule();
+
+    private SerialPort serialPort1;
+    private SerialPort serialPort2;
+
+    @After
+    public void tearDown() throws IOException {
+        serialPort1.close();
+        serialPort2.close();
+    }
+
+    @Test(timeout = 10000)
+    public void readAsync() throws Exception {
+        open(nullModem.newBuilder1());
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        CompletableFuture<Integer> future = serialPort2.readAsync(dst, 0);
+        Assert.assertFalse(future.isDone());
+
+        serialPort1.getOutputStream().write(new byte[] { 1, 2, 3 });
+        int numBytesRead = future.get(2, TimeUnit.SECONDS);
+        while (numBytesRead < 3) {
+            numBytesRead += serialPort2.readAsync(dst, 0).get(2, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(3, dst.position());
+        Assert.assertEquals(3, dst.get(2));
+    }
+
+    @Test(timeout = 10000)
+    public void writeAsyncWhileCoalescing() throws Exception {
+        open(nullModem.newBuilder1().setWriteCoalescingSize(256));
+        Assert.assertEquals(3, serialPort1.writeAsync(ByteBuffer.wrap(new byte[] { 1, 2, 3 })).get().intValue());
+
+        // received without a flush of the output stream
+        serialPort2.setSerialPortTimeout(2000);
+        InputStream is = serialPort2.getInputStream();
+        Assert.assertEquals(1, is.read());
+        Assert.assertEquals(2, is.read());
+        Assert.assertEquals(3, is.read());
+    }
+
+    @Test(timeout = 10000)
+    public void transactAsyncKeepsBytesAfterResponse() throws Exception {
+        open(nullModem.newBuilder1());
+        // the request is answered with two lines at once
+        CompletableFuture<ByteBuffer> response = serialPort1.transactAsync(ByteBuffer.wrap("?".getBytes()),
+                new ResponseMatcher() {
+                    public boolean isComplete(ByteBuffer received) {
+                        return received.get(received.limit() - 1) == '\n';
+                    }
+                }, 2000);
+        serialPort2.setSerialPortTimeout(2000);
+        Assert.assertEquals('?', serialPort2.getInputStream().read());
+        serialPort2.getOutputStream().write("ok\nnext\n".getBytes());
+
+        Assert.assertEquals("ok\n", string(response.get(2, TimeUnit.SECONDS)));
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        Assert.assertEquals(5, serialPort1.readAsync(dst, 2000).get(2, TimeUnit.SECONDS).intValue());
+        dst.flip();
+        Assert.assertEquals("next\n", string(dst));
+    }
+
+    @Test(timeout = 10000)
+    public void chainedTransactions() throws Exception {
+        open(nullModem.newBuilder1());
+        final ResponseMatcher lineMatcher = new ResponseMatcher() {
+            public boolean isComplete(ByteBuffer received) {
+                return received.get(received.limit() - 1) == '\n';
+            }
+        };
+        // the second transaction is issued by the dependent action of the first one
+        CompletableFuture<ByteBuffer> response = serialPort1
+                .transactAsync(ByteBuffer.wrap("a".getBytes()), lineMatcher, 2000)
+                .thenCompose(new Function<ByteBuffer, CompletableFuture<ByteBuffer>>() {
+                    public CompletableFuture<ByteBuffer> apply(ByteBuffer first) {
+                        Assert.assertEquals("A\n", string(first));
+                        return serialPort1.transactAsync(ByteBuffer.wrap("b".getBytes()), lineMatcher, 2000);
+                    }
+                });
+        serialPort2.setSerialPortTimeout(2000);
+        InputStream is = serialPort2.getInputStream();
+        Assert.assertEquals('a', is.read());
+        // both responses arrive at once
+        serialPort2.getOutputStream().write("A\nB\n".getBytes());
+        Assert.assertEquals('b', is.read());
+
+        Assert.assertEquals("B\n", string(response.get(2, TimeUnit.SECONDS)));
+    }
+
+    @Test(timeout = 10000)
+    public void timeout() throws Exception {
+        open(nullModem.newBuilder1());
+        long start = System.currentTimeMillis();
+        try {
+            serialPort2.readAsync(ByteBuffer.allocate(1), 100).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SerialPortTimeoutException);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start >= 90);
+
+        // a later read gets the bytes
+        CompletableFuture<Integer> future = serialPort2.readAsync(ByteBuffer.allocate(1), 2000);
+        serialPort1.getOutputStream().write(42);
+        Assert.assertEquals(1, future.get(2, TimeUnit.SECONDS).intValue());
+    }
+
+    private void open(SerialPortBuilder builder1) throws IOException {
+        serialPort1 = builder1.build();
+        serialPort2 = nullModem.newBuilder2().build();
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes);
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.openmuc.jrxtx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * Sends bytes from one port of an {@link RXTXNullModem} to the other with metrics enabled and checks the counters and
+ * the MBean of the receiving port.
+ */
+public class MetricsTest {
+
+    @ClassRule
+    public static final NullModemRule nullModem = new NullModemRule();
+
+    @Test(timeout = 20000)
+    public void countersAndMBean() throws Exception {
+        final SerialPort sender = nullModem.newBuilder1().setMetricsEnabled(true).build();
+        SerialPort receiver = nullModem.newBuilder2().setMetricsEnabled(true).build();
+        receiver.setSerialPortTimeout(200);
+
+        final byte[] data = new byte[10000];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    OutputStream os = sender.getOutputStream();
+                    os.write(data);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        writer.start();
+        InputStream is = receiver.getInputStream();
+        byte[] buffer = new byte[1024];
+        int numBytesRead = 0;
+        while (numBytesRead < data.length) {
+            numBytesRead += is.read(buffer);
+        }
+        writer.join();
+        try {
+            is.read();
+            Assert.fail();
+        } catch (SerialPortTimeoutException e) {
+            // counted
+        }
+
+        SerialPortMetrics received = receiver.getMetrics();
+        SerialPortMetrics sent = sender.getMetrics();
+        Assert.assertEquals(data.length, sent.getBytesWritten());
+        Assert.assertEquals(data.length, received.getBytesRead());
+        Assert.assertEquals(1, received.getTimeouts());
+        Assert.assertEquals(data.length, received.getReadSizes().getTotal());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(
+                "org.openmuc.jrxtx:type=SerialPort,name=" + ObjectName.quote(nullModem.getPortName2()));
+        Assert.assertEquals(Long.valueOf(data.length), server.getAttribute(name, "BytesRead"));
+
+        receiver.close();
+        sender.close();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.openmuc.jrxtx;
+
+import java.io.IOException;
+
+import org.junit.rules.ExternalResource;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * An {@link RXTXNullModem} for each test as a <code>@Rule</code>, or for all tests of a class as a
+ * <code>@ClassRule</code>. Its builders open the ports at 115200 8N1.
+ */
+class NullModemRule extends ExternalResource {
+
+    private RXTXNullModem nullModem;
+
+    @Override
+    protected void before() throws IOException {
+        nullModem = new RXTXNullModem();
+    }
+
+    @Override
+    protected void after() {
+        try {
+            nullModem.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    String getPortName1() {
+        return nullModem.getPortName1();
+    }
+
+    String getPortName2() {
+        return nullModem.getPortName2();
+    }
+
+    SerialPortBuilder newBuilder1() {
+        return newBuilder(getPortName1());
+    }
+
+    SerialPortBuilder newBuilder2() {
+        return newBuilder(getPortName2());
+    }
+
+    private static SerialPortBuilder newBuilder(String portName) {
+        return SerialPortBuilder.newBuilder(portName)
+                .setBaudRate(115200)
+                .setDataBits(DataBits.DATABITS_8)
+                .setStopBits(StopBits.STOPBITS_1)
+                .setParity(Parity.NONE);
+    }
+
+}
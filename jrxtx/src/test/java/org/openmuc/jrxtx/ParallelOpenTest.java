@@ -0,0 +1,76 @@
+package org.openmuc.jrxtx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * Opens the ports of several {@link RXTXNullModem}s at the same time, each from its own thread, and checks that every
+ * open succeeds and returns the requested port.
+ */
+public class ParallelOpenTest {
+
+    private static final int NULL_MODEMS = 4;
+
+    private final List<RXTXNullModem> nullModems = new ArrayList<RXTXNullModem>();
+    private final List<String> portNames = new ArrayList<String>();
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < NULL_MODEMS; i++) {
+            RXTXNullModem nullModem = new RXTXNullModem();
+            nullModems.add(nullModem);
+            portNames.add(nullModem.getPortName1());
+            portNames.add(nullModem.getPortName2());
+        }
+        executor = Executors.newFixedThreadPool(portNames.size());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        for (RXTXNullModem nullModem : nullModems) {
+            nullModem.close();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void openInParallel() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> opens = new ArrayList<Future<String>>();
+        for (final String portName : portNames) {
+            opens.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException, InterruptedException {
+                    start.await();
+                    SerialPort serialPort = SerialPortBuilder.newBuilder(portName).setBaudRate(115200).build();
+                    try {
+                        return serialPort.getPortName();
+                    } finally {
+                        serialPort.close();
+                    }
+                }
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < opens.size(); i++) {
+            Assert.assertEquals(portNames.get(i), opens.get(i).get(10, TimeUnit.SECONDS));
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.openmuc.jrxtx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * An implementation of {@link SerialPort} written against the first release still compiles and gets the defaults of
+ * the methods added later.
+ */
+public class SerialPortDefaultsTest {
+
+    @Test
+    public void addedFeaturesAreDisabled() throws Exception {
+        SerialPort serialPort = new FirstReleasePort();
+        Assert.assertNull(serialPort.getMetrics());
+        Assert.assertEquals(0, serialPort.getReceiveBufferPeak());
+        Assert.assertEquals(0, serialPort.getReceiveBufferStalls());
+        Assert.assertEquals(0, serialPort.getCoalescedWrites());
+        Assert.assertEquals(0, serialPort.getCoalescedFlushes());
+    }
+
+    @Test
+    public void unsupportedFeaturesFail() throws Exception {
+        SerialPort serialPort = new FirstReleasePort();
+        try {
+            serialPort.getChannel();
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            serialPort.write(new ByteBuffer[] { ByteBuffer.allocate(1) });
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            serialPort.readUntil(new byte[] { '\n' }, 10, 0);
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            serialPort.getStatistics();
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            serialPort.writeAsync(ByteBuffer.allocate(1)).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SerialPortException);
+        }
+    }
+
+    private static class FirstReleasePort implements SerialPort {
+
+        public InputStream getInputStream() {
+            return null;
+        }
+
+        public OutputStream getOutputStream() {
+            return null;
+        }
+
+        public void close() {
+        }
+
+        public boolean isClosed() {
+            return false;
+        }
+
+        public String getPortName() {
+            return "first";
+        }
+
+        public DataBits getDataBits() {
+            return DataBits.DATABITS_8;
+        }
+
+        public void setDataBits(DataBits dataBits) {
+        }
+
+        public Parity getParity() {
+            return Parity.NONE;
+        }
+
+        public void setParity(Parity parity) {
+        }
+
+        public StopBits getStopBits() {
+            return StopBits.STOPBITS_1;
+        }
+
+        public void setStopBits(StopBits stopBits) {
+        }
+
+        public int getBaudRate() {
+            return 9600;
+        }
+
+        public void setBaudRate(int baudRate) {
+        }
+
+        public int getSerialPortTimeout() {
+            return 0;
+        }
+
+        public void setSerialPortTimeout(int serialPortTimeout) {
+        }
+
+        public void setFlowControl(FlowControl flowControl) {
+        }
+
+        public FlowControl getFlowControl() {
+            return FlowControl.NONE;
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.openmuc.jrxtx;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * Checks the readiness reported by the {@link SerialPortSelector} on the ports of an {@link RXTXNullModem}.
+ */
+public class SerialPortSelectorTest {
+
+    @ClassRule
+    public static final NullModemRule nullModem = new NullModemRule();
+
+    private SerialPortSelector selector;
+    private SerialPort serialPort1;
+    private SerialPort serialPort2;
+
+    @After
+    public void tearDown() throws IOException {
+        selector.close();
+        serialPort1.close();
+        serialPort2.close();
+    }
+
+    @Test(timeout = 10000)
+    public void readable() throws IOException {
+        open(nullModem.newBuilder2());
+        SerialPortSelectionKey key = selector.register(serialPort2, SerialPortSelectionKey.OP_READ, null);
+        Assert.assertEquals(0, selector.selectNow());
+
+        serialPort1.getOutputStream().write(42);
+        Assert.assertEquals(1, selector.select(2000));
+        Assert.assertTrue(selector.selectedKeys().contains(key));
+        Assert.assertTrue(key.isReadable());
+        Assert.assertEquals(42, serialPort2.getInputStream().read());
+    }
+
+    @Test(timeout = 10000)
+    public void writable() throws IOException {
+        open(nullModem.newBuilder2());
+        SerialPortSelectionKey key = selector.register(serialPort2, SerialPortSelectionKey.OP_WRITE, null);
+        Assert.assertEquals(1, selector.selectNow());
+        Assert.assertTrue(key.isWritable());
+        Assert.assertFalse(key.isReadable());
+    }
+
+    @Test(timeout = 10000)
+    public void wakeup() throws Exception {
+        open(nullModem.newBuilder2());
+        selector.register(serialPort2, SerialPortSelectionKey.OP_READ, null);
+        Thread waker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                selector.wakeup();
+            }
+        };
+        waker.start();
+        Assert.assertEquals(0, selector.select(0));
+        waker.join();
+    }
+
+    @Test(timeout = 10000)
+    public void readableWhileReceiveBufferHoldsBytes() throws Exception {
+        open(nullModem.newBuilder2().setReceiveBufferSize(4096));
+        SerialPortSelectionKey key = selector.register(serialPort2, SerialPortSelectionKey.OP_READ, null);
+
+        serialPort1.getOutputStream().write(new byte[5]);
+        while (serialPort2.getInputStream().available() < 5) {
+            Thread.sleep(10);
+        }
+        // the receive buffer thread drained the port, poll(2) alone would time out
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(1, selector.select(5000));
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertTrue(key.isReadable());
+    }
+
+    @Test(timeout = 10000)
+    public void readableWhileLookaheadHoldsBytes() throws Exception {
+        open(nullModem.newBuilder2());
+        SerialPortSelectionKey key = selector.register(serialPort2, SerialPortSelectionKey.OP_READ, null);
+
+        serialPort1.getOutputStream().write("ab\ncd".getBytes());
+        Thread.sleep(100);
+        byte[] line = serialPort2.readUntil(new byte[] { '\n' }, 100, 1000);
+        Assert.assertTrue(Arrays.equals("ab\n".getBytes(), line));
+        Assert.assertEquals(2, serialPort2.getInputStream().available());
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(1, selector.select(5000));
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertTrue(key.isReadable());
+    }
+
+    private void open(SerialPortBuilder builder) throws IOException {
+        selector = SerialPortSelector.open();
+        serialPort1 = nullModem.newBuilder1().build();
+        serialPort2 = builder.build();
+    }
+
+}
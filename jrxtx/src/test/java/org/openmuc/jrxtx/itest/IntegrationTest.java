@@ -3,24 +3,33 @@ package org.openmuc.jrxtx.itest;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.openmuc.jrxtx.SerialPort;
 import org.openmuc.jrxtx.SerialPortBuilder;
+import org.openmuc.jrxtx.SerialPortChannel;
 import org.openmuc.jrxtx.SerialPortException;
 import org.openmuc.jrxtx.SerialPortTimeoutException;
 
+import gnu.io.RXTXNullModem;
+
+/**
+ * Runs on the two ports of an {@link RXTXNullModem}, so on any Linux box with a native library supporting it.
+ */
 public class IntegrationTest {
 
-    private final static String PORT_1_NAME = "/dev/ttyS99";
-    private final static String PORT_2_NAME = "/dev/ttyS100";
+    private static RXTXNullModem nullModem;
 
     private ExecutorService executor = Executors.newFixedThreadPool(1);
 
@@ -30,10 +39,20 @@ public class IntegrationTest {
     InputStream is1, is2;
     OutputStream os1, os2;
 
+    @BeforeClass
+    public static void createNullModem() throws IOException {
+        nullModem = new RXTXNullModem();
+    }
+
+    @AfterClass
+    public static void closeNullModem() throws InterruptedException {
+        nullModem.close();
+    }
+
     @Before
     public void setUp() throws IOException {
-        serialPort1 = SerialPortBuilder.newBuilder(PORT_1_NAME).setBaudRate(2400).build();
-        serialPort2 = SerialPortBuilder.newBuilder(PORT_2_NAME).setBaudRate(2400).build();
+        serialPort1 = SerialPortBuilder.newBuilder(nullModem.getPortName1()).setBaudRate(2400).build();
+        serialPort2 = SerialPortBuilder.newBuilder(nullModem.getPortName2()).setBaudRate(2400).build();
 
         is1 = serialPort1.getInputStream();
         is2 = serialPort2.getInputStream();
@@ -58,6 +77,13 @@ public class IntegrationTest {
         }
     }
 
+    @Test
+    public void portNamesTest() throws Exception {
+        String[] portNames = SerialPortBuilder.getSerialPortNames();
+        Assert.assertTrue(Arrays.asList(portNames).contains(nullModem.getPortName1()));
+        Assert.assertTrue(Arrays.asList(portNames).contains(nullModem.getPortName2()));
+    }
+
     @Test
     public void serialPortCloseTest() throws Exception {
         Future<Boolean> future = executor.submit(new Callable<Boolean>() {
@@ -74,6 +100,52 @@ public class IntegrationTest {
         Assert.assertEquals(true, future.get());
     }
 
+    @Test
+    public void failedConfigClosesPortTest() throws Exception {
+        serialPort1.close();
+        try {
+            SerialPortBuilder.newBuilder(nullModem.getPortName1()).setBaudRate(-1).build();
+            Assert.fail();
+        } catch (SerialPortException e) {
+            // the baud rate is rejected
+        }
+        // the port is not in use after the failed build
+        serialPort1 = SerialPortBuilder.newBuilder(nullModem.getPortName1()).setBaudRate(2400).build();
+    }
+
+    @Test
+    public void channelFlushTest() throws Exception {
+        serialPort1.close();
+        serialPort1 = SerialPortBuilder.newBuilder(nullModem.getPortName1()).setBaudRate(2400)
+                .setWriteCoalescingSize(256).build();
+        SerialPortChannel channel = serialPort1.getChannel();
+        channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+        // the bytes wait in the coalescing buffer
+        serialPort2.setSerialPortTimeout(200);
+        try {
+            is2.read();
+            Assert.fail();
+        } catch (SerialPortTimeoutException e) {
+            // expected
+        }
+        channel.flush();
+        Assert.assertEquals(1, is2.read());
+        Assert.assertEquals(2, is2.read());
+        Assert.assertEquals(3, is2.read());
+    }
+
+    @Test
+    public void gatheringWriteAfterCloseTest() throws Exception {
+        serialPort1.close();
+        try {
+            serialPort1.write(new ByteBuffer[] { ByteBuffer.allocate(1) });
+            Assert.fail();
+        } catch (SerialPortException e) {
+            // expected
+        }
+    }
+
     @Test
     public void simpleWriteReadTest() throws Exception {
 
@@ -96,6 +168,85 @@ public class IntegrationTest {
         Assert.assertEquals(true, timeoutExceptionThrown);
     }
 
+    @Test
+    public void readUntilTest() throws Exception {
+        byte[] delimiters = { '\r', '\n' };
+
+        // a line in two writes, two lines in one write
+        os1.write("$GPGGA,1".getBytes());
+        Thread.sleep(50);
+        os1.write("23\n$GPRMC\nOK\rrest".getBytes());
+        Assert.assertEquals("$GPGGA,123\n", new String(serialPort2.readUntil(delimiters, 100, 1000)));
+        Assert.assertEquals("$GPRMC\n", new String(serialPort2.readUntil(delimiters, 100, 1000)));
+        Assert.assertEquals("OK", new String(serialPort2.readUntil(delimiters, 2, 1000)));
+        Assert.assertEquals("\r", new String(serialPort2.readUntil(delimiters, 100, 1000)));
+
+        // the bytes received before the timeout are kept
+        boolean timeoutExceptionThrown = false;
+        try {
+            serialPort2.readUntil(delimiters, 100, 200);
+        } catch (SerialPortTimeoutException e) {
+            timeoutExceptionThrown = true;
+        }
+        Assert.assertEquals(true, timeoutExceptionThrown);
+        Assert.assertEquals(4, is2.available());
+        Assert.assertEquals('r', is2.read());
+        os1.write("\n".getBytes());
+        Assert.assertEquals("est\n", new String(serialPort2.readUntil(delimiters, 100, 1000)));
+    }
+
+    @Test(timeout = 10000)
+    public void availableDuringReadUntilTest() throws Exception {
+        final byte[] delimiters = { '\n' };
+        os1.write("rest".getBytes());
+        try {
+            serialPort2.readUntil(delimiters, 100, 200);
+            Assert.fail();
+        } catch (SerialPortTimeoutException e) {
+            // the bytes are kept
+        }
+
+        // waits for the delimiter after the bytes kept
+        Future<byte[]> future = executor.submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                return serialPort2.readUntil(delimiters, 100, 0);
+            }
+        });
+        Thread.sleep(200);
+        Assert.assertEquals(4, is2.available());
+        os1.write("\n".getBytes());
+        Assert.assertEquals("rest\n", new String(future.get()));
+    }
+
+    @Test
+    public void receiveFramingTest() throws Exception {
+        serialPort2.close();
+        serialPort2 = SerialPortBuilder.newBuilder(nullModem.getPortName2())
+                .setBaudRate(2400)
+                .setReceiveFramingByte(0xC0)
+                .build();
+        is2 = serialPort2.getInputStream();
+        serialPort2.setSerialPortTimeout(1000);
+
+        // a frame in two writes, two frames in one write
+        os1.write(new byte[] { 1, 2 });
+        Thread.sleep(50);
+        os1.write(new byte[] { 3, (byte) 0xC0, 4, (byte) 0xC0, 5, 6, (byte) 0xC0, 7 });
+        byte[] buffer = new byte[100];
+        Assert.assertEquals(4, is2.read(buffer));
+        Assert.assertEquals(3, buffer[2]);
+        Assert.assertEquals(2, is2.read(buffer));
+        Assert.assertEquals(4, buffer[0]);
+        ByteBuffer frame = ByteBuffer.allocateDirect(100);
+        Assert.assertEquals(3, serialPort2.getChannel().read(frame));
+        Assert.assertEquals(6, frame.get(1));
+
+        // the bytes of the frame received before the timeout
+        serialPort2.setSerialPortTimeout(200);
+        Assert.assertEquals(1, is2.read(buffer));
+        Assert.assertEquals(7, buffer[0]);
+    }
+
     @Test
     public void streamCloseTest() throws Exception {
         Assert.assertEquals(false, serialPort2.isClosed());
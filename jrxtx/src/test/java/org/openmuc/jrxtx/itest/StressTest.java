@@ -0,0 +1,311 @@
+package org.openmuc.jrxtx.itest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jrxtx.SerialPort;
+import org.openmuc.jrxtx.SerialPortBuilder;
+import org.openmuc.jrxtx.SerialPortException;
+import org.openmuc.jrxtx.SerialPortTimeoutException;
+
+import gnu.io.RXTXNullModem;
+
+/**
+ * Stresses the read and write paths on the two ports of an {@link RXTXNullModem}: transfers of several MB, concurrent
+ * readers and writers, closing during reads and the precision of timeouts.
+ */
+public class StressTest {
+
+    private static final int MB = 1024 * 1024;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private RXTXNullModem nullModem;
+    private SerialPort serialPort1;
+    private SerialPort serialPort2;
+
+    @Before
+    public void setUp() throws IOException {
+        nullModem = new RXTXNullModem();
+        serialPort1 = SerialPortBuilder.newBuilder(nullModem.getPortName1()).setBaudRate(115200).build();
+        serialPort2 = SerialPortBuilder.newBuilder(nullModem.getPortName2()).setBaudRate(115200).build();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        close(serialPort1);
+        close(serialPort2);
+        nullModem.close();
+    }
+
+    @Test(timeout = 60000)
+    public void largeTransferTest() throws Exception {
+        Future<Void> writer = write(serialPort1, 8 * MB, 4096);
+        Assert.assertEquals(8 * MB, readPattern(serialPort2.getInputStream(), 8 * MB, 1000));
+        writer.get();
+    }
+
+    @Test(timeout = 60000)
+    public void receiveBufferTest() throws Exception {
+        for (boolean direct : new boolean[] { false, true }) {
+            serialPort2.close();
+            serialPort2 = SerialPortBuilder.newBuilder(nullModem.getPortName2())
+                    .setBaudRate(115200)
+                    .setReceiveBufferSize(MB)
+                    .setReceiveBufferDirect(direct)
+                    .build();
+            Future<Void> writer = write(serialPort1, 4 * MB, 4096);
+            Assert.assertEquals(4 * MB, readPattern(serialPort2.getInputStream(), 4 * MB, 1000));
+            writer.get();
+            Assert.assertTrue(serialPort2.getReceiveBufferPeak() > 0);
+            Assert.assertTrue(serialPort2.getReceiveBufferPeak() <= MB);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void writeCoalescingTest() throws Exception {
+        final int frames = 1000;
+        final int frameSize = 3 + 100 + 2;
+        serialPort1.close();
+        serialPort1 = SerialPortBuilder.newBuilder(nullModem.getPortName1())
+                .setBaudRate(115200)
+                .setWriteCoalescingSize(256)
+                .build();
+        Future<Integer> reader = read(serialPort2, frames * frameSize + 1000);
+
+        // header, payload and checksum of each frame in one write to the port
+        OutputStream os = serialPort1.getOutputStream();
+        byte[] frame = new byte[frameSize];
+        for (int offset = 0; offset < frames * frameSize; offset += frameSize) {
+            for (int i = 0; i < frameSize; i++) {
+                frame[i] = pattern(offset + i);
+            }
+            os.write(frame, 0, 3);
+            os.write(frame, 3, 100);
+            os.write(frame[103]);
+            os.write(frame[104]);
+            os.flush();
+        }
+        Assert.assertEquals(4 * frames, serialPort1.getCoalescedWrites());
+        Assert.assertEquals(frames, serialPort1.getCoalescedFlushes());
+
+        // larger than the buffer, written after the bytes collected before
+        byte[] large = new byte[1000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = pattern(frames * frameSize + i);
+        }
+        os.write(large, 0, 10);
+        os.write(large, 10, 990);
+        Assert.assertEquals(4 * frames + 1, serialPort1.getCoalescedWrites());
+        Assert.assertEquals(frames + 1, serialPort1.getCoalescedFlushes());
+        Assert.assertEquals(frames * frameSize + 1000, reader.get().intValue());
+    }
+
+    @Test(timeout = 60000)
+    public void gatherWriteTest() throws Exception {
+        final int frames = 1000;
+        // more parts than one writev takes at the end
+        final int parts = 3000;
+        Future<Integer> reader = read(serialPort2, frames * 105 + parts);
+
+        int offset = 0;
+        for (int i = 0; i < frames; i++) {
+            ByteBuffer header = ByteBuffer.allocate(3);
+            ByteBuffer body = ByteBuffer.allocateDirect(101);
+            ByteBuffer checksum = ByteBuffer.allocate(2);
+            offset = fill(header, offset);
+            // position 1, only the remaining bytes are written
+            body.put((byte) 0);
+            offset = fill(body, offset);
+            offset = fill(checksum, offset);
+            body.position(1);
+            ByteBuffer[] srcs = { header, body, checksum.asReadOnlyBuffer() };
+            Assert.assertEquals(105, serialPort1.write(srcs));
+            Assert.assertFalse(header.hasRemaining() || body.hasRemaining() || srcs[2].hasRemaining());
+        }
+        ByteBuffer[] srcs = new ByteBuffer[parts];
+        for (int i = 0; i < srcs.length; i++) {
+            srcs[i] = i % 2 == 0 ? ByteBuffer.allocate(1) : ByteBuffer.allocateDirect(1);
+            offset = fill(srcs[i], offset);
+        }
+        Assert.assertEquals(parts, serialPort1.getChannel().write(srcs));
+        Assert.assertEquals(frames * 105 + parts, reader.get().intValue());
+    }
+
+    @Test(timeout = 60000)
+    public void fullDuplexTest() throws Exception {
+        Future<Void> writer1 = write(serialPort1, 2 * MB, 1000);
+        Future<Void> writer2 = write(serialPort2, 2 * MB, 333);
+        Future<Integer> reader1 = read(serialPort1, 2 * MB);
+        Future<Integer> reader2 = read(serialPort2, 2 * MB);
+        writer1.get();
+        writer2.get();
+        Assert.assertEquals(2 * MB, reader1.get().intValue());
+        Assert.assertEquals(2 * MB, reader2.get().intValue());
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentWritersTest() throws Exception {
+        final int writers = 4;
+        final int blocks = 256;
+        final OutputStream os = serialPort1.getOutputStream();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < writers; i++) {
+            final byte[] block = new byte[1024];
+            Arrays.fill(block, (byte) i);
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    for (int j = 0; j < blocks; j++) {
+                        os.write(block);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        // the blocks of different writers may interleave, but no byte may be lost or duplicated
+        long[] counts = new long[writers];
+        InputStream is = serialPort2.getInputStream();
+        serialPort2.setSerialPortTimeout(1000);
+        byte[] buffer = new byte[4096];
+        int remaining = writers * blocks * 1024;
+        while (remaining > 0) {
+            int n = is.read(buffer, 0, Math.min(buffer.length, remaining));
+            for (int i = 0; i < n; i++) {
+                counts[buffer[i]]++;
+            }
+            remaining -= n;
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        for (int i = 0; i < writers; i++) {
+            Assert.assertEquals(blocks * 1024, counts[i]);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void closeDuringReadTest() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            final InputStream is = serialPort2.getInputStream();
+            Future<Boolean> reader = executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws IOException {
+                    try {
+                        is.read(new byte[100]);
+                    } catch (SerialPortException e) {
+                        return true;
+                    }
+                    return false;
+                }
+            });
+            Thread.sleep(20);
+            serialPort2.close();
+            Assert.assertTrue(reader.get(2, TimeUnit.SECONDS));
+            serialPort2 = SerialPortBuilder.newBuilder(nullModem.getPortName2()).setBaudRate(115200).build();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void timeoutPrecisionTest() throws Exception {
+        InputStream is = serialPort2.getInputStream();
+        for (int timeout : new int[] { 50, 200, 500 }) {
+            serialPort2.setSerialPortTimeout(timeout);
+            long start = System.nanoTime();
+            try {
+                is.read();
+                Assert.fail("no timeout");
+            } catch (SerialPortTimeoutException e) {
+                // expected
+            }
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            Assert.assertTrue("timeout " + timeout + " ms after " + elapsed + " ms", elapsed >= timeout - 1);
+            Assert.assertTrue("timeout " + timeout + " ms after " + elapsed + " ms", elapsed < timeout + 100);
+        }
+    }
+
+    /*
+     * Writes numBytes bytes of pattern(i) in chunks of chunkSize bytes
+     */
+    private Future<Void> write(final SerialPort serialPort, final int numBytes, final int chunkSize) {
+        return executor.submit(new Callable<Void>() {
+            public Void call() throws IOException {
+                OutputStream os = serialPort.getOutputStream();
+                byte[] chunk = new byte[chunkSize];
+                for (int offset = 0; offset < numBytes; offset += chunkSize) {
+                    int len = Math.min(chunkSize, numBytes - offset);
+                    for (int i = 0; i < len; i++) {
+                        chunk[i] = pattern(offset + i);
+                    }
+                    os.write(chunk, 0, len);
+                }
+                return null;
+            }
+        });
+    }
+
+    private Future<Integer> read(final SerialPort serialPort, final int numBytes) {
+        return executor.submit(new Callable<Integer>() {
+            public Integer call() throws IOException {
+                return readPattern(serialPort.getInputStream(), numBytes, 700);
+            }
+        });
+    }
+
+    /*
+     * Reads numBytes bytes and checks that they are pattern(i), returns the number of bytes read
+     */
+    private static int readPattern(InputStream is, int numBytes, int bufferSize) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        int numBytesRead = 0;
+        while (numBytesRead < numBytes) {
+            int n = is.read(buffer, 0, Math.min(bufferSize, numBytes - numBytesRead));
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] != pattern(numBytesRead + i)) {
+                    throw new IOException("wrong byte at " + (numBytesRead + i));
+                }
+            }
+            numBytesRead += n;
+        }
+        return numBytesRead;
+    }
+
+    /* not repeating every 256 bytes, so shifted or duplicated chunks are noticed */
+    private static byte pattern(int i) {
+        return (byte) (i ^ (i >>> 8) ^ (i >>> 16));
+    }
+
+    /*
+     * Fills the remaining bytes of buffer with pattern(offset...) and flips it, returns the next offset
+     */
+    private static int fill(ByteBuffer buffer, int offset) {
+        while (buffer.hasRemaining()) {
+            buffer.put(pattern(offset++));
+        }
+        buffer.flip();
+        return offset;
+    }
+
+    private static void close(SerialPort serialPort) {
+        try {
+            serialPort.close();
+        } catch (IOException e) {
+            // closed by the test
+        }
+    }
+
+}
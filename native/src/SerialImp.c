@@ -62,6 +62,10 @@
 #	include "config.h"
 #endif
 #include "include/gnu_io_RXTXPort.h"
+#include "include/gnu_io_RXTXEventEngine.h"
+#include "include/gnu_io_RXTXPoller.h"
+#include "include/gnu_io_RXTXPortDiscovery.h"
+#include "include/gnu_io_RXTXNullModem.h"
 #endif /* dima */
 #ifdef __LCC__ /* windows lcc compiler for fd_set. probably wrong */
 #   include<winsock.h>
@@ -78,6 +82,7 @@
 #include <sys/ioctl.h>
 #include <sys/param.h>
 #include <sys/utsname.h>
+#include <sys/uio.h>
 #include <pthread.h>
 #else
 #	include "win32termios.h"
@@ -102,6 +107,15 @@
 #ifdef HAVE_SYS_TIME_H
 #   include <sys/time.h>
 #endif /* HAVE_SYS_TIME_H */
+#ifdef HAVE_SYS_EPOLL_H
+#   include <sys/epoll.h>
+#endif /* HAVE_SYS_EPOLL_H */
+#ifdef HAVE_SYS_INOTIFY_H
+#   include <sys/inotify.h>
+#endif /* HAVE_SYS_INOTIFY_H */
+#ifndef WIN32
+#   include <poll.h>
+#endif /* WIN32 */
 #   include <fcntl.h>
 #ifdef HAVE_SYS_FCNTL_H
 #   include <sys/fcntl.h>
@@ -161,6 +175,10 @@ struct preopened *preopened_port = NULL;
 #define RXTXPort(foo) Java_gnu_io_RXTXPort_ ## foo
 #define RXTXVersion(foo) Java_gnu_io_RXTXVersion_ ## foo
 #define RXTXCommDriver(foo) Java_gnu_io_RXTXCommDriver_ ## foo
+#define RXTXEventEngine(foo) Java_gnu_io_RXTXEventEngine_ ## foo
+#define RXTXPoller(foo) Java_gnu_io_RXTXPoller_ ## foo
+#define RXTXPortDiscovery(foo) Java_gnu_io_RXTXPortDiscovery_ ## foo
+#define RXTXNullModem(foo) Java_gnu_io_RXTXNullModem_ ## foo
 
 #if defined(__sun__) || defined(__hpux__)
 /*----------------------------------------------------------
@@ -222,6 +240,7 @@ struct timeval snow, enow, seloop, eeloop;
 #endif /* DEBUG_TIMING */
 
 struct event_info_struct *master_index = NULL;
+struct port_ids port_ids;
 
 /*----------------------------------------------------------
  RXTXPort.Initialize
@@ -245,8 +264,7 @@ struct event_info_struct build_threadsafe_eis(JNIEnv *env, jobject *jobj,
 	myeis.jclazz = (*env)->GetObjectClass(env, *jobj);
 	myeis.jobj = jobj;
 	myeis.fd = get_java_var(env, *jobj, "fd", "I");
-	myeis.send_event = (*env)->GetMethodID(env, myeis.jclazz, "sendEvent",
-			"(IZ)Z");
+	myeis.send_event = port_ids.sendEvent;
 	return (myeis);
 }
 
@@ -260,6 +278,9 @@ struct event_info_struct build_threadsafe_eis(JNIEnv *env, jobject *jobj,
  comments:    Basically this just causes rxtx to ignore signals.  signal
  handlers where tried but the VM (circa 1.1) did not like it.
 
+ The field and method IDs of RXTXPort are cached here, see
+ cache_port_ids().
+
  It also allows for some sanity checks on linux boxes if DEBUG
  is enabled.
  ----------------------------------------------------------*/
@@ -296,6 +317,7 @@ JNIEXPORT void JNICALL RXTXPort(Initialize)(
 	}
 #endif /* !WIN32 */
 	ENTER("RXTXPort:Initialize");
+	cache_port_ids(env, jclazz);
 #ifdef PRERELEASE
 /*  this is just for avoiding confusion while testing new libraries */
 #ifdef DEBUG_MW
@@ -423,6 +445,40 @@ return 0;
 fail: return 1;
 }
 
+/*----------------------------------------------------------
+ create_read_wakeup
+
+ accept:      env, jobj (java RXTXPort object)
+ perform:     create the pipe used to wake up a thread blocking in
+ read_byte_array() and store both ends in the java object.
+ return:      none
+ exceptions:  none
+ comments:    If the pipe cannot be created wakeupReadFd stays -1 and
+ the java side falls back to polling.  See interruptRead().
+ ----------------------------------------------------------*/
+void create_read_wakeup(JNIEnv *env, jobject jobj) {
+#ifndef WIN32
+int fds[2];
+jfieldID jfread = port_ids.wakeupReadFd;
+jfieldID jfwrite = port_ids.wakeupWriteFd;
+
+if (!jfread || !jfwrite)
+	return;
+if (pipe(fds)) {
+	report("create_read_wakeup: pipe failed\n");
+	return;
+}
+fcntl(fds[0], F_SETFD, FD_CLOEXEC);
+fcntl(fds[1], F_SETFD, FD_CLOEXEC);
+/* the writing end must never block close() */
+fcntl(fds[1], F_SETFL, O_NONBLOCK);
+/* drained by nativeClearInterruptRead() */
+fcntl(fds[0], F_SETFL, O_NONBLOCK);
+(*env)->SetIntField(env, jobj, jfread, (jint) fds[0]);
+(*env)->SetIntField(env, jobj, jfwrite, (jint) fds[1]);
+#endif /* WIN32 */
+}
+
 /*----------------------------------------------------------
  get_java_baudrate
 
@@ -561,15 +617,12 @@ int databits = -1;
 int jparity = -1;
 int stop_bits = STOPBITS_1_5;
 int baudrate;
-jclass jclazz = (*env)->GetObjectClass(env, jobj);
-jfieldID jfspeed = (*env)->GetFieldID(env, jclazz, "speed", "I");
-jfieldID jfdataBits = (*env)->GetFieldID(env, jclazz, "dataBits", "I");
-jfieldID jfstopBits = (*env)->GetFieldID(env, jclazz, "stopBits", "I");
-jfieldID jfparity = (*env)->GetFieldID(env, jclazz, "parity", "I");
-(*env)->DeleteLocalRef(env, jclazz);
+jfieldID jfspeed = port_ids.speed;
+jfieldID jfdataBits = port_ids.dataBits;
+jfieldID jfstopBits = port_ids.stopBits;
+jfieldID jfparity = port_ids.parity;
 if (tcgetattr(fd, &ttyset) < 0) {
 	report("Cannot Get Serial Port Settings\n");
-	(*env)->DeleteLocalRef(env, jclazz);
 	return;
 }
 
@@ -665,23 +718,17 @@ int fd;
 int pid = -1;
 char message[80];
 const char *filename;
-jclass jclazz = (*env)->GetObjectClass(env, jobj);
-jfieldID jfid = (*env)->GetFieldID(env, jclazz, "pid", "I");
+jfieldID jfid = port_ids.pid;
 report_time_start( );
 
-if (!jfid) {
-	(*env)->ExceptionDescribe(env);
-	(*env)->ExceptionClear(env);
-	(*env)->DeleteLocalRef(env, jclazz);
+if (!jfid)
 	return -1;
-}
 
 #ifndef WIN32
 pid = getpid();
 #endif /* WIN32 */
 
 (*env)->SetIntField(env, jobj, jfid, (jint) pid);
-(*env)->DeleteLocalRef(env, jclazz);
 
 filename = (*env)->GetStringUTFChars(env, jstr, 0);
 
@@ -706,6 +753,7 @@ if ( LOCK(filename, pid)) {
 fd = find_preopened_ports(filename);
 if (fd) {
 	set_java_vars(env, jobj, fd);
+	create_read_wakeup(env, jobj);
 	(*env)->ReleaseStringUTFChars(env, jstr, filename);
 	return (jint) fd;
 }
@@ -736,6 +784,7 @@ if (fd >= 0 && (ioctl(fd, TIOCEXCL) == -1))
 
 if (configure_port(fd))
 	goto fail;
+create_read_wakeup(env, jobj);
 (*env)->ReleaseStringUTFChars(env, jstr, filename);
 sprintf(message, "open: fd returned is %i\n", fd);
 report(message);
@@ -762,6 +811,8 @@ JNIEXPORT void JNICALL RXTXPort(nativeClose)( JNIEnv *env,
 {
 	int result, pid;
 	int fd = get_java_var( env, jobj,"fd","I" );
+	int wakeup_read_fd = get_java_var( env, jobj,"wakeupReadFd","I" );
+	int wakeup_write_fd = get_java_var( env, jobj,"wakeupWriteFd","I" );
 	const char *filename = (*env)->GetStringUTFChars( env, jstr, 0 );
 	jclass jclazz = (*env)->GetObjectClass( env, jobj );
 	report_time_start( );
@@ -799,6 +850,16 @@ JNIEXPORT void JNICALL RXTXPort(nativeClose)( JNIEnv *env,
 		}  while ( result < 0 && errno == EINTR );
 		UNLOCK( filename, pid );
 	}
+#ifndef WIN32
+	if( wakeup_read_fd >= 0 )
+	{
+		report("nativeClose: closing read wakeup pipe\n");
+		CLOSE( wakeup_read_fd );
+		CLOSE( wakeup_write_fd );
+		(*env)->SetIntField( env, jobj, port_ids.wakeupReadFd, -1 );
+		(*env)->SetIntField( env, jobj, port_ids.wakeupWriteFd, -1 );
+	}
+#endif /* WIN32 */
 	report("nativeClose: Delete jclazz\n");
 	(*env)->DeleteLocalRef( env, jclazz );
 	report("nativeClose: release filename\n");
@@ -1452,7 +1513,7 @@ pthread_detach( tid );
 eis->drain_tid = tid;
 #endif /* TIOCSERGETLSR */
 report("init_threads: get eis\n");
-jeis = (*eis->env)->GetFieldID(eis->env, eis->jclazz, "eis", "J");
+jeis = port_ids.eis;
 report("init_threads: set eis\n");
 (*eis->env)->SetLongField(eis->env, *eis->jobj, jeis, (size_t) eis);
 report("init_threads:  stop\n");
@@ -1460,6 +1521,60 @@ report_time_end( );
 return (1);
 }
 
+/*----------------------------------------------------------
+ RXTXPort.nativeInterruptRead
+
+ accept:      none
+ perform:     wake up a thread blocked in read_byte_array
+ return:      none
+ exceptions:  none
+ comments:    a byte is written to the wakeup pipe created in open.
+ It stays there until nativeClearInterruptRead drains it, so
+ every read blocked meanwhile is woken up.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPort(nativeInterruptRead)( JNIEnv *env,
+	jobject jobj )
+{
+#ifndef WIN32
+	int wakeup_fd = get_java_var( env, jobj,"wakeupWriteFd","I" );
+	unsigned char byte = 0;
+
+	ENTER( "RXTXPort:nativeInterruptRead" );
+	if ( wakeup_fd >= 0 && WRITE( wakeup_fd, &byte, 1 ) < 0 )
+	{
+		report( "nativeInterruptRead: write failed\n" );
+	}
+	LEAVE( "RXTXPort:nativeInterruptRead" );
+#endif /* WIN32 */
+}
+
+/*----------------------------------------------------------
+ RXTXPort.nativeClearInterruptRead
+
+ accept:      none
+ perform:     drain the wakeup pipe written by nativeInterruptRead
+ return:      none
+ exceptions:  none
+ comments:    called once no thread is reading anymore, later reads
+ block again.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPort(nativeClearInterruptRead)( JNIEnv *env,
+	jobject jobj )
+{
+#ifndef WIN32
+	int wakeup_fd = get_java_var( env, jobj,"wakeupReadFd","I" );
+	unsigned char buffer[16];
+
+	ENTER( "RXTXPort:nativeClearInterruptRead" );
+	if ( wakeup_fd >= 0 )
+	{
+		while ( READ( wakeup_fd, buffer, sizeof( buffer ) ) > 0 )
+			;
+	}
+	LEAVE( "RXTXPort:nativeClearInterruptRead" );
+#endif /* WIN32 */
+}
+
 /*----------------------------------------------------------
  RXTXPort.writeByte
 
@@ -1539,6 +1654,9 @@ RXTXPort.writeArray
    perform:     write length bytes of jbarray
    return:      none
    exceptions:  IOException
+   comments:    Small writes are copied to the stack with
+                GetByteArrayRegion.  GetByteArrayElements may copy the
+                whole array, and only the bytes written are needed.
 ----------------------------------------------------------*/
 JNIEXPORT void JNICALL RXTXPort(writeArray)( JNIEnv *env,
 	jobject jobj, jbyteArray jbarray, jint offset, jint count,
@@ -1549,7 +1667,8 @@ JNIEXPORT void JNICALL RXTXPort(writeArray)( JNIEnv *env,
 #endif /* TIOCSERGETLSR */
 	int fd;
 	int result=0,total=0;
-	jbyte *body;
+	jbyte *body, *elements = NULL;
+	jbyte small[WRITE_ARRAY_CHUNK];
 #if defined ( __sun__ )
 	int icount;
 #endif /* __sun__ */
@@ -1563,7 +1682,16 @@ JNIEXPORT void JNICALL RXTXPort(writeArray)( JNIEnv *env,
 	retspec.tv_nsec = 50000;
 #endif /* __sun__ */
 	fd = get_java_var( env, jobj,"fd","I" );
-	body = (*env)->GetByteArrayElements( env, jbarray, 0 );
+	if( count <= WRITE_ARRAY_CHUNK )
+	{
+		(*env)->GetByteArrayRegion( env, jbarray, offset, count, small );
+		body = small;
+	}
+	else
+	{
+		elements = (*env)->GetByteArrayElements( env, jbarray, 0 );
+		body = elements + offset;
+	}
 	/* result=WRITE (fd, body + total + offset, count - total);
 	(*env)->ReleaseByteArrayElements( env, jbarray, body, 0 ); */
 /* return; OH CRAP */
@@ -1577,7 +1705,7 @@ JNIEXPORT void JNICALL RXTXPort(writeArray)( JNIEnv *env,
  */
 
 do {
-		result=WRITE (fd, (void * ) ((char *) body + total + offset), count - total); /* dima */
+		result=WRITE (fd, (void * ) ((char *) body + total), count - total); /* dima */
 		if(result >0){
 			total += result;
 		}
@@ -1586,6 +1714,9 @@ do {
 	if( result < 0 )
 	{
 		/* mexPrintf("GOT IT!!!\n"); */
+		if( elements )
+			(*env)->ReleaseByteArrayElements( env, jbarray, elements,
+				JNI_ABORT );
 		goto fail;
 	}
 /*
@@ -1597,7 +1728,9 @@ do {
 		icount++;
 	}  while (result && errno==EINTR && icount <3);
 #endif */ /* __sun__ */
-	(*env)->ReleaseByteArrayElements( env, jbarray, body, 0 );
+	/* nothing was changed, so there is nothing to copy back */
+	if( elements )
+		(*env)->ReleaseByteArrayElements( env, jbarray, elements, JNI_ABORT );
 #ifndef TIOCSERGETLSR
 	if( !interrupted )
 	{
@@ -1629,6 +1762,208 @@ if( result < 0 ) throw_java_exception( env, IO_EXCEPTION,
 "writeArray", strerror( errno ) );
 }
 
+/*----------------------------------------------------------
+RXTXPort.writeDirectBuffer
+
+   accept:      jbuffer: a direct java.nio.ByteBuffer used for writing
+                offset: offset from the start of the buffer
+                count: Number of bytes to write
+                jboolean interrupted (no events if true)
+   perform:     write count bytes straight from the memory of jbuffer
+   return:      none
+   exceptions:  IOException
+   comments:    like writeArray without copying the data.  The java
+                side checks offset and count against the capacity.
+----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPort(writeDirectBuffer)( JNIEnv *env,
+	jobject jobj, jobject jbuffer, jint offset, jint count,
+		jboolean interrupted )
+{
+#ifndef TIOCSERGETLSR
+	struct event_info_struct *index = master_index;
+#endif /* TIOCSERGETLSR */
+	int fd = get_java_var( env, jobj,"fd","I" );
+	int result=0,total=0;
+	char *body = (char *) (*env)->GetDirectBufferAddress( env, jbuffer );
+
+	if( !body )
+	{
+		throw_java_exception( env, IO_EXCEPTION, "writeDirectBuffer",
+			"not a direct buffer" );
+		return;
+	}
+	ENTER("writeDirectBuffer");
+	do {
+		result=WRITE (fd, (void * ) (body + offset + total), count - total);
+		if(result >0){
+			total += result;
+		}
+	}  while ( ( total < count ) && (result >= 0 || errno==EINTR ) );
+	if( result < 0 )
+	{
+		LEAVE("RXTXPort:writeDirectBuffer");
+		throw_java_exception( env, IO_EXCEPTION, "writeDirectBuffer",
+			strerror( errno ) );
+		return;
+	}
+#ifndef TIOCSERGETLSR
+	if( !interrupted )
+	{
+		if( index )
+		{
+			while( index->fd != fd &&
+				index->next ) index = index->next;
+		}
+		index->writing = 1;
+		report( "writeDirectBuffer:  index->writing = 1" );
+	}
+#endif /* TIOCSERGETLSR */
+	LEAVE("RXTXPort:writeDirectBuffer");
+}
+
+#if defined(WIN32)
+/* writeGather writes one part after the other without writev */
+struct iovec
+{
+	void *iov_base;
+	size_t iov_len;
+};
+#endif /* WIN32 */
+
+/*----------------------------------------------------------
+RXTXPort.writeGather
+
+   accept:      jparts: direct java.nio.ByteBuffers or byte arrays
+                joffsets: offset of the bytes to write in each part
+                jcounts: number of bytes to write of each part
+                n: number of parts
+                jboolean interrupted (no events if true)
+   perform:     write the bytes of all parts with writev
+   return:      none
+   exceptions:  IOException
+   comments:    Direct buffers are written from their memory, the
+                bytes of arrays are copied into one scratch buffer.
+                A partial write is continued with the rest of the
+                parts.  The java side checks offsets and counts.
+----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPort(writeGather)( JNIEnv *env,
+	jobject jobj, jobjectArray jparts, jintArray joffsets,
+	jintArray jcounts, jint n, jboolean interrupted )
+{
+#ifndef TIOCSERGETLSR
+	struct event_info_struct *index = master_index;
+#endif /* TIOCSERGETLSR */
+	int fd = get_java_var( env, jobj,"fd","I" );
+	int i, first = 0, result = 0, copied = 0, heap = 0;
+	char small[WRITE_ARRAY_CHUNK];
+	char *scratch = small;
+	jint *offsets;
+	jint *counts;
+	struct iovec *iov;
+	jobject part;
+
+	if( n <= 0 )
+		return;
+	offsets = malloc( 2 * n * sizeof( jint ) );
+	iov = malloc( n * sizeof( struct iovec ) );
+	if( !offsets || !iov )
+	{
+		free( offsets );
+		free( iov );
+		throw_java_exception( env, IO_EXCEPTION, "writeGather",
+			"out of memory" );
+		return;
+	}
+	counts = offsets + n;
+	(*env)->GetIntArrayRegion( env, joffsets, 0, n, offsets );
+	(*env)->GetIntArrayRegion( env, jcounts, 0, n, counts );
+
+	/* NULL for arrays, their bytes are copied below */
+	for( i = 0; i < n; i++ )
+	{
+		part = (*env)->GetObjectArrayElement( env, jparts, i );
+		iov[i].iov_base = (*env)->GetDirectBufferAddress( env, part );
+		iov[i].iov_len = counts[i];
+		if( iov[i].iov_base )
+			iov[i].iov_base = (char *) iov[i].iov_base + offsets[i];
+		else
+			heap += counts[i];
+		(*env)->DeleteLocalRef( env, part );
+	}
+	if( heap > WRITE_ARRAY_CHUNK && !( scratch = malloc( heap ) ) )
+	{
+		free( offsets );
+		free( iov );
+		throw_java_exception( env, IO_EXCEPTION, "writeGather",
+			"out of memory" );
+		return;
+	}
+	for( i = 0; i < n; i++ )
+	{
+		if( iov[i].iov_base )
+			continue;
+		part = (*env)->GetObjectArrayElement( env, jparts, i );
+		(*env)->GetByteArrayRegion( env, part, offsets[i], counts[i],
+			(jbyte *) scratch + copied );
+		(*env)->DeleteLocalRef( env, part );
+		iov[i].iov_base = scratch + copied;
+		copied += counts[i];
+	}
+
+	ENTER("writeGather");
+	while( first < n )
+	{
+		do {
+#if defined(WIN32)
+			result = WRITE( fd, iov[first].iov_base,
+				iov[first].iov_len );
+#else
+			result = writev( fd, iov + first,
+				n - first > WRITE_GATHER_PARTS ?
+				WRITE_GATHER_PARTS : n - first );
+#endif /* WIN32 */
+		}  while( result < 0 && errno == EINTR );
+		if( result < 0 )
+			break;
+		/* skip the parts written, continue within a partial one */
+		while( first < n && (size_t) result >= iov[first].iov_len )
+		{
+			result -= iov[first].iov_len;
+			first++;
+		}
+		if( first < n )
+		{
+			iov[first].iov_base = (char *) iov[first].iov_base + result;
+			iov[first].iov_len -= result;
+		}
+		result = 0;
+	}
+	if( scratch != small )
+		free( scratch );
+	free( offsets );
+	free( iov );
+	if( result < 0 )
+	{
+		LEAVE("RXTXPort:writeGather");
+		throw_java_exception( env, IO_EXCEPTION, "writeGather",
+			strerror( errno ) );
+		return;
+	}
+#ifndef TIOCSERGETLSR
+	if( !interrupted )
+	{
+		if( index )
+		{
+			while( index->fd != fd &&
+				index->next ) index = index->next;
+		}
+		index->writing = 1;
+		report( "writeGather:  index->writing = 1" );
+	}
+#endif /* TIOCSERGETLSR */
+	LEAVE("RXTXPort:writeGather");
+}
+
 /*----------------------------------------------------------
  RXTXPort.nativeDrain
 
@@ -2978,6 +3313,27 @@ return (now.tv_sec * 1000) + ceil(now.tv_usec / 1000);
 #endif /* __QNX__ */
 }
 
+/*----------------------------------------------------------
+ get_time_usec
+
+ accept:      none
+ perform:     read the monotonic clock
+ return:      microseconds since an arbitrary point in time
+ exceptions:  none
+ comments:    used for timeouts that have to be more precise than
+ GetTickCount() and must not jump with the wall clock.
+ ----------------------------------------------------------*/
+long long get_time_usec() {
+#if defined(CLOCK_MONOTONIC)
+struct timespec now;
+
+if (clock_gettime(CLOCK_MONOTONIC, &now) == 0)
+return (long long) now.tv_sec * 1000000 + now.tv_nsec / 1000;
+#endif /* CLOCK_MONOTONIC */
+return (long long) GetTickCount() * 1000;
+}
+#else
+#define get_time_usec() ((long long) GetTickCount() * 1000)
 #endif /* !WIN32 */
 
 /*----------------------------------------------------------
@@ -2989,7 +3345,7 @@ return (now.tv_sec * 1000) + ceil(now.tv_usec / 1000);
  int           timeout   milliseconds to wait before returning
  perform:     read bytes from the port into a buffer
  return:      status of read
- -1 fail (IOException)
+ -1 fail (IOException), errno is EINTR if woken up by interruptRead()
  0 timeout
  >0 number of bytes read
  comments:    According to the Communications API spec, a receive threshold
@@ -2997,108 +3353,96 @@ return (now.tv_sec * 1000) + ceil(now.tv_usec / 1000);
 
  The nuts and bolts are documented in
  NativeEnableReceiveTimeoutThreshold()
+
+ Waits in poll() for the remaining time only, the timeout is
+ accounted in microseconds against the monotonic clock.  Besides fd
+ the wakeup pipe is watched so close() does not have to wait for a
+ blocking read to time out.  A read returning 0 bytes means the
+ device hung up, that is reported as an error instead of retrying.
  ----------------------------------------------------------*/
 
 int read_byte_array(JNIEnv *env, jobject *jobj, int fd, unsigned char *buffer,
 int length, int timeout) {
 int ret, left, bytes = 0;
-long timeLeft, now = 0, start = 0;
-/* char msg[80]; */
-struct timeval tv, *tvP;
-fd_set rset;
+long long timeLeft, now = 0, start = 0;
+int poll_timeout;
 /* TRENT */
-int flag, count = 0;
+int flag;
 struct event_info_struct *eis = (struct event_info_struct *) get_java_var_long(
 env, *jobj, "eis", "J");
+int wakeup_fd = get_java_var(env, *jobj, "wakeupReadFd", "I");
+#ifndef WIN32
+struct pollfd pfds[2];
+#endif /* WIN32 */
 
 report_time_start();
 flag = eis->eventflags[SPE_DATA_AVAILABLE];
 eis->eventflags[SPE_DATA_AVAILABLE] = 0;
-/*
- ENTER( "read_byte_array" );
- sprintf(msg, "read_byte_array requests %i\n", length);
- report( msg );
- */
 left = length;
 if (timeout >= 0)
-start = GetTickCount();
-while (bytes < length && count++ < 20) /* && !is_interrupted( eis ) )*/
-{
+start = get_time_usec();
+while (bytes < length) {
 if (timeout >= 0) {
-now = GetTickCount();
-if (now - start >= timeout) {
+now = get_time_usec();
+timeLeft = (long long) timeout * 1000 - (now - start);
+if (timeLeft <= 0) {
 eis->eventflags[SPE_DATA_AVAILABLE] = flag;
 return bytes;
 }
-}
-
-FD_ZERO(&rset);
-FD_SET(fd, &rset);
-
-if (timeout >= 0) {
-timeLeft = timeout - (now - start);
-tv.tv_sec = timeLeft / 1000;
-tv.tv_usec = 1000 * (timeLeft % 1000);
-tvP = &tv;
+/* round up, poll() must not return before the deadline */
+poll_timeout = (int) ((timeLeft + 999) / 1000);
 } else {
-tvP = NULL;
+poll_timeout = -1;
 }
-/* FIXME HERE Trent */
+
 #ifndef WIN32
+pfds[0].fd = fd;
+pfds[0].events = POLLIN;
+pfds[0].revents = 0;
+pfds[1].fd = wakeup_fd;
+pfds[1].events = POLLIN;
+pfds[1].revents = 0;
 do {
-ret = SELECT(fd + 1, &rset, NULL, NULL, tvP);
+ret = poll(pfds, wakeup_fd >= 0 ? 2 : 1, poll_timeout);
 } while (ret < 0 && errno == EINTR);
 #else
 ret = 1;
 #endif /* WIN32 */
 if (ret == -1) {
-report("read_byte_array: select returned -1\n");
+report("read_byte_array: poll returned -1\n");
 LEAVE( "read_byte_array" );
 eis->eventflags[SPE_DATA_AVAILABLE] = flag;
 return -1;
-} else if (ret > 0) {
+}
+#ifndef WIN32
+else if (ret > 0 && wakeup_fd >= 0 && pfds[1].revents) {
+report("read_byte_array: woken up by interruptRead\n");
+eis->eventflags[SPE_DATA_AVAILABLE] = flag;
+errno = EINTR;
+return -1;
+}
+#endif /* WIN32 */
+else if (ret > 0) {
 if ((ret = READ(fd, buffer + bytes, left)) < 0) {
-if (errno != EINTR && errno != EAGAIN) {
+if (errno == EINTR || errno == EAGAIN)
+continue;
 report("read_byte_array: read returned -1\n");
 LEAVE( "read_byte_array" );
 eis->eventflags[SPE_DATA_AVAILABLE] = flag;
 return -1;
-}
+} else if (ret == 0) {
+report("read_byte_array: read returned 0 bytes, hung up\n");
 eis->eventflags[SPE_DATA_AVAILABLE] = flag;
+if (bytes)
+return bytes;
+errno = EIO;
 return -1;
-} else if (ret) {
+}
 bytes += ret;
 left -= ret;
 }
-/*
- The only thing that is bugging me with the new
- version is the CPU usage when reading on the serial port.  I
- looked at it today and find a quick fix.  It doesn't seems to
- affect the performance for our apps (I mean in a negative way,
- cause the CPU is back to normal, near 0-5%).  All I did is add
- a usleep in the reading function.
-
- Nicolas <ripley@8d.com>
- */
-else {
-/* usleep(10); */
-usleep(1000);
-}
-}
 }
 
-/*
- if( count > 19 )
- {
- throw_java_exception( env, IO_EXCEPTION, "read_byte_array",
- "No data available" );
- }
-
- sprintf(msg, "read_byte_array returns %i\n", bytes);
- report( msg );
- LEAVE( "read_byte_array" );
- report_time_end();
- */
 eis->eventflags[SPE_DATA_AVAILABLE] = flag;
 return bytes;
 }
@@ -3479,68 +3823,289 @@ return (bytes);
 }
 
 /*----------------------------------------------------------
- RXTXPort.nativeClearCommInput
+ read_available_bytes
 
- accept:       none
- perform:      try to clear the input.
- return:       true on success, false on error
+ accept:       fd, buffer, length (size of buffer), timeout
+ perform:      wait for the first byte like read_byte_array, then read
+ whatever else is buffered by the driver without blocking
+ return:       bytes read (at most length)
+ 0 on read timeout
+ -1 fail, see errno
  exceptions:   none
- comments:     This is an extension to commapi.
+ comments:     shared by readAvailableArray and readDirectBuffer
  ----------------------------------------------------------*/
-JNIEXPORT jboolean JNICALL RXTXPort(nativeClearCommInput)(JNIEnv *env,
-jobject jobj) {
-int fd = get_java_var(env, jobj, "fd", "I");
-if (tcflush(fd, TCIFLUSH))
-return (JNI_FALSE);
-return (JNI_TRUE);
+int read_available_bytes(JNIEnv *env, jobject *jobj, int fd,
+unsigned char *buffer, int length, int timeout) {
+int bytes, ret, avail = 0;
+
+if (length <= 0)
+return 0;
+bytes = read_byte_array(env, jobj, fd, buffer, 1, timeout);
+if (bytes <= 0)
+return bytes;
+#ifdef FIORDCHK  /* __unixware__ __sun__ probably others */
+avail = ioctl(fd, FIORDCHK, 0);
+#else
+if (ioctl(fd, FIONREAD, &avail) < 0)
+avail = 0;
+#endif /* FIORDCHK */
+if (avail > 0 && length > 1) {
+/* data is pending so this does not block, even with VTIME set */
+do {
+ret = READ(fd, buffer + 1, length - 1);
+} while (ret < 0 && errno == EINTR);
+if (ret < 0 && errno != EAGAIN)
+return -1;
+if (ret > 0)
+bytes += ret;
 }
+return bytes;
+}
+
 /*----------------------------------------------------------
- RXTXPort.readTerminatedArray
+ read_available_array
 
- accept:       offset (offset to start storing data in the jbarray) and
- Length (bytes to read).  Terminator - 2 bytes that we
- dont read past
- perform:      read bytes from the port into a byte array
- return:       bytes read on success
+ accept:       the java array, offset, length and timeout like
+ readAvailableArray, the name of the calling native for exceptions
+ perform:      read_available_bytes() into a chunk on the stack and copy
+ the bytes read into the array
+ return:       bytes read on success (at most length)
  0 on read timeout
  exceptions:   IOException
- comments:     throws ArrayIndexOutOfBoundsException if asked to
- read more than SSIZE_MAX bytes
- timeout is not properly handled
-
- This is an extension to commapi.
+ comments:     shared by readAvailableArray and readAvailableArrayTimeout
  ----------------------------------------------------------*/
-JNIEXPORT jint JNICALL RXTXPort(readTerminatedArray)(JNIEnv *env, jobject jobj,
-jbyteArray jbarray, jint offset, jint length, jbyteArray jterminator) {
-int bytes, total = 0;
-jbyte *body, *terminator;
-/* char msg[80]; */
+static jint read_available_array(JNIEnv *env, jobject jobj, jbyteArray jbarray,
+jint offset, jint length, int timeout, char *name) {
+int bytes;
+unsigned char buffer[READ_AVAILABLE_CHUNK];
 int fd = get_java_var(env, jobj, "fd", "I");
-int timeout = get_java_var(env, jobj, "timeout", "I");
 
-/*
- ENTER( "readArray" );
- report_time_start( );
- */
-if ((size_t) length > SSIZE_MAX || (size_t) length < 0) {
-report("RXTXPort:readArray length > SSIZE_MAX");
-LEAVE( "RXTXPort:readArray" );
-throw_java_exception(env, ARRAY_INDEX_OUT_OF_BOUNDS, "readArray",
-"Invalid length");
+if (length > READ_AVAILABLE_CHUNK)
+length = READ_AVAILABLE_CHUNK;
+bytes = read_available_bytes(env, &jobj, fd, buffer, length, timeout);
+if (bytes < 0) {
+report("RXTXPort:read_available_array bytes < 0");
+throw_java_exception(env, IO_EXCEPTION, name, strerror( errno));
 return -1;
 }
-body = (*env)->GetByteArrayElements(env, jbarray, 0);
-terminator = (*env)->GetByteArrayElements(env, jterminator, 0);
-do {
-bytes = read_byte_array(env, &jobj, fd,
-(unsigned char *) (body + offset + total), 1, timeout);/* dima */
-total += bytes;
-if (bytes < 0) {
-report("RXTXPort:readArray bytes < 0");
-LEAVE( "RXTXPort:readArray" );
+if (bytes > 0)
+(*env)->SetByteArrayRegion(env, jbarray, offset, bytes, (jbyte *) buffer);
+return (jint) bytes;
+}
+
+/*----------------------------------------------------------
+ read_direct_buffer
+
+ accept:       the direct buffer, offset, length and timeout like
+ readDirectBuffer, the name of the calling native for exceptions
+ perform:      read_available_bytes() straight into the buffer
+ return:       bytes read on success (at most length)
+ 0 on read timeout
+ exceptions:   IOException
+ comments:     shared by readDirectBuffer and readDirectBufferTimeout
+ ----------------------------------------------------------*/
+static jint read_direct_buffer(JNIEnv *env, jobject jobj, jobject jbuffer,
+jint offset, jint length, int timeout, char *name) {
+int bytes;
+unsigned char *body = (unsigned char *) (*env)->GetDirectBufferAddress(env,
+jbuffer);
+int fd = get_java_var(env, jobj, "fd", "I");
+
+if (!body) {
+throw_java_exception(env, IO_EXCEPTION, name, "not a direct buffer");
+return -1;
+}
+bytes = read_available_bytes(env, &jobj, fd, body + offset, length, timeout);
+if (bytes < 0) {
+report("RXTXPort:read_direct_buffer bytes < 0");
+throw_java_exception(env, IO_EXCEPTION, name, strerror( errno));
+return -1;
+}
+return (jint) bytes;
+}
+
+/*----------------------------------------------------------
+ RXTXPort.readAvailableArray
+
+ accept:       offset (offset to start storing data in the jbarray) and
+ Length (bytes to read)
+ perform:      wait for the first byte like readArray, then read
+ whatever else is buffered by the driver without blocking
+ return:       bytes read on success (at most length)
+ 0 on read timeout
+ exceptions:   IOException
+ comments:     This is what read(byte[], int, int) needs with the
+ threshold disabled, without calling nativeavailable first.
+ Only the bytes read are copied back into jbarray.  Reads are
+ done in chunks of READ_AVAILABLE_CHUNK bytes.
+ ----------------------------------------------------------*/
+JNIEXPORT jint JNICALL RXTXPort(readAvailableArray)(JNIEnv *env, jobject jobj,
+jbyteArray jbarray, jint offset, jint length) {
+return read_available_array(env, jobj, jbarray, offset, length,
+	get_java_var(env, jobj, "timeout", "I"), "readAvailableArray");
+}
+
+/*----------------------------------------------------------
+ RXTXPort.readAvailableArrayTimeout
+
+ accept:       like readAvailableArray plus the timeout in ms, -1 to
+ wait until a byte arrives
+ perform:      like readAvailableArray, ignoring the receive timeout of
+ the port
+ return:       bytes read on success (at most length)
+ 0 on read timeout
+ exceptions:   IOException
+ comments:     used by the reader of the receive buffer, see
+ RXTXPort.enableReceiveBuffer()
+ ----------------------------------------------------------*/
+JNIEXPORT jint JNICALL RXTXPort(readAvailableArrayTimeout)(JNIEnv *env,
+jobject jobj, jbyteArray jbarray, jint offset, jint length, jint timeout) {
+return read_available_array(env, jobj, jbarray, offset, length, timeout,
+	"readAvailableArrayTimeout");
+}
+
+/*----------------------------------------------------------
+ RXTXPort.readDirectBuffer
+
+ accept:       jbuffer (a direct java.nio.ByteBuffer), offset from the
+ start of the buffer and length (bytes to read)
+ perform:      like readAvailableArray but the bytes are read straight
+ into the memory of the buffer
+ return:       bytes read on success (at most length)
+ 0 on read timeout
+ exceptions:   IOException
+ comments:     the java side checks offset and length against the
+ capacity of the buffer.
+ ----------------------------------------------------------*/
+JNIEXPORT jint JNICALL RXTXPort(readDirectBuffer)(JNIEnv *env, jobject jobj,
+jobject jbuffer, jint offset, jint length) {
+return read_direct_buffer(env, jobj, jbuffer, offset, length,
+	get_java_var(env, jobj, "timeout", "I"), "readDirectBuffer");
+}
+
+/*----------------------------------------------------------
+ RXTXPort.readDirectBufferTimeout
+
+ accept:       like readDirectBuffer plus the timeout in ms, -1 to wait
+ until a byte arrives
+ perform:      like readDirectBuffer, ignoring the receive timeout of
+ the port
+ return:       bytes read on success (at most length)
+ 0 on read timeout
+ exceptions:   IOException
+ comments:     used by the reader of the receive buffer, see
+ RXTXPort.enableReceiveBuffer()
+ ----------------------------------------------------------*/
+JNIEXPORT jint JNICALL RXTXPort(readDirectBufferTimeout)(JNIEnv *env,
+jobject jobj, jobject jbuffer, jint offset, jint length, jint timeout) {
+return read_direct_buffer(env, jobj, jbuffer, offset, length, timeout,
+	"readDirectBufferTimeout");
+}
+
+/*----------------------------------------------------------
+ RXTXPort.nativeClearCommInput
+
+ accept:       none
+ perform:      try to clear the input.
+ return:       true on success, false on error
+ exceptions:   none
+ comments:     This is an extension to commapi.
+ ----------------------------------------------------------*/
+JNIEXPORT jboolean JNICALL RXTXPort(nativeClearCommInput)(JNIEnv *env,
+jobject jobj) {
+int fd = get_java_var(env, jobj, "fd", "I");
+if (tcflush(fd, TCIFLUSH))
+return (JNI_FALSE);
+return (JNI_TRUE);
+}
+/*----------------------------------------------------------
+ RXTXPort.nativeGetStatistics
+
+ accept:       array of at least 7 longs
+ perform:      read the counters of the driver with TIOCGICOUNT
+ return:       true on success, false if the driver does not keep
+ counters
+ exceptions:   none
+ comments:     The counters are stored in the order rx, tx, frame,
+ overrun, parity, brk, buf_overrun.  They are unsigned
+ and wrap around.
+ This is an extension to commapi.
+ ----------------------------------------------------------*/
+JNIEXPORT jboolean JNICALL RXTXPort(nativeGetStatistics)(JNIEnv *env,
+jobject jobj, jlongArray jcounts) {
+#if defined(TIOCGICOUNT)
+int fd = get_java_var(env, jobj, "fd", "I");
+struct serial_icounter_struct sis;
+jlong counts[7];
+
+memset(&sis, 0, sizeof(struct serial_icounter_struct));
+if (ioctl(fd, TIOCGICOUNT, &sis) < 0) {
+report_verbose("nativeGetStatistics: TIOCGICOUNT failed\n");
+return (JNI_FALSE);
+}
+counts[0] = (unsigned int) sis.rx;
+counts[1] = (unsigned int) sis.tx;
+counts[2] = (unsigned int) sis.frame;
+counts[3] = (unsigned int) sis.overrun;
+counts[4] = (unsigned int) sis.parity;
+counts[5] = (unsigned int) sis.brk;
+counts[6] = (unsigned int) sis.buf_overrun;
+(*env)->SetLongArrayRegion(env, jcounts, 0, 7, counts);
+return (JNI_TRUE);
+#else
+return (JNI_FALSE);
+#endif /* TIOCGICOUNT */
+}
+
+/*----------------------------------------------------------
+ RXTXPort.readTerminatedArray
+
+ accept:       offset (offset to start storing data in the jbarray) and
+ Length (bytes to read).  Terminator - 2 bytes that we
+ dont read past
+ perform:      read bytes from the port into a byte array
+ return:       bytes read on success
+ 0 on read timeout
+ exceptions:   IOException
+ comments:     throws ArrayIndexOutOfBoundsException if asked to
+ read more than SSIZE_MAX bytes
+ timeout is not properly handled
+
+ This is an extension to commapi.
+ ----------------------------------------------------------*/
+JNIEXPORT jint JNICALL RXTXPort(readTerminatedArray)(JNIEnv *env, jobject jobj,
+jbyteArray jbarray, jint offset, jint length, jbyteArray jterminator) {
+int bytes, total = 0;
+jbyte *body, *terminator;
+/* char msg[80]; */
+int fd = get_java_var(env, jobj, "fd", "I");
+int timeout = get_java_var(env, jobj, "timeout", "I");
+
+/*
+ ENTER( "readArray" );
+ report_time_start( );
+ */
+if ((size_t) length > SSIZE_MAX || (size_t) length < 0) {
+report("RXTXPort:readArray length > SSIZE_MAX");
+LEAVE( "RXTXPort:readArray" );
+throw_java_exception(env, ARRAY_INDEX_OUT_OF_BOUNDS, "readArray",
+"Invalid length");
+return -1;
+}
+body = (*env)->GetByteArrayElements(env, jbarray, 0);
+terminator = (*env)->GetByteArrayElements(env, jterminator, 0);
+do {
+bytes = read_byte_array(env, &jobj, fd,
+(unsigned char *) (body + offset + total), 1, timeout);/* dima */
+if (bytes < 0) {
+report("RXTXPort:readArray bytes < 0");
+LEAVE( "RXTXPort:readArray" );
+(*env)->ReleaseByteArrayElements(env, jterminator, terminator, JNI_ABORT);
+(*env)->ReleaseByteArrayElements(env, jbarray, body, 0);
 throw_java_exception(env, IO_EXCEPTION, "readArray", strerror( errno));
 return -1;
 }
+total += bytes;
 if (total > 1 && terminator[1] == body[total - 1]
 && terminator[0] == body[total - 2]) {
 report("Got terminator!\n");
@@ -3548,6 +4113,7 @@ break;
 }
 
 } while (bytes > 0 && total < length);
+(*env)->ReleaseByteArrayElements(env, jterminator, terminator, JNI_ABORT);
 (*env)->ReleaseByteArrayElements(env, jbarray, body, 0);
 /*
  sprintf( msg, "RXTXPort:readArray: %i %i\n", (int) length, bytes);
@@ -3555,7 +4121,64 @@ break;
  report_time_end( );
  LEAVE( "RXTXPort:readArray" );
  */
-return (bytes);
+return (total);
+}
+
+/*----------------------------------------------------------
+ RXTXPort.readUntilArray
+
+ accept:       offset (offset to start storing data in the jbarray),
+ length (bytes to read), the delimiter bytes, the timeout in ms
+ (-1 to wait for the first byte without timeout) and an array of
+ one int for the end of the delimiter
+ perform:      read_available_bytes() into a chunk on the stack and
+ scan it for the first of the delimiters with a table of all byte
+ values
+ return:       bytes read on success (at most length), the bytes after
+ the delimiter included.  jend[0] is set to the number of bytes up
+ to and including the delimiter, -1 if none was read.
+ 0 on read timeout
+ exceptions:   IOException
+ comments:     One call reads the bytes that arrived together, the java
+ side keeps the bytes after the delimiter for later reads, see
+ RXTXPort.readUntil().
+ This is an extension to commapi.
+ ----------------------------------------------------------*/
+JNIEXPORT jint JNICALL RXTXPort(readUntilArray)(JNIEnv *env, jobject jobj,
+jbyteArray jbarray, jint offset, jint length, jbyteArray jdelimiters,
+jint timeout, jintArray jend) {
+int bytes, i, count;
+jint end = -1;
+unsigned char buffer[READ_AVAILABLE_CHUNK];
+unsigned char delimiter[256];
+jbyte *delimiters;
+int fd = get_java_var(env, jobj, "fd", "I");
+
+memset(delimiter, 0, sizeof(delimiter));
+count = (*env)->GetArrayLength(env, jdelimiters);
+delimiters = (*env)->GetByteArrayElements(env, jdelimiters, 0);
+for (i = 0; i < count; i++)
+delimiter[(unsigned char) delimiters[i]] = 1;
+(*env)->ReleaseByteArrayElements(env, jdelimiters, delimiters, JNI_ABORT);
+
+if (length > READ_AVAILABLE_CHUNK)
+length = READ_AVAILABLE_CHUNK;
+bytes = read_available_bytes(env, &jobj, fd, buffer, length, timeout);
+if (bytes < 0) {
+report("RXTXPort:readUntilArray bytes < 0");
+throw_java_exception(env, IO_EXCEPTION, "readUntilArray", strerror( errno));
+return -1;
+}
+for (i = 0; i < bytes; i++) {
+if (delimiter[buffer[i]]) {
+end = i + 1;
+break;
+}
+}
+if (bytes > 0)
+(*env)->SetByteArrayRegion(env, jbarray, offset, bytes, (jbyte *) buffer);
+(*env)->SetIntArrayRegion(env, jend, 0, 1, &end);
+return (jint) bytes;
 }
 
 /*----------------------------------------------------------
@@ -3680,9 +4303,7 @@ void unlock_monitor_thread(struct event_info_struct *eis) {
 JNIEnv *env = eis->env;
 jobject jobj = *(eis->jobj);
 
-jfieldID jfid = (*env)->GetFieldID(env, (*env)->GetObjectClass(env, jobj),
-"MonitorThreadLock", "Z");
-(*env)->SetBooleanField(env, jobj, jfid, (jboolean) 0);
+(*env)->SetBooleanField(env, jobj, port_ids.MonitorThreadLock, (jboolean) 0);
 }
 
 /*----------------------------------------------------------
@@ -3919,245 +4540,1243 @@ nanosleep( &tspec, &retspec );
 }
 
 /*----------------------------------------------------------
- driver_has_tiocgicount
+ driver_has_tiocgicount
+
+ accept:      fd of interest
+ perform:     check for access to TIOCGICOUNT
+ return:      0 if not available
+ exceptions:  none
+ comments:    not supported on all devices/drivers.
+ Some multiport serial cards do not implement TIOCGICOUNT ...
+ So use the 'dumb' mode to enable using them after all! JK00
+ ----------------------------------------------------------*/
+int driver_has_tiocgicount(struct event_info_struct * eis) {
+#if defined(TIOCGICOUNT)
+
+/* Some multiport serial cards do not implement TIOCGICOUNT ... */
+/* So use the 'dumb' mode to enable using them after all! JK00 */
+
+if (ioctl(eis->fd, TIOCGICOUNT, &eis->osis) < 0) {
+report_verbose(
+" driver_has_tiocgicount:  Port does not support TIOCGICOUNT events\n");
+return (0);
+} else
+return (1);
+#endif /*  TIOCGICOUNT */
+return (0);
+
+}
+
+/*----------------------------------------------------------
+ report_serial_events
+
+ accept:      event_info_struct
+ perform:     send events if they occured
+ return:      0 if not available
+ exceptions:  none
+ comments:    not supported on all devices/drivers.
+ ----------------------------------------------------------*/
+void report_serial_events(struct event_info_struct *eis) {
+/* JK00: work around for Multi IO cards without TIOCSERGETLSR */
+/* if( eis->has_tiocsergetlsr ) we have a fix for output empty */
+if (check_line_status_register(eis))
+return;
+
+if (eis && eis->has_tiocgicount)
+check_cgi_count(eis);
+#ifndef WIN32 /* something is wrong here */
+#endif /* WIN32 */
+
+check_tiocmget_changes(eis);
+if (eis && port_has_changed_fionread(eis)) {
+if (!eis->eventflags[SPE_DATA_AVAILABLE]) {
+report_verbose("report_serial_events: ignoring DATA_AVAILABLE\n");
+/*
+ report(".");
+ */
+usleep(20000);
+#if !defined(__sun__)
+/* FIXME: No time to test on all OS's for production */
+usleep(20000);
+#endif /* !__sun__ */
+return;
+}
+report("report_serial_events: sending DATA_AVAILABLE\n");
+if (!send_event(eis, SPE_DATA_AVAILABLE, 1)) {
+/* select wont block */
+/* FIXME: No time to test on all OS's for production */
+/* REMOVE goes around usleep */
+#if !defined(__sun__)
+#endif /* !__sun__ */
+}
+usleep(20000);
+}
+}
+
+/*----------------------------------------------------------
+ initialise_event_info_struct
+
+ accept:      event_info_struct for this thread.
+ perform:     initialise or reset the event_info_struct
+ return:      1 on success
+ exceptions:  none
+ comments:
+ ----------------------------------------------------------*/
+int initialise_event_info_struct(struct event_info_struct *eis) {
+int i;
+jobject jobj = *eis->jobj;
+JNIEnv *env = eis->env;
+struct event_info_struct *index = master_index;
+
+if (eis->initialised == 1)
+goto end;
+
+#ifdef TIOCGICOUNT
+memset(&eis->osis, 0, sizeof(eis->osis));
+#endif /* TIOCGICOUNT */
+
+if (index) {
+while (index->next) {
+index = index->next;
+}
+index->next = eis;
+eis->prev = index;
+eis->next = NULL;
+} else {
+master_index = eis;
+master_index->next = NULL;
+master_index->prev = NULL;
+}
+
+for (i = 0; i < 11; i++)
+eis->eventflags[i] = 0;
+#if !defined(TIOCSERGETLSR) && !defined(WIN32)
+eis->output_buffer_empty_flag = 0;
+eis->writing = 0;
+#endif /* TIOCSERGETLSR */
+eis->eventloop_interrupted = 0;
+eis->closing = 0;
+
+eis->fd = get_java_var(env, jobj, "fd", "I");
+eis->has_tiocsergetlsr = has_line_status_register_access(eis->fd);
+eis->has_tiocgicount = driver_has_tiocgicount(eis);
+
+if (ioctl(eis->fd, TIOCMGET, &eis->omflags) < 0) {
+report("initialise_event_info_struct: Port does not support events\n");
+}
+
+eis->send_event = port_ids.sendEvent;
+if (eis->send_event == NULL)
+goto fail;
+end:
+FD_ZERO(&eis->rfds);
+FD_SET(eis->fd, &eis->rfds);
+eis->tv_sleep.tv_sec = 0;
+eis->tv_sleep.tv_usec = 100 * 1000;
+eis->initialised = 1;
+return (1);
+fail: report_error("initialise_event_info_struct: initialise failed!\n");
+finalize_event_info_struct(eis);
+return (0);
+}
+
+/*----------------------------------------------------------
+ finalize_event_info_struct
+
+ accept:      event_info_struct for this thread.
+ perform:     free resources
+ return:      none
+ exceptions:  none
+ comments:
+ ----------------------------------------------------------*/
+void finalize_event_info_struct(struct event_info_struct *eis) {
+if (eis->jclazz) {
+(*eis->env)->DeleteLocalRef(eis->env, eis->jclazz);
+}
+unlink_event_info_struct(eis);
+}
+
+/*----------------------------------------------------------
+ unlink_event_info_struct
+
+ accept:      event_info_struct
+ perform:     remove it from master_index
+ return:      none
+ exceptions:  none
+ comments:    does nothing if it has been removed already.  The
+ functions looking up a port by its fd must not find a struct of
+ a closed port whose fd was reused.
+ ----------------------------------------------------------*/
+void unlink_event_info_struct(struct event_info_struct *eis) {
+if (eis->prev)
+eis->prev->next = eis->next;
+else if (master_index == eis)
+master_index = eis->next;
+else
+return;
+if (eis->next)
+eis->next->prev = eis->prev;
+eis->next = NULL;
+eis->prev = NULL;
+}
+
+/*----------------------------------------------------------
+ RXTXPort.eventLoop
+
+ accept:      none
+ perform:     periodically check for SerialPortEvents
+ return:      none
+ exceptions:  none
+ comments:	please keep this function clean.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPort(eventLoop)( JNIEnv *env, jobject jobj )
+{
+#ifdef WIN32
+	int i = 0;
+#endif /* WIN32 */
+	struct event_info_struct eis;
+	eis.jclazz = (*env)->GetObjectClass( env, jobj );
+	eis.env = env;
+	eis.jobj = &jobj;
+	eis.initialised = 0;
+
+	ENTER("eventLoop\n");if ( !initialise_event_info_struct( &eis ) ) goto end;
+	if ( !init_threads( &eis ) ) goto end;
+	unlock_monitor_thread( &eis );
+	do{
+		report_time_eventLoop( );
+		do {
+			/* nothing goes between this call and select */
+			if( eis.closing )
+			{
+				report("eventLoop: got interrupt\n");
+				finalize_threads( &eis );
+				finalize_event_info_struct( &eis );
+				LEAVE("eventLoop");return;
+			}
+#ifndef WIN32
+			/* report( "." ); */
+			do {
+				eis.ret = SELECT( eis.fd + 1, &eis.rfds, NULL, NULL,
+					&eis.tv_sleep );
+			} while (eis.ret < 0 && errno==EINTR);
+#else
+			/*
+			    termios.c:serial_select is instable for some
+			    reason
+
+			    polling is not blowing up.
+			*/
+/*
+			usleep(5000);
+*/
+			eis.ret=1;
+			while( i++ < 5 )
+			{
+				if(eis.eventflags[SPE_DATA_AVAILABLE] )
+				{
+					if( port_has_changed_fionread( &eis ) )
+					{
+						send_event( &eis, SPE_DATA_AVAILABLE, 1 );
+					}
+				}
+				usleep(1000);
+			}
+			i = 0;
+#endif /* WIN32 */
+		}  while ( eis.ret < 0 && errno == EINTR );
+		if( eis.ret >= 0 )
+		{
+			report_serial_events( &eis );
+		}
+		initialise_event_info_struct( &eis );
+	} while( 1 );
+end:
+	LEAVE(
+"eventLoop:  Bailing!\n");
+}
+
+/*----------------------------------------------------------
+ report_engine_events
+
+ accept:      event_info_struct
+ perform:     send events if they occured
+ return:      none
+ exceptions:  none
+ comments:    report_serial_events() for ports served by an
+ RXTXEventEngine loop.  It must not sleep as other ports share
+ the loop thread.
+ ----------------------------------------------------------*/
+void report_engine_events(struct event_info_struct *eis) {
+if (check_line_status_register(eis))
+return;
+
+if (eis->has_tiocgicount)
+check_cgi_count(eis);
+
+check_tiocmget_changes(eis);
+if (eis->eventflags[SPE_DATA_AVAILABLE] && port_has_changed_fionread(eis)) {
+report("report_engine_events: sending DATA_AVAILABLE\n");
+send_event(eis, SPE_DATA_AVAILABLE, 1);
+}
+}
+
+#if defined(HAVE_SYS_EPOLL_H)
+/*----------------------------------------------------------
+ engine_detach
+
+ accept:      env of the loop thread, the engine and a port of it
+ perform:     stop serving the port
+ return:      the global reference of the RXTXPort, to be told by
+ eventEngineDetached() and deleted by the caller
+ exceptions:  none
+ comments:    called with engine->lock held.  The event_info_struct
+ is freed here if RXTXEventEngine.nativeRelease() was called
+ before, otherwise by nativeRelease().  engine is cleared last,
+ nativeRelease() frees the struct as soon as it sees it cleared.
+ RXTXPort is told after the lock is released, it may register
+ again right away and reuse the struct.
+ ----------------------------------------------------------*/
+jobject engine_detach(JNIEnv *env, struct event_engine *engine,
+struct event_info_struct *eis) {
+struct event_info_struct **index = &engine->ports;
+jobject jport = eis->engine_jobj;
+
+report("engine_detach\n");
+/* the fd was removed from the epoll set by nativeInterrupt() */
+while (*index && *index != eis)
+index = &(*index)->engine_next;
+if (*index)
+*index = eis->engine_next;
+eis->engine_next = NULL;
+
+(*env)->DeleteGlobalRef(env, eis->jclazz);
+eis->jclazz = NULL;
+finalize_event_info_struct(eis);
+eis->initialised = 0;
+
+eis->engine_jobj = NULL;
+if (eis->engine_release)
+free(eis);
+else
+eis->engine = NULL;
+return jport;
+}
+
+/*----------------------------------------------------------
+ engine_detached
+
+ accept:      env of the loop thread, RXTXPort returned by engine_detach
+ perform:     tell RXTXPort it is no longer served
+ return:      none
+ exceptions:  none
+ comments:    called without engine->lock held
+ ----------------------------------------------------------*/
+void engine_detached(JNIEnv *env, jobject jport) {
+(*env)->CallVoidMethod(env, jport, port_ids.eventEngineDetached);
+(*env)->ExceptionClear(env);
+(*env)->DeleteGlobalRef(env, jport);
+}
+
+/*----------------------------------------------------------
+ engine_wakeup
+
+ accept:      the engine
+ perform:     make the loop look at its ports right away
+ return:      none
+ exceptions:  none
+ comments:    used when a port is to be dropped, so it is dropped
+ without waiting for the next tick.
+ ----------------------------------------------------------*/
+void engine_wakeup(struct event_engine *engine) {
+char c = 0;
+
+if (WRITE(engine->wakeup[1], &c, 1) < 0)
+report("engine_wakeup: write failed\n");
+}
+#endif /* HAVE_SYS_EPOLL_H */
+
+/*----------------------------------------------------------
+ RXTXEventEngine.nativeCreate
+
+ accept:      none
+ perform:     create an epoll set and the pipe used to wake it up
+ return:      handle of the engine loop, 0 if not supported
+ exceptions:  none
+ comments:    Only available where epoll is.  RXTXPort falls back to
+ one MonitorThread per port otherwise.
+ ----------------------------------------------------------*/
+JNIEXPORT jlong JNICALL RXTXEventEngine(nativeCreate)(JNIEnv *env,
+jclass jclazz) {
+#if defined(HAVE_SYS_EPOLL_H)
+struct event_engine *engine = calloc(1, sizeof(struct event_engine));
+struct epoll_event event;
+
+if (!engine)
+return 0;
+engine->epfd = epoll_create(ENGINE_MAX_EVENTS);
+if (engine->epfd < 0) {
+report("RXTXEventEngine:nativeCreate: epoll_create failed\n");
+free(engine);
+return 0;
+}
+if (pipe(engine->wakeup)) {
+report("RXTXEventEngine:nativeCreate: pipe failed\n");
+CLOSE(engine->epfd);
+free(engine);
+return 0;
+}
+fcntl(engine->epfd, F_SETFD, FD_CLOEXEC);
+fcntl(engine->wakeup[0], F_SETFD, FD_CLOEXEC);
+fcntl(engine->wakeup[1], F_SETFD, FD_CLOEXEC);
+fcntl(engine->wakeup[0], F_SETFL, O_NONBLOCK);
+fcntl(engine->wakeup[1], F_SETFL, O_NONBLOCK);
+memset(&event, 0, sizeof(event));
+event.events = EPOLLIN;
+event.data.ptr = NULL;
+epoll_ctl(engine->epfd, EPOLL_CTL_ADD, engine->wakeup[0], &event);
+
+/* never held while calling into Java */
+pthread_mutex_init(&engine->lock, NULL);
+return (jlong) (size_t) engine;
+#else
+return 0;
+#endif /* HAVE_SYS_EPOLL_H */
+}
+
+/*----------------------------------------------------------
+ RXTXEventEngine.nativeDestroy
+
+ accept:      engine handle
+ perform:     close the epoll set and the wakeup pipe, free the engine
+ return:      none
+ exceptions:  none
+ comments:    only for loops that were never run and serve no port,
+ when creating a later loop failed.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXEventEngine(nativeDestroy)(JNIEnv *env,
+jclass jclazz, jlong handle) {
+#if defined(HAVE_SYS_EPOLL_H)
+struct event_engine *engine = (struct event_engine *) (size_t) handle;
+
+if (!engine)
+return;
+CLOSE(engine->epfd);
+CLOSE(engine->wakeup[0]);
+CLOSE(engine->wakeup[1]);
+pthread_mutex_destroy(&engine->lock);
+free(engine->detached);
+free(engine);
+#endif /* HAVE_SYS_EPOLL_H */
+}
+
+/*----------------------------------------------------------
+ RXTXEventEngine.nativeRegister
+
+ accept:      engine handle, RXTXPort to serve
+ perform:     set up the event_info_struct of the port and add its fd
+ to the epoll set of the engine
+ return:      JNI_TRUE on success
+ exceptions:  none
+ comments:    replaces the start of RXTXPort.eventLoop().  An
+ event_info_struct left over from a previous registration of
+ the same port is reused.
+ ----------------------------------------------------------*/
+JNIEXPORT jboolean JNICALL RXTXEventEngine(nativeRegister)(JNIEnv *env,
+jclass jclazz, jlong handle, jobject jport) {
+#if defined(HAVE_SYS_EPOLL_H)
+struct event_engine *engine = (struct event_engine *) (size_t) handle;
+struct event_info_struct *eis = (struct event_info_struct *) get_java_var_long(
+env, jport, "eis", "J");
+struct epoll_event event;
+
+ENTER("RXTXEventEngine:nativeRegister");
+if (!engine)
+return JNI_FALSE;
+if (!eis)
+eis = calloc(1, sizeof(struct event_info_struct));
+if (!eis)
+return JNI_FALSE;
+/* the loop thread unlinks the structs of other ports from master_index */
+pthread_mutex_lock(&engine->lock);
+eis->engine_release = 0;
+eis->engine_next = NULL;
+eis->engine_jobj = (*env)->NewGlobalRef(env, jport);
+eis->jobj = &eis->engine_jobj;
+eis->jclazz = (*env)->GetObjectClass(env, jport);
+eis->env = env;
+eis->initialised = 0;
+eis->engine_detached = port_ids.eventEngineDetached;
+if (!eis->engine_detached || !initialise_event_info_struct(eis)) {
+/* initialise_event_info_struct released jclazz already on failure */
+(*env)->ExceptionClear(env);
+(*env)->DeleteGlobalRef(env, eis->engine_jobj);
+if (!get_java_var_long(env, jport, "eis", "J"))
+free(eis);
+pthread_mutex_unlock(&engine->lock);
+return JNI_FALSE;
+}
+/* the loop thread uses the class after this call returned */
+jclazz = eis->jclazz;
+eis->jclazz = (*env)->NewGlobalRef(env, jclazz);
+(*env)->DeleteLocalRef(env, jclazz);
+init_threads(eis);
+unlock_monitor_thread(eis);
+
+memset(&event, 0, sizeof(event));
+event.events = EPOLLIN | EPOLLET;
+event.data.ptr = eis;
+if (epoll_ctl(engine->epfd, EPOLL_CTL_ADD, eis->fd, &event)) {
+report("RXTXEventEngine:nativeRegister: epoll_ctl failed\n");
+}
+eis->engine = engine;
+eis->engine_next = engine->ports;
+engine->ports = eis;
+pthread_mutex_unlock(&engine->lock);
+LEAVE("RXTXEventEngine:nativeRegister");
+return JNI_TRUE;
+#else
+return JNI_FALSE;
+#endif /* HAVE_SYS_EPOLL_H */
+}
+
+/*----------------------------------------------------------
+ RXTXEventEngine.nativeInterrupt
+
+ accept:      engine handle, RXTXPort served by it
+ perform:     stop waiting for the fd of the port and make the loop
+ drop the port
+ return:      none
+ exceptions:  none
+ comments:    replaces interruptEventLoop(), which looks the port up
+ by its fd.  A port closed by its listener is dropped by the loop
+ when its fd may belong to a port opened meanwhile, so the fd is
+ removed from the epoll set and the struct from master_index
+ here, while the fd is still open.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXEventEngine(nativeInterrupt)(JNIEnv *env,
+jclass jclazz, jlong handle, jobject jport) {
+#if defined(HAVE_SYS_EPOLL_H)
+struct event_engine *engine = (struct event_engine *) (size_t) handle;
+struct event_info_struct *eis = (struct event_info_struct *) get_java_var_long(
+env, jport, "eis", "J");
+struct epoll_event event;
+
+if (!engine || !eis)
+return;
+pthread_mutex_lock(&engine->lock);
+if (eis->engine == engine) {
+epoll_ctl(engine->epfd, EPOLL_CTL_DEL, eis->fd, &event);
+unlink_event_info_struct(eis);
+eis->eventloop_interrupted = 1;
+}
+pthread_mutex_unlock(&engine->lock);
+engine_wakeup(engine);
+#endif /* HAVE_SYS_EPOLL_H */
+}
+
+/*----------------------------------------------------------
+ RXTXEventEngine.nativeRelease
+
+ accept:      RXTXPort that has been closed
+ perform:     free the event_info_struct of the port
+ return:      none
+ exceptions:  none
+ comments:    If the loop still serves the port it frees the struct
+ when it drops the port.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXEventEngine(nativeRelease)(JNIEnv *env,
+jclass jclazz, jobject jport) {
+#if defined(HAVE_SYS_EPOLL_H)
+struct event_info_struct *eis = (struct event_info_struct *) get_java_var_long(
+env, jport, "eis", "J");
+struct event_engine *engine;
+
+if (!eis)
+return;
+(*env)->SetLongField(env, jport, port_ids.eis, 0);
+engine = eis->engine;
+if (engine) {
+pthread_mutex_lock(&engine->lock);
+if (eis->engine) {
+eis->engine_release = 1;
+eis->closing = 1;
+pthread_mutex_unlock(&engine->lock);
+engine_wakeup(engine);
+return;
+}
+pthread_mutex_unlock(&engine->lock);
+}
+free(eis);
+#endif /* HAVE_SYS_EPOLL_H */
+}
+
+/*----------------------------------------------------------
+ RXTXEventEngine.nativeRun
+
+ accept:      engine handle
+ perform:     wait for data on all ports of the engine and send their
+ SerialPortEvents.  Modem and line status are checked for every
+ port each ENGINE_TICK_MS like the select() timeout of eventLoop.
+ return:      never
+ exceptions:  none
+ comments:    the fds are edge triggered so unread data does not keep
+ the loop busy.  The ports to report and to drop are collected
+ holding engine->lock, the listeners are called after releasing
+ it: they may open and close ports, which takes the lock, from
+ this or from other threads waiting for them.  The ports on the
+ ready list are not freed meanwhile, only this thread drops them.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXEventEngine(nativeRun)(JNIEnv *env, jclass jclazz,
+jlong handle) {
+#if defined(HAVE_SYS_EPOLL_H)
+struct event_engine *engine = (struct event_engine *) (size_t) handle;
+struct epoll_event events[ENGINE_MAX_EVENTS];
+struct event_info_struct *eis, *next, *ready, **ready_end;
+jobject jport, *grown;
+char buffer[64];
+long long now;
+int i, n, tick, detached;
+
+if (!engine)
+return;
+ENTER("RXTXEventEngine:nativeRun");
+engine->last_tick = get_time_usec();
+for (;;) {
+n = epoll_wait(engine->epfd, events, ENGINE_MAX_EVENTS, ENGINE_TICK_MS);
+if (n < 0 && errno != EINTR) {
+report("RXTXEventEngine:nativeRun: epoll_wait failed\n");
+usleep(ENGINE_TICK_MS * 1000);
+}
+pthread_mutex_lock(&engine->lock);
+for (i = 0; i < n; i++) {
+eis = (struct event_info_struct *) events[i].data.ptr;
+if (eis)
+eis->ret = 1;
+else
+while (READ(engine->wakeup[0], buffer, sizeof(buffer)) > 0)
+;
+}
+now = get_time_usec();
+tick = now - engine->last_tick >= ENGINE_TICK_MS * 1000;
+if (tick)
+engine->last_tick = now;
+ready = NULL;
+ready_end = &ready;
+detached = 0;
+for (eis = engine->ports; eis; eis = next) {
+next = eis->engine_next;
+if (eis->closing || eis->eventloop_interrupted) {
+jport = engine_detach(env, engine, eis);
+if (detached == engine->detached_max) {
+grown = realloc(engine->detached,
+(detached + 16) * sizeof(jobject));
+if (!grown) {
+/* told holding the lock, eventEngineDetached() only notifies */
+engine_detached(env, jport);
+continue;
+}
+engine->detached = grown;
+engine->detached_max = detached + 16;
+}
+engine->detached[detached++] = jport;
+continue;
+}
+if (eis->ret > 0 || tick) {
+eis->ret = 0;
+eis->engine_ready = NULL;
+*ready_end = eis;
+ready_end = &eis->engine_ready;
+}
+}
+pthread_mutex_unlock(&engine->lock);
+
+for (eis = ready; eis; eis = next) {
+next = eis->engine_ready;
+eis->env = env;
+report_engine_events(eis);
+}
+for (i = 0; i < detached; i++)
+engine_detached(env, engine->detached[i]);
+}
+#endif /* HAVE_SYS_EPOLL_H */
+}
+
+/*----------------------------------------------------------
+ RXTXPoller.nativeCreate
+
+ accept:      fds, an int[2] to store the ends of the wakeup pipe in
+ perform:     create the pipe used to wake up nativePoll
+ return:      JNI_TRUE on success
+ exceptions:  IOException
+ comments:
+ ----------------------------------------------------------*/
+JNIEXPORT jboolean JNICALL RXTXPoller(nativeCreate)(JNIEnv *env, jclass jclazz,
+jintArray jfds) {
+#ifndef WIN32
+int fds[2];
+jint values[2];
+
+if (pipe(fds)) {
+throw_java_exception(env, IO_EXCEPTION, "RXTXPoller.nativeCreate",
+strerror( errno));
+return JNI_FALSE;
+}
+fcntl(fds[0], F_SETFD, FD_CLOEXEC);
+fcntl(fds[1], F_SETFD, FD_CLOEXEC);
+fcntl(fds[0], F_SETFL, O_NONBLOCK);
+fcntl(fds[1], F_SETFL, O_NONBLOCK);
+values[0] = fds[0];
+values[1] = fds[1];
+(*env)->SetIntArrayRegion(env, jfds, 0, 2, values);
+return JNI_TRUE;
+#else
+throw_java_exception(env, IO_EXCEPTION, "RXTXPoller.nativeCreate",
+"not supported on this platform");
+return JNI_FALSE;
+#endif /* WIN32 */
+}
+
+/*----------------------------------------------------------
+ RXTXPoller.nativeWakeup
+
+ accept:      writing end of the wakeup pipe
+ perform:     make a blocked nativePoll return
+ return:      none
+ exceptions:  none
+ comments:
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPoller(nativeWakeup)(JNIEnv *env, jclass jclazz,
+jint wakeup_fd) {
+#ifndef WIN32
+char c = 0;
+
+if (WRITE(wakeup_fd, &c, 1) < 0 && errno != EAGAIN)
+report("RXTXPoller:nativeWakeup: write failed\n");
+#endif /* WIN32 */
+}
+
+/*----------------------------------------------------------
+ RXTXPoller.nativeClose
+
+ accept:      both ends of the wakeup pipe
+ perform:     close them
+ return:      none
+ exceptions:  none
+ comments:
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPoller(nativeClose)(JNIEnv *env, jclass jclazz,
+jint read_fd, jint write_fd) {
+#ifndef WIN32
+CLOSE(read_fd);
+CLOSE(write_fd);
+#endif /* WIN32 */
+}
+
+/*----------------------------------------------------------
+ RXTXPoller.nativePoll
+
+ accept:      wakeup_fd  reading end of the wakeup pipe
+ jfds       file descriptors of the ports
+ jops       interest per port, RXTXPoller.READ and/or WRITE
+ jready     receives the ready operations per port
+ count      number of ports in the arrays
+ timeout    in ms, -1 to wait until a port is ready or wakeup
+ perform:     poll() the ports and the wakeup pipe
+ return:      number of ready ports
+ exceptions:  IOException
+ comments:    A port that was closed or hung up is reported readable,
+ so the following read fails.
+ ----------------------------------------------------------*/
+JNIEXPORT jint JNICALL RXTXPoller(nativePoll)(JNIEnv *env, jclass jclazz,
+jint wakeup_fd, jintArray jfds, jintArray jops, jintArray jready, jint count,
+jint timeout) {
+#ifndef WIN32
+struct pollfd *pfds = calloc(count + 1, sizeof(struct pollfd));
+jint *fds, *ops, *ready;
+char buffer[64];
+int i, ret, result = 0;
+
+if (!pfds) {
+throw_java_exception(env, IO_EXCEPTION, "RXTXPoller.nativePoll",
+"out of memory");
+return -1;
+}
+fds = (*env)->GetIntArrayElements(env, jfds, NULL);
+ops = (*env)->GetIntArrayElements(env, jops, NULL);
+for (i = 0; i < count; i++) {
+pfds[i].fd = fds[i];
+pfds[i].events = ((ops[i] & POLLER_READ) ? POLLIN : 0)
+| ((ops[i] & POLLER_WRITE) ? POLLOUT : 0);
+}
+pfds[count].fd = wakeup_fd;
+pfds[count].events = POLLIN;
+(*env)->ReleaseIntArrayElements(env, jops, ops, JNI_ABORT);
+(*env)->ReleaseIntArrayElements(env, jfds, fds, JNI_ABORT);
+
+do {
+ret = poll(pfds, count + 1, timeout);
+} while (ret < 0 && errno == EINTR);
+if (ret < 0) {
+free(pfds);
+throw_java_exception(env, IO_EXCEPTION, "RXTXPoller.nativePoll",
+strerror( errno));
+return -1;
+}
+if (pfds[count].revents)
+while (READ(wakeup_fd, buffer, sizeof(buffer)) > 0)
+;
+
+ready = (*env)->GetIntArrayElements(env, jready, NULL);
+for (i = 0; i < count; i++) {
+ready[i] = 0;
+if (pfds[i].revents & (POLLIN | POLLHUP | POLLERR | POLLNVAL))
+ready[i] |= POLLER_READ;
+if (pfds[i].revents & POLLOUT)
+ready[i] |= POLLER_WRITE;
+if (ready[i])
+result++;
+}
+(*env)->ReleaseIntArrayElements(env, jready, ready, 0);
+free(pfds);
+return result;
+#else
+throw_java_exception(env, IO_EXCEPTION, "RXTXPoller.nativePoll",
+"not supported on this platform");
+return -1;
+#endif /* WIN32 */
+}
+
+/*----------------------------------------------------------
+ RXTXPortDiscovery.nativeCreate
+
+ accept:      none
+ perform:     create an inotify instance and the pipe used to wake up
+ nativeRun
+ return:      handle of the discovery, 0 if not supported
+ exceptions:  none
+ comments:    Only available where inotify is.
+ ----------------------------------------------------------*/
+JNIEXPORT jlong JNICALL RXTXPortDiscovery(nativeCreate)(JNIEnv *env,
+jclass jclazz) {
+#if defined(HAVE_SYS_INOTIFY_H)
+struct port_discovery *discovery = calloc(1, sizeof(struct port_discovery));
+
+if (!discovery)
+return 0;
+discovery->fd = inotify_init();
+if (discovery->fd < 0) {
+report("RXTXPortDiscovery:nativeCreate: inotify_init failed\n");
+free(discovery);
+return 0;
+}
+if (pipe(discovery->wakeup)) {
+report("RXTXPortDiscovery:nativeCreate: pipe failed\n");
+CLOSE(discovery->fd);
+free(discovery);
+return 0;
+}
+fcntl(discovery->fd, F_SETFD, FD_CLOEXEC);
+fcntl(discovery->wakeup[0], F_SETFD, FD_CLOEXEC);
+fcntl(discovery->wakeup[1], F_SETFD, FD_CLOEXEC);
+fcntl(discovery->wakeup[1], F_SETFL, O_NONBLOCK);
+return (jlong) (size_t) discovery;
+#else
+return 0;
+#endif /* HAVE_SYS_INOTIFY_H */
+}
+
+/*----------------------------------------------------------
+ RXTXPortDiscovery.nativeAddWatch
+
+ accept:      discovery handle, directory to watch
+ perform:     watch the directory for entries being created, removed,
+ renamed or changing their attributes
+ return:      the watch descriptor, -1 if the directory can't be watched
+ exceptions:  none
+ comments:    Attribute changes are reported because udev sets the
+ permissions of a new device after creating it.
+ ----------------------------------------------------------*/
+JNIEXPORT jint JNICALL RXTXPortDiscovery(nativeAddWatch)(JNIEnv *env,
+jclass jclazz, jlong handle, jstring jdirectory) {
+#if defined(HAVE_SYS_INOTIFY_H)
+struct port_discovery *discovery = (struct port_discovery *) (size_t) handle;
+const char *directory = (*env)->GetStringUTFChars(env, jdirectory, 0);
+int wd;
+
+if (!directory)
+return -1;
+wd = inotify_add_watch(discovery->fd, directory,
+IN_CREATE | IN_DELETE | IN_MOVED_FROM | IN_MOVED_TO | IN_ATTRIB
+| IN_DELETE_SELF | IN_MOVE_SELF | IN_ONLYDIR);
+(*env)->ReleaseStringUTFChars(env, jdirectory, directory);
+return wd;
+#else
+return -1;
+#endif /* HAVE_SYS_INOTIFY_H */
+}
+
+/*----------------------------------------------------------
+ RXTXPortDiscovery.nativeRemoveWatch
+
+ accept:      discovery handle, watch descriptor
+ perform:     stop watching the directory
+ return:      none
+ exceptions:  none
+ comments:
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPortDiscovery(nativeRemoveWatch)(JNIEnv *env,
+jclass jclazz, jlong handle, jint wd) {
+#if defined(HAVE_SYS_INOTIFY_H)
+struct port_discovery *discovery = (struct port_discovery *) (size_t) handle;
+
+inotify_rm_watch(discovery->fd, wd);
+#endif /* HAVE_SYS_INOTIFY_H */
+}
+
+/*----------------------------------------------------------
+ RXTXPortDiscovery.nativeRun
+
+ accept:      discovery handle
+ perform:     wait for changes of the watched directories and pass
+ them to RXTXPortDiscovery.event(wd, flags, name)
+ return:      after nativeWakeup was called or inotify failed
+ exceptions:  none
+ comments:    The flags are RXTXPortDiscovery.ADDED, REMOVED,
+ DIRECTORY, GONE and OVERFLOW.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPortDiscovery(nativeRun)(JNIEnv *env, jobject jobj,
+jlong handle) {
+#if defined(HAVE_SYS_INOTIFY_H)
+struct port_discovery *discovery = (struct port_discovery *) (size_t) handle;
+/* long for the alignment of struct inotify_event */
+long buffer[4096 / sizeof(long)];
+struct inotify_event *event;
+struct pollfd pfds[2];
+jmethodID jevent;
+jstring jname;
+char *p;
+ssize_t n;
+int flags;
+
+jevent = (*env)->GetMethodID(env, (*env)->GetObjectClass(env, jobj), "event",
+"(IILjava/lang/String;)V");
+if (!jevent)
+return;
+ENTER("RXTXPortDiscovery:nativeRun");
+pfds[0].fd = discovery->fd;
+pfds[0].events = POLLIN;
+pfds[1].fd = discovery->wakeup[0];
+pfds[1].events = POLLIN;
+for (;;) {
+if (poll(pfds, 2, -1) < 0) {
+if (errno == EINTR)
+continue;
+report("RXTXPortDiscovery:nativeRun: poll failed\n");
+break;
+}
+if (pfds[1].revents)
+break;
+n = READ(discovery->fd, buffer, sizeof(buffer));
+if (n < 0) {
+if (errno == EINTR || errno == EAGAIN)
+continue;
+report("RXTXPortDiscovery:nativeRun: read failed\n");
+break;
+}
+for (p = (char *) buffer; p < (char *) buffer + n;
+p += sizeof(struct inotify_event) + event->len) {
+event = (struct inotify_event *) p;
+flags = 0;
+if (event->mask & (IN_CREATE | IN_MOVED_TO | IN_ATTRIB))
+flags |= DISCOVERY_ADDED;
+if (event->mask & (IN_DELETE | IN_MOVED_FROM))
+flags |= DISCOVERY_REMOVED;
+if (event->mask & IN_ISDIR)
+flags |= DISCOVERY_DIRECTORY;
+if (event->mask & (IN_DELETE_SELF | IN_MOVE_SELF | IN_IGNORED))
+flags |= DISCOVERY_GONE;
+if (event->mask & IN_Q_OVERFLOW)
+flags |= DISCOVERY_OVERFLOW;
+if (!flags)
+continue;
+jname = event->len ? (*env)->NewStringUTF(env, event->name) : NULL;
+(*env)->CallVoidMethod(env, jobj, jevent, (jint) event->wd, (jint) flags,
+jname);
+if ((*env)->ExceptionCheck(env)) {
+(*env)->ExceptionDescribe(env);
+(*env)->ExceptionClear(env);
+}
+if (jname)
+(*env)->DeleteLocalRef(env, jname);
+}
+}
+LEAVE("RXTXPortDiscovery:nativeRun");
+#endif /* HAVE_SYS_INOTIFY_H */
+}
+
+/*----------------------------------------------------------
+ RXTXPortDiscovery.nativeWakeup
+
+ accept:      discovery handle
+ perform:     make nativeRun return
+ return:      none
+ exceptions:  none
+ comments:
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPortDiscovery(nativeWakeup)(JNIEnv *env,
+jclass jclazz, jlong handle) {
+#if defined(HAVE_SYS_INOTIFY_H)
+struct port_discovery *discovery = (struct port_discovery *) (size_t) handle;
+char c = 0;
+
+if (WRITE(discovery->wakeup[1], &c, 1) < 0 && errno != EAGAIN)
+report("RXTXPortDiscovery:nativeWakeup: write failed\n");
+#endif /* HAVE_SYS_INOTIFY_H */
+}
+
+/*----------------------------------------------------------
+ RXTXPortDiscovery.nativeClose
+
+ accept:      discovery handle
+ perform:     close the inotify instance and the wakeup pipe
+ return:      none
+ exceptions:  none
+ comments:    nativeRun must have returned.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXPortDiscovery(nativeClose)(JNIEnv *env,
+jclass jclazz, jlong handle) {
+#if defined(HAVE_SYS_INOTIFY_H)
+struct port_discovery *discovery = (struct port_discovery *) (size_t) handle;
+
+CLOSE(discovery->fd);
+CLOSE(discovery->wakeup[0]);
+CLOSE(discovery->wakeup[1]);
+free(discovery);
+#endif /* HAVE_SYS_INOTIFY_H */
+}
+
+#if defined(__linux__) && defined(TIOCGPTN)
+/*----------------------------------------------------------
+ null_modem_close
 
- accept:      fd of interest
- perform:     check for access to TIOCGICOUNT
- return:      0 if not available
+ accept:      the null modem to free
+ perform:     close the pseudo terminals and the wakeup pipe
+ return:      none
  exceptions:  none
- comments:    not supported on all devices/drivers.
- Some multiport serial cards do not implement TIOCGICOUNT ...
- So use the 'dumb' mode to enable using them after all! JK00
+ comments:    descriptors not opened yet are -1
  ----------------------------------------------------------*/
-int driver_has_tiocgicount(struct event_info_struct * eis) {
-#if defined(TIOCGICOUNT)
-
-/* Some multiport serial cards do not implement TIOCGICOUNT ... */
-/* So use the 'dumb' mode to enable using them after all! JK00 */
-
-if (ioctl(eis->fd, TIOCGICOUNT, &eis->osis) < 0) {
-report_verbose(
-" driver_has_tiocgicount:  Port does not support TIOCGICOUNT events\n");
-return (0);
-} else
-return (1);
-#endif /*  TIOCGICOUNT */
-return (0);
+static void null_modem_close(struct null_modem *modem) {
+int i;
 
+for (i = 0; i < 2; i++) {
+if (modem->master[i] >= 0)
+CLOSE(modem->master[i]);
+if (modem->slave[i] >= 0)
+CLOSE(modem->slave[i]);
+if (modem->wakeup[i] >= 0)
+CLOSE(modem->wakeup[i]);
+}
+free(modem);
 }
 
 /*----------------------------------------------------------
- report_serial_events
+ null_modem_forward
 
- accept:      event_info_struct
- perform:     send events if they occured
- return:      0 if not available
+ accept:      the null modem and the end whose received bytes to send
+ perform:     write the buffered bytes read from one master to the
+ other master, as far as it takes them
+ return:      none
  exceptions:  none
- comments:    not supported on all devices/drivers.
+ comments:    the masters are non blocking
  ----------------------------------------------------------*/
-void report_serial_events(struct event_info_struct *eis) {
-/* JK00: work around for Multi IO cards without TIOCSERGETLSR */
-/* if( eis->has_tiocsergetlsr ) we have a fix for output empty */
-if (check_line_status_register(eis))
-return;
-
-if (eis && eis->has_tiocgicount)
-check_cgi_count(eis);
-#ifndef WIN32 /* something is wrong here */
-#endif /* WIN32 */
+static void null_modem_forward(struct null_modem *modem, int from) {
+int to = 1 - from;
+ssize_t written;
 
-check_tiocmget_changes(eis);
-if (eis && port_has_changed_fionread(eis)) {
-if (!eis->eventflags[SPE_DATA_AVAILABLE]) {
-report_verbose("report_serial_events: ignoring DATA_AVAILABLE\n");
-/*
- report(".");
- */
-usleep(20000);
-#if !defined(__sun__)
-/* FIXME: No time to test on all OS's for production */
-usleep(20000);
-#endif /* !__sun__ */
+if (modem->length[from] == 0)
 return;
-}
-report("report_serial_events: sending DATA_AVAILABLE\n");
-if (!send_event(eis, SPE_DATA_AVAILABLE, 1)) {
-/* select wont block */
-/* FIXME: No time to test on all OS's for production */
-/* REMOVE goes around usleep */
-#if !defined(__sun__)
-#endif /* !__sun__ */
-}
-usleep(20000);
+written = write(modem->master[to], modem->buffer[from] + modem->offset[from],
+	modem->length[from] - modem->offset[from]);
+if (written <= 0)
+return;
+modem->offset[from] += written;
+if (modem->offset[from] == modem->length[from]) {
+modem->offset[from] = 0;
+modem->length[from] = 0;
 }
 }
+#endif /* __linux__ && TIOCGPTN */
 
 /*----------------------------------------------------------
- initialise_event_info_struct
+ RXTXNullModem.nativeCreate
 
- accept:      event_info_struct for this thread.
- perform:     initialise or reset the event_info_struct
- return:      1 on success
+ accept:      none
+ perform:     create two pseudo terminals and the pipe used to wake up
+ nativeRun
+ return:      handle of the null modem, 0 if not supported
  exceptions:  none
- comments:
+ comments:    Only available on Linux.  The slaves are kept open, so
+ the masters don't hang up while a port is closed.
  ----------------------------------------------------------*/
-int initialise_event_info_struct(struct event_info_struct *eis) {
+JNIEXPORT jlong JNICALL RXTXNullModem(nativeCreate)(JNIEnv *env,
+jclass jclazz) {
+#if defined(__linux__) && defined(TIOCGPTN)
+struct null_modem *modem = calloc(1, sizeof(struct null_modem));
+struct termios ttyset;
+char name[32];
+int unlock = 0;
 int i;
-jobject jobj = *eis->jobj;
-JNIEnv *env = eis->env;
-struct event_info_struct *index = master_index;
 
-if (eis->initialised == 1)
-goto end;
+if (!modem)
+return 0;
+for (i = 0; i < 2; i++) {
+modem->master[i] = -1;
+modem->slave[i] = -1;
+modem->wakeup[i] = -1;
+}
+for (i = 0; i < 2; i++) {
+modem->master[i] = open("/dev/ptmx", O_RDWR | O_NOCTTY | O_NONBLOCK);
+if (modem->master[i] < 0)
+goto fail;
+if (ioctl(modem->master[i], TIOCSPTLCK, &unlock) < 0)
+goto fail;
+if (ioctl(modem->master[i], TIOCGPTN, &modem->number[i]) < 0)
+goto fail;
+snprintf(name, sizeof(name), "/dev/pts/%u", modem->number[i]);
+modem->slave[i] = open(name, O_RDWR | O_NOCTTY);
+if (modem->slave[i] < 0)
+goto fail;
+if (tcgetattr(modem->slave[i], &ttyset) < 0)
+goto fail;
+cfmakeraw(&ttyset);
+if (tcsetattr(modem->slave[i], TCSANOW, &ttyset) < 0)
+goto fail;
+}
+if (pipe(modem->wakeup))
+goto fail;
+return (jlong) (size_t) modem;
+fail:
+report("RXTXNullModem:nativeCreate: creating the pseudo terminals failed\n");
+null_modem_close(modem);
+return 0;
+#else
+return 0;
+#endif /* __linux__ && TIOCGPTN */
+}
 
-#ifdef TIOCGICOUNT
-memset(&eis->osis, 0, sizeof(eis->osis));
-#endif /* TIOCGICOUNT */
+/*----------------------------------------------------------
+ RXTXNullModem.nativeGetPortName
 
-if (index) {
-while (index->next) {
-index = index->next;
-}
-index->next = eis;
-eis->prev = index;
-eis->next = NULL;
-} else {
-master_index = eis;
-master_index->next = NULL;
-master_index->prev = NULL;
+ accept:      handle of the null modem, end 0 or 1
+ perform:     name the slave of the end
+ return:      the device name of the slave
+ exceptions:  none
+ comments:
+ ----------------------------------------------------------*/
+JNIEXPORT jstring JNICALL RXTXNullModem(nativeGetPortName)(JNIEnv *env,
+jclass jclazz, jlong handle, jint end) {
+#if defined(__linux__) && defined(TIOCGPTN)
+struct null_modem *modem = (struct null_modem *) (size_t) handle;
+char name[32];
+
+snprintf(name, sizeof(name), "/dev/pts/%u", modem->number[end]);
+return (*env)->NewStringUTF(env, name);
+#else
+return NULL;
+#endif /* __linux__ && TIOCGPTN */
 }
 
-for (i = 0; i < 11; i++)
-eis->eventflags[i] = 0;
-#if !defined(TIOCSERGETLSR) && !defined(WIN32)
-eis->output_buffer_empty_flag = 0;
-eis->writing = 0;
-#endif /* TIOCSERGETLSR */
-eis->eventloop_interrupted = 0;
-eis->closing = 0;
+/*----------------------------------------------------------
+ RXTXNullModem.nativeRun
 
-eis->fd = get_java_var(env, jobj, "fd", "I");
-eis->has_tiocsergetlsr = has_line_status_register_access(eis->fd);
-eis->has_tiocgicount = driver_has_tiocgicount(eis);
+ accept:      handle of the null modem
+ perform:     copy the bytes written to each slave to the other slave
+ until woken up by nativeWakeup
+ return:      none
+ exceptions:  none
+ comments:    An end is not read while its bytes wait for the other end
+ to take them, so a port that is not read stops the other port like
+ hardware flow control would.
+ ----------------------------------------------------------*/
+JNIEXPORT void JNICALL RXTXNullModem(nativeRun)(JNIEnv *env,
+jclass jclazz, jlong handle) {
+#if defined(__linux__) && defined(TIOCGPTN)
+struct null_modem *modem = (struct null_modem *) (size_t) handle;
+struct pollfd fds[3];
+ssize_t count;
+int i;
 
-if (ioctl(eis->fd, TIOCMGET, &eis->omflags) < 0) {
-report("initialise_event_info_struct: Port does not support events\n");
+fds[2].fd = modem->wakeup[0];
+fds[2].events = POLLIN;
+for (;;) {
+for (i = 0; i < 2; i++) {
+fds[i].fd = modem->master[i];
+fds[i].events = (modem->length[i] == 0 ? POLLIN : 0)
+	| (modem->length[1 - i] > 0 ? POLLOUT : 0);
+}
+if (poll(fds, 3, -1) < 0) {
+if (errno == EINTR)
+continue;
+report("RXTXNullModem:nativeRun: poll failed\n");
+return;
+}
+if (fds[2].revents)
+return;
+for (i = 0; i < 2; i++) {
+if (fds[i].revents & (POLLERR | POLLNVAL)) {
+report("RXTXNullModem:nativeRun: pseudo terminal failed\n");
+return;
+}
+if (fds[i].revents & POLLOUT)
+null_modem_forward(modem, 1 - i);
+if ((fds[i].revents & POLLIN) && modem->length[i] == 0) {
+count = read(modem->master[i], modem->buffer[i],
+	sizeof(modem->buffer[i]));
+if (count > 0) {
+modem->length[i] = count;
+null_modem_forward(modem, i);
+}
 }
-
-eis->send_event = (*env)->GetMethodID(env, eis->jclazz, "sendEvent", "(IZ)Z");
-if (eis->send_event == NULL)
-goto fail;
-end:
-FD_ZERO(&eis->rfds);
-FD_SET(eis->fd, &eis->rfds);
-eis->tv_sleep.tv_sec = 0;
-eis->tv_sleep.tv_usec = 100 * 1000;
-eis->initialised = 1;
-return (1);
-fail: report_error("initialise_event_info_struct: initialise failed!\n");
-finalize_event_info_struct(eis);
-return (0);
+}
+}
+#endif /* __linux__ && TIOCGPTN */
 }
 
 /*----------------------------------------------------------
- finalize_event_info_struct
+ RXTXNullModem.nativeWakeup
 
- accept:      event_info_struct for this thread.
- perform:     free resources
+ accept:      handle of the null modem
+ perform:     make nativeRun return
  return:      none
  exceptions:  none
  comments:
  ----------------------------------------------------------*/
-void finalize_event_info_struct(struct event_info_struct *eis) {
-if (eis->jclazz) {
-(*eis->env)->DeleteLocalRef(eis->env, eis->jclazz);
-}
-if (eis->next && eis->prev) {
-eis->prev->next = eis->next;
-eis->next->prev = eis->prev;
-} else if (eis->next) {
-eis->next->prev = NULL;
-master_index = eis->next;
-} else if (eis->prev)
-eis->prev->next = NULL;
-else
-master_index = NULL;
+JNIEXPORT void JNICALL RXTXNullModem(nativeWakeup)(JNIEnv *env,
+jclass jclazz, jlong handle) {
+#if defined(__linux__) && defined(TIOCGPTN)
+struct null_modem *modem = (struct null_modem *) (size_t) handle;
+char c = 0;
+
+if (write(modem->wakeup[1], &c, 1) < 0)
+report("RXTXNullModem:nativeWakeup: write failed\n");
+#endif /* __linux__ && TIOCGPTN */
 }
 
 /*----------------------------------------------------------
- RXTXPort.eventLoop
+ RXTXNullModem.nativeClose
 
- accept:      none
- perform:     periodically check for SerialPortEvents
+ accept:      handle of the null modem
+ perform:     close the pseudo terminals and free the null modem
  return:      none
  exceptions:  none
- comments:	please keep this function clean.
+ comments:    nativeRun must have returned
  ----------------------------------------------------------*/
-JNIEXPORT void JNICALL RXTXPort(eventLoop)( JNIEnv *env, jobject jobj )
-{
-#ifdef WIN32
-	int i = 0;
-#endif /* WIN32 */
-	struct event_info_struct eis;
-	eis.jclazz = (*env)->GetObjectClass( env, jobj );
-	eis.env = env;
-	eis.jobj = &jobj;
-	eis.initialised = 0;
-
-	ENTER("eventLoop\n");if ( !initialise_event_info_struct( &eis ) ) goto end;
-	if ( !init_threads( &eis ) ) goto end;
-	unlock_monitor_thread( &eis );
-	do{
-		report_time_eventLoop( );
-		do {
-			/* nothing goes between this call and select */
-			if( eis.closing )
-			{
-				report("eventLoop: got interrupt\n");
-				finalize_threads( &eis );
-				finalize_event_info_struct( &eis );
-				LEAVE("eventLoop");return;
-			}
-#ifndef WIN32
-			/* report( "." ); */
-			do {
-				eis.ret = SELECT( eis.fd + 1, &eis.rfds, NULL, NULL,
-					&eis.tv_sleep );
-			} while (eis.ret < 0 && errno==EINTR);
-#else
-			/*
-			    termios.c:serial_select is instable for some
-			    reason
-
-			    polling is not blowing up.
-			*/
-/*
-			usleep(5000);
-*/
-			eis.ret=1;
-			while( i++ < 5 )
-			{
-				if(eis.eventflags[SPE_DATA_AVAILABLE] )
-				{
-					if( port_has_changed_fionread( &eis ) )
-					{
-						send_event( &eis, SPE_DATA_AVAILABLE, 1 );
-					}
-				}
-				usleep(1000);
-			}
-			i = 0;
-#endif /* WIN32 */
-		}  while ( eis.ret < 0 && errno == EINTR );
-		if( eis.ret >= 0 )
-		{
-			report_serial_events( &eis );
-		}
-		initialise_event_info_struct( &eis );
-	} while( 1 );
-end:
-	LEAVE(
-"eventLoop:  Bailing!\n");
+JNIEXPORT void JNICALL RXTXNullModem(nativeClose)(JNIEnv *env,
+jclass jclazz, jlong handle) {
+#if defined(__linux__) && defined(TIOCGPTN)
+null_modem_close((struct null_modem *) (size_t) handle);
+#endif /* __linux__ && TIOCGPTN */
 }
 
 /*----------------------------------------------------------
@@ -4898,6 +6517,68 @@ LEAVE( "send_event" );
 return (result);
 }
 
+/*----------------------------------------------------------
+ cache_port_ids
+
+ accept:      env (keyhole to java)
+ jclazz (the RXTXPort class)
+ perform:     look up the field and method IDs the natives use
+ return:      none
+ exceptions:  none
+ comments:    IDs stay valid as long as the class is loaded, which is
+ as long as this library is.  A member missing in an older
+ RXTXPort.class is left NULL, get_java_var() falls back to a
+ lookup by name then.
+ ----------------------------------------------------------*/
+void cache_port_ids(JNIEnv *env, jclass jclazz) {
+#define PORT_FIELD(name, type) \
+	port_ids.name = (*env)->GetFieldID(env, jclazz, #name, type); \
+	(*env)->ExceptionClear(env);
+#define PORT_METHOD(name, signature) \
+	port_ids.name = (*env)->GetMethodID(env, jclazz, #name, signature); \
+	(*env)->ExceptionClear(env);
+PORT_FIELD(fd, "I")
+PORT_FIELD(eis, "J")
+PORT_FIELD(timeout, "I")
+PORT_FIELD(wakeupReadFd, "I")
+PORT_FIELD(wakeupWriteFd, "I")
+PORT_FIELD(speed, "I")
+PORT_FIELD(dataBits, "I")
+PORT_FIELD(stopBits, "I")
+PORT_FIELD(parity, "I")
+PORT_FIELD(pid, "I")
+PORT_FIELD(MonitorThreadLock, "Z")
+PORT_METHOD(sendEvent, "(IZ)Z")
+PORT_METHOD(eventEngineDetached, "()V")
+#undef PORT_FIELD
+#undef PORT_METHOD
+}
+
+/*----------------------------------------------------------
+ cached_field_id
+
+ accept:      name of a RXTXPort field
+ perform:     find the ID cached by cache_port_ids()
+ return:      the field ID or NULL if it is not cached
+ exceptions:  none
+ comments:
+ ----------------------------------------------------------*/
+jfieldID cached_field_id(char *id) {
+if (!strcmp(id, "fd"))
+return port_ids.fd;
+if (!strcmp(id, "eis"))
+return port_ids.eis;
+if (!strcmp(id, "timeout"))
+return port_ids.timeout;
+if (!strcmp(id, "wakeupReadFd"))
+return port_ids.wakeupReadFd;
+if (!strcmp(id, "wakeupWriteFd"))
+return port_ids.wakeupWriteFd;
+if (!strcmp(id, "pid"))
+return port_ids.pid;
+return NULL;
+}
+
 /*----------------------------------------------------------
  get_java_var
 
@@ -4905,7 +6586,8 @@ return (result);
  jobj (java RXTXPort object)
  return:      the fd field from the java object
  exceptions:  none
- comments:
+ comments:    The fields used on every call are read with the IDs
+ cached by RXTXPort.Initialize(), others are looked up by name.
  ----------------------------------------------------------*/
 size_t get_java_var(JNIEnv *env, jobject jobj, char *id, char *type) {
 return (size_t) get_java_var_long(env, jobj, id, type);
@@ -4913,13 +6595,17 @@ return (size_t) get_java_var_long(env, jobj, id, type);
 
 long get_java_var_long(JNIEnv *env, jobject jobj, char *id, char *type) {
 long result = 0;
-jclass jclazz = (*env)->GetObjectClass(env, jobj);
-jfieldID jfd = (*env)->GetFieldID(env, jclazz, id, type);
+jclass jclazz = NULL;
+jfieldID jfd = cached_field_id(id);
 
 /*
  ENTER( "get_java_var" );
  */
 if (!jfd) {
+jclazz = (*env)->GetObjectClass(env, jobj);
+jfd = (*env)->GetFieldID(env, jclazz, id, type);
+}
+if (!jfd) {
 (*env)->ExceptionDescribe(env);
 (*env)->ExceptionClear(env);
 (*env)->DeleteLocalRef(env, jclazz);
@@ -4932,6 +6618,7 @@ result = (long) ((*env)->GetLongField(env, jobj, jfd));
 result = (size_t) ((*env)->GetIntField(env, jobj, jfd));
 }
 /* ct7 & gel * Added DeleteLocalRef */
+if (jclazz)
 (*env)->DeleteLocalRef(env, jclazz);
 if (!strncmp("fd", id, 2) && result == 0)
 report_error("get_java_var: invalid file descriptor\n");
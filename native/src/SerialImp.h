@@ -95,6 +95,28 @@
 #define PORT_RS485		 4
 #define PORT_RAW		 5
 
+/* largest number of bytes returned by one readAvailableArray call */
+#define READ_AVAILABLE_CHUNK	4096
+/* writeArray copies writes up to this size to the stack */
+#define WRITE_ARRAY_CHUNK	1024
+/* most parts handed to one writev call by writeGather */
+#if defined(IOV_MAX)
+#	define WRITE_GATHER_PARTS	IOV_MAX
+#else
+#	define WRITE_GATHER_PARTS	16
+#endif /* IOV_MAX */
+
+/* RXTXPoller.READ and RXTXPoller.WRITE */
+#define POLLER_READ		1
+#define POLLER_WRITE		4
+
+/* flags passed to RXTXPortDiscovery.event() */
+#define DISCOVERY_ADDED		1
+#define DISCOVERY_REMOVED	2
+#define DISCOVERY_DIRECTORY	4
+#define DISCOVERY_GONE		8
+#define DISCOVERY_OVERFLOW	16
+
 /* glue for unsupported linux speeds see also win32termios.h */
 
 #if !defined(__APPLE__) && !defined(__FreeBSD_kernel__) /* dima */
@@ -142,8 +164,71 @@ struct event_info_struct {
 #	if defined(TIOCGICOUNT)
 struct serial_icounter_struct osis;
 #endif /* TIOCGICOUNT */
+	/* set while the port is served by an RXTXEventEngine loop */
+	struct event_engine *engine;
+	struct event_info_struct *engine_next;
+	/* the ports of one pass of the loop with events to report */
+	struct event_info_struct *engine_ready;
+	jobject engine_jobj;
+	jmethodID engine_detached;
+	int engine_release;
 };
 
+/* field and method IDs of RXTXPort, looked up once by RXTXPort.Initialize() */
+struct port_ids {
+	jfieldID fd;
+	jfieldID eis;
+	jfieldID timeout;
+	jfieldID wakeupReadFd;
+	jfieldID wakeupWriteFd;
+	jfieldID speed;
+	jfieldID dataBits;
+	jfieldID stopBits;
+	jfieldID parity;
+	jfieldID pid;
+	jfieldID MonitorThreadLock;
+	jmethodID sendEvent;
+	jmethodID eventEngineDetached;
+};
+
+#if defined(HAVE_SYS_EPOLL_H)
+/* one epoll loop of RXTXEventEngine, serving many ports */
+struct event_engine {
+	int epfd;
+	int wakeup[2];
+	pthread_mutex_t lock;
+	struct event_info_struct *ports;
+	long long last_tick;
+	/* the RXTXPorts dropped in one pass, told after lock is released */
+	jobject *detached;
+	int detached_max;
+};
+#define ENGINE_TICK_MS		100
+#define ENGINE_MAX_EVENTS	64
+#endif /* HAVE_SYS_EPOLL_H */
+
+#if defined(HAVE_SYS_INOTIFY_H)
+/* the inotify instance of an RXTXPortDiscovery */
+struct port_discovery {
+	int fd;
+	int wakeup[2];
+};
+#endif /* HAVE_SYS_INOTIFY_H */
+
+#if defined(__linux__)
+/* the linked pseudo terminals of an RXTXNullModem */
+struct null_modem {
+	int master[2];
+	int slave[2];
+	int wakeup[2];
+	unsigned int number[2];
+	/* bytes read from master[i] that master[1 - i] did not take yet */
+	char buffer[2][4096];
+	int length[2];
+	int offset[2];
+};
+#endif /* __linux__ */
+
 /*  Ports known on the OS */
 #if defined(__linux__) || defined(__FreeBSD_kernel__) || defined(__GNU__)
 /*
@@ -459,7 +544,11 @@ int translate_parity(JNIEnv *, tcflag_t *, jint);
 #endif
 void system_wait();
 void finalize_event_info_struct(struct event_info_struct *);
+void unlink_event_info_struct(struct event_info_struct *);
 int read_byte_array(JNIEnv *, jobject *, int, unsigned char *, int, int);
+int read_available_bytes(JNIEnv *, jobject *, int, unsigned char *, int, int);
+void cache_port_ids(JNIEnv *, jclass);
+jfieldID cached_field_id(char *);
 long get_java_var_long(JNIEnv *, jobject, char *, char *);
 size_t get_java_var(JNIEnv *, jobject, char *, char *);
 jboolean is_interrupted(struct event_info_struct *);
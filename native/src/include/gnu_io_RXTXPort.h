@@ -216,6 +216,22 @@ JNIEXPORT void JNICALL Java_gnu_io_RXTXPort_writeByte
 JNIEXPORT void JNICALL Java_gnu_io_RXTXPort_writeArray
 (JNIEnv *, jobject, jbyteArray, jint, jint, jboolean);
 
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    writeDirectBuffer
+ * Signature: (Ljava/nio/ByteBuffer;IIZ)V
+ */
+JNIEXPORT void JNICALL Java_gnu_io_RXTXPort_writeDirectBuffer
+(JNIEnv *, jobject, jobject, jint, jint, jboolean);
+
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    writeGather
+ * Signature: ([Ljava/lang/Object;[I[IIZ)V
+ */
+JNIEXPORT void JNICALL Java_gnu_io_RXTXPort_writeGather
+(JNIEnv *, jobject, jobjectArray, jintArray, jintArray, jint, jboolean);
+
 /*
  * Class:     gnu_io_RXTXPort
  * Method:    nativeDrain
@@ -246,6 +262,38 @@ JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readByte(JNIEnv *, jobject);
 JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readArray(JNIEnv *, jobject,
 		jbyteArray, jint, jint);
 
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    readAvailableArray
+ * Signature: ([BII)I
+ */
+JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readAvailableArray(JNIEnv *,
+		jobject, jbyteArray, jint, jint);
+
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    readDirectBuffer
+ * Signature: (Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readDirectBuffer(JNIEnv *,
+		jobject, jobject, jint, jint);
+
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    readAvailableArrayTimeout
+ * Signature: ([BIII)I
+ */
+JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readAvailableArrayTimeout(JNIEnv *,
+		jobject, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    readDirectBufferTimeout
+ * Signature: (Ljava/nio/ByteBuffer;III)I
+ */
+JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readDirectBufferTimeout(JNIEnv *,
+		jobject, jobject, jint, jint, jint);
+
 /*
  * Class:     gnu_io_RXTXPort
  * Method:    readTerminatedArray
@@ -254,6 +302,14 @@ JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readArray(JNIEnv *, jobject,
 JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readTerminatedArray(JNIEnv *,
 		jobject, jbyteArray, jint, jint, jbyteArray);
 
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    readUntilArray
+ * Signature: ([BII[BI[I)I
+ */
+JNIEXPORT jint JNICALL Java_gnu_io_RXTXPort_readUntilArray
+(JNIEnv *, jobject, jbyteArray, jint, jint, jbyteArray, jint, jintArray);
+
 /*
  * Class:     gnu_io_RXTXPort
  * Method:    eventLoop
@@ -286,6 +342,22 @@ JNIEXPORT void JNICALL Java_gnu_io_RXTXPort_nativeSetEventFlag
 JNIEXPORT void JNICALL Java_gnu_io_RXTXPort_nativeClose
 (JNIEnv *, jobject, jstring);
 
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    nativeInterruptRead
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_gnu_io_RXTXPort_nativeInterruptRead
+(JNIEnv *, jobject);
+
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    nativeClearInterruptRead
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_gnu_io_RXTXPort_nativeClearInterruptRead
+(JNIEnv *, jobject);
+
 /*
  * Class:     gnu_io_RXTXPort
  * Method:    nativeStaticSetSerialPortParams
@@ -516,6 +588,14 @@ JNIEXPORT jboolean JNICALL Java_gnu_io_RXTXPort_nativeGetCallOutHangup(JNIEnv *,
 JNIEXPORT jboolean JNICALL Java_gnu_io_RXTXPort_nativeClearCommInput(JNIEnv *,
 		jobject);
 
+/*
+ * Class:     gnu_io_RXTXPort
+ * Method:    nativeGetStatistics
+ * Signature: ([J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_gnu_io_RXTXPort_nativeGetStatistics(JNIEnv *,
+		jobject, jlongArray);
+
 #ifdef __cplusplus
 }
 #endif
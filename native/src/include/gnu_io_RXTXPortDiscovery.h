@@ -0,0 +1,71 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class gnu_io_RXTXPortDiscovery */
+
+#ifndef _Included_gnu_io_RXTXPortDiscovery
+#define _Included_gnu_io_RXTXPortDiscovery
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef gnu_io_RXTXPortDiscovery_ADDED
+#define gnu_io_RXTXPortDiscovery_ADDED 1L
+#undef gnu_io_RXTXPortDiscovery_REMOVED
+#define gnu_io_RXTXPortDiscovery_REMOVED 2L
+#undef gnu_io_RXTXPortDiscovery_DIRECTORY
+#define gnu_io_RXTXPortDiscovery_DIRECTORY 4L
+#undef gnu_io_RXTXPortDiscovery_GONE
+#define gnu_io_RXTXPortDiscovery_GONE 8L
+#undef gnu_io_RXTXPortDiscovery_OVERFLOW
+#define gnu_io_RXTXPortDiscovery_OVERFLOW 16L
+/*
+ * Class:     gnu_io_RXTXPortDiscovery
+ * Method:    nativeCreate
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_gnu_io_RXTXPortDiscovery_nativeCreate(JNIEnv *,
+		jclass);
+
+/*
+ * Class:     gnu_io_RXTXPortDiscovery
+ * Method:    nativeAddWatch
+ * Signature: (JLjava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_gnu_io_RXTXPortDiscovery_nativeAddWatch(JNIEnv *,
+		jclass, jlong, jstring);
+
+/*
+ * Class:     gnu_io_RXTXPortDiscovery
+ * Method:    nativeRemoveWatch
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_gnu_io_RXTXPortDiscovery_nativeRemoveWatch(
+		JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     gnu_io_RXTXPortDiscovery
+ * Method:    nativeRun
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_gnu_io_RXTXPortDiscovery_nativeRun(JNIEnv *,
+		jobject, jlong);
+
+/*
+ * Class:     gnu_io_RXTXPortDiscovery
+ * Method:    nativeWakeup
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_gnu_io_RXTXPortDiscovery_nativeWakeup(JNIEnv *,
+		jclass, jlong);
+
+/*
+ * Class:     gnu_io_RXTXPortDiscovery
+ * Method:    nativeClose
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_gnu_io_RXTXPortDiscovery_nativeClose(JNIEnv *,
+		jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif